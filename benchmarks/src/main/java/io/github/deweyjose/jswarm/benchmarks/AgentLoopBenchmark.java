@@ -0,0 +1,102 @@
+package io.github.deweyjose.jswarm.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.openai.client.okhttp.OpenAIOkHttpClient;
+import io.github.deweyjose.jswarm.benchmarks.agents.Concierge;
+import io.github.deweyjose.jswarm.core.LLMAgentRegistry;
+import io.github.deweyjose.jswarm.core.LLMNexus;
+import io.github.deweyjose.jswarm.core.model.LLMResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End to end runs of the agent loop over HTTP against a {@link MockCompletionServer}.
+ *
+ * <ul>
+ *   <li>{@code reply}: one completion that answers right away
+ *   <li>{@code tool}: the coordinator calls one of its tools, then answers
+ *   <li>{@code handoff}: the coordinator transfers to the unit converter, which calls a tool and
+ *       answers
+ * </ul>
+ *
+ * With zero latency the numbers are jswarm, the OpenAI client and the loopback HTTP round trip.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AgentLoopBenchmark {
+
+  @Param({"reply", "tool", "handoff"})
+  public String scenario;
+
+  @Param({"0", "20"})
+  public long latencyMillis;
+
+  private MockCompletionServer server;
+  private LLMNexus nexus;
+
+  @Setup
+  public void setup() throws IOException {
+    server = new MockCompletionServer(Duration.ofMillis(latencyMillis), this::respond);
+    var client =
+        OpenAIOkHttpClient.builder()
+            .baseUrl(server.getBaseUrl())
+            .apiKey("benchmark")
+            .maxRetries(0)
+            .build();
+    nexus = new LLMNexus(client, new LLMAgentRegistry(Concierge.class.getPackageName()));
+  }
+
+  @TearDown
+  public void tearDown() {
+    server.close();
+  }
+
+  private String respond(JsonNode request) {
+    int toolResponses = MockCompletionServer.count(request, "tool");
+    switch (scenario) {
+      case "tool":
+        return toolResponses == 0
+            ? MockCompletionServer.toolCall(request, "Concierge_greet", "{\"arg0\":\"Ada\"}")
+            : MockCompletionServer.reply(request, "Hello, Ada!");
+      case "handoff":
+        if (toolResponses == 0) {
+          return MockCompletionServer.toolCall(request, "UnitConverter_getAgent", "{}");
+        }
+        return toolResponses == 1
+            ? MockCompletionServer.toolCall(
+                request, "UnitConverter_convertToFahrenheit", "{\"arg0\":21.5}")
+            : MockCompletionServer.reply(request, "21.5C is 70.7F");
+      default:
+        return MockCompletionServer.reply(request, "Hello!");
+    }
+  }
+
+  @Benchmark
+  public LLMResponse run() {
+    return nexus.run("convert 21.5C to Fahrenheit", new ArrayList<>(), new HashMap<>());
+  }
+
+  @Benchmark
+  public LLMResponse runAsync() {
+    return nexus.runAsync("convert 21.5C to Fahrenheit", new ArrayList<>(), new HashMap<>()).join();
+  }
+}
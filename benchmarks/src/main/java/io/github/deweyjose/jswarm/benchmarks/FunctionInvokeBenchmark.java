@@ -0,0 +1,62 @@
+package io.github.deweyjose.jswarm.benchmarks;
+
+import io.github.deweyjose.jswarm.benchmarks.agents.UnitConverter;
+import io.github.deweyjose.jswarm.core.LLMFunctionWrapper;
+import io.github.deweyjose.jswarm.core.model.LLMFunctionContext;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Compares the reflective {@link Method#invoke} path with the bound method handle invoker. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FunctionInvokeBenchmark {
+
+  private UnitConverter instance;
+  private Method method;
+  private LLMFunctionWrapper wrapper;
+  private Object[] arguments;
+  private LLMFunctionContext context;
+
+  @Setup
+  public void setup() throws NoSuchMethodException {
+    instance = new UnitConverter();
+    method = UnitConverter.class.getMethod("convertToFahrenheit", Double.class);
+    wrapper = LLMFunctionWrapper.builder().instance(instance).method(method).build();
+    arguments = new Object[] {21.5};
+    context = LLMFunctionContext.builder().build();
+  }
+
+  @Benchmark
+  public Object reflectiveInvoke() throws Exception {
+    return method.invoke(instance, arguments);
+  }
+
+  @Benchmark
+  public Object methodHandleInvoke() {
+    return wrapper.invokeMapped(arguments);
+  }
+
+  @Benchmark
+  public Object[] mapArguments() {
+    return LLMFunctionWrapper.mapArguments(method, "{\"arg0\":21.5}", context);
+  }
+
+  @Benchmark
+  public Object invokeWithArgumentMapping() throws Exception {
+    return wrapper.invoke(context, "{\"arg0\":21.5}");
+  }
+}
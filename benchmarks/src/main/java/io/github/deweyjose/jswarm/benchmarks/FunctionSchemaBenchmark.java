@@ -0,0 +1,48 @@
+package io.github.deweyjose.jswarm.benchmarks;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.openai.models.FunctionParameters;
+import io.github.deweyjose.jswarm.benchmarks.agents.UnitConverter;
+import io.github.deweyjose.jswarm.core.LLMFunctionSchemaGenerator;
+import io.github.deweyjose.jswarm.core.LLMFunctionWrapper;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Runtime schema generation, paid for every function when the registry scans the classpath. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FunctionSchemaBenchmark {
+
+  private Method method;
+  private ObjectNode schema;
+
+  @Setup
+  public void setup() throws NoSuchMethodException {
+    method = UnitConverter.class.getMethod("convertToFahrenheit", Double.class);
+    schema = LLMFunctionSchemaGenerator.generateSchema(method);
+  }
+
+  @Benchmark
+  public ObjectNode generateSchema() {
+    return LLMFunctionSchemaGenerator.generateSchema(method);
+  }
+
+  @Benchmark
+  public FunctionParameters computeFunctionParameters() {
+    return LLMFunctionWrapper.computeFunctionParameters(schema);
+  }
+}
@@ -0,0 +1,153 @@
+package io.github.deweyjose.jswarm.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * An in-process stand-in for the chat completions endpoint, so benchmarks run offline and measure
+ * jswarm rather than the network. The responder maps each request body to a response body, which
+ * is sent after the configured latency without holding a thread while it waits.
+ */
+public class MockCompletionServer implements AutoCloseable {
+
+  private static final ObjectMapper mapper = new ObjectMapper();
+  private static final AtomicInteger ids = new AtomicInteger();
+
+  private final HttpServer server;
+  private final ExecutorService handlers;
+  private final ScheduledExecutorService timer;
+  private final long latencyNanos;
+  private final Function<JsonNode, String> responder;
+  private final AtomicLong requests = new AtomicLong();
+
+  public MockCompletionServer(Duration latency, Function<JsonNode, String> responder)
+      throws IOException {
+    this.latencyNanos = latency.toNanos();
+    this.responder = responder;
+    this.handlers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    this.timer = Executors.newSingleThreadScheduledExecutor();
+    this.server =
+        HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 4096);
+    server.createContext("/v1/chat/completions", this::handle);
+    server.setExecutor(handlers);
+    server.start();
+  }
+
+  /** Pass to {@code OpenAIOkHttpClient.builder().baseUrl(...)}. */
+  public String getBaseUrl() {
+    var address = server.getAddress();
+    return "http://" + address.getHostString() + ":" + address.getPort() + "/v1";
+  }
+
+  public long getRequestCount() {
+    return requests.get();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    requests.incrementAndGet();
+    String body;
+    int status = 200;
+    try (var in = exchange.getRequestBody()) {
+      body = responder.apply(mapper.readTree(in));
+    } catch (RuntimeException e) {
+      status = 500;
+      body = "{\"error\":{\"message\":\"" + e.getClass().getSimpleName() + "\"}}";
+    }
+    int finalStatus = status;
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    if (latencyNanos == 0) {
+      respond(exchange, finalStatus, bytes);
+    } else {
+      timer.schedule(
+          () -> respond(exchange, finalStatus, bytes), latencyNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private static void respond(HttpExchange exchange, int status, byte[] bytes) {
+    try {
+      exchange.getResponseHeaders().set("Content-Type", "application/json");
+      exchange.sendResponseHeaders(status, bytes.length);
+      exchange.getResponseBody().write(bytes);
+    } catch (IOException e) {
+      // the client gave up on the request, nothing left to do
+    } finally {
+      exchange.close();
+    }
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    timer.shutdownNow();
+    handlers.shutdownNow();
+  }
+
+  /** How many messages of the request have the given role. */
+  public static int count(JsonNode request, String role) {
+    int count = 0;
+    for (var message : request.path("messages")) {
+      if (role.equals(message.path("role").asText())) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /** A completion answering with {@code content}. */
+  public static String reply(JsonNode request, String content) {
+    var message = mapper.createObjectNode().put("role", "assistant").put("content", content);
+    message.putNull("refusal");
+    return completion(request, message, "stop");
+  }
+
+  /** A completion calling one tool. */
+  public static String toolCall(JsonNode request, String function, String arguments) {
+    var message = mapper.createObjectNode().put("role", "assistant");
+    message.putNull("content");
+    message.putNull("refusal");
+    message
+        .putArray("tool_calls")
+        .addObject()
+        .put("id", "call_" + ids.incrementAndGet())
+        .put("type", "function")
+        .putObject("function")
+        .put("name", function)
+        .put("arguments", arguments);
+    return completion(request, message, "tool_calls");
+  }
+
+  private static String completion(JsonNode request, ObjectNode message, String finishReason) {
+    var completion =
+        mapper
+            .createObjectNode()
+            .put("id", "chatcmpl-" + ids.incrementAndGet())
+            .put("object", "chat.completion")
+            .put("created", System.currentTimeMillis() / 1000)
+            .put("model", request.path("model").asText("gpt-4o"));
+    var choice = completion.putArray("choices").addObject().put("index", 0);
+    choice.putNull("logprobs");
+    choice.put("finish_reason", finishReason).set("message", message);
+    int prompt = request.path("messages").size() * 50;
+    completion
+        .putObject("usage")
+        .put("prompt_tokens", prompt)
+        .put("completion_tokens", 20)
+        .put("total_tokens", prompt + 20);
+    return completion.toString();
+  }
+}
@@ -0,0 +1,62 @@
+package io.github.deweyjose.jswarm.benchmarks;
+
+import com.openai.models.ChatCompletionTool;
+import io.github.deweyjose.jswarm.benchmarks.agents.Concierge;
+import io.github.deweyjose.jswarm.core.LLMAgentRegistry;
+import io.github.deweyjose.jswarm.core.LLMFunctionWrapper;
+import io.github.deweyjose.jswarm.core.model.LLMAgentWrapper;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Registry construction from a classpath scan and the lookups done on every completion. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RegistryBenchmark {
+
+  private static final String AGENT_PACKAGE = Concierge.class.getPackageName();
+
+  private LLMAgentRegistry registry;
+  private LLMAgentWrapper coordinator;
+
+  @Setup
+  public void setup() {
+    registry = new LLMAgentRegistry(AGENT_PACKAGE);
+    coordinator = registry.getCoordinatorAgent();
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public LLMAgentRegistry construct() {
+    return new LLMAgentRegistry(AGENT_PACKAGE);
+  }
+
+  @Benchmark
+  public Map<String, LLMFunctionWrapper> getFunctions() {
+    return registry.getFunctions(coordinator);
+  }
+
+  @Benchmark
+  public List<ChatCompletionTool> getTools() {
+    return registry.getTools(coordinator);
+  }
+
+  @Benchmark
+  public LLMFunctionWrapper getFunction() {
+    return registry.getFunction("UnitConverter_getAgent", coordinator);
+  }
+}
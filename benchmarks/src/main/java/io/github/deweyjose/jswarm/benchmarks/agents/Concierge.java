@@ -0,0 +1,16 @@
+package io.github.deweyjose.jswarm.benchmarks.agents;
+
+import io.github.deweyjose.jswarm.core.annotations.LLMCoordinator;
+import io.github.deweyjose.jswarm.core.annotations.LLMFunction;
+import io.github.deweyjose.jswarm.core.annotations.LLMFunctionParam;
+
+@LLMCoordinator(
+    description = "Greets the user and hands off to the right agent.",
+    instructions = "You are a concierge. Transfer unit conversions to the unit converter.")
+public class Concierge {
+
+  @LLMFunction(description = "Greet a user by name")
+  public String greet(@LLMFunctionParam(description = "The user's name") String name) {
+    return "Hello, " + name + "!";
+  }
+}
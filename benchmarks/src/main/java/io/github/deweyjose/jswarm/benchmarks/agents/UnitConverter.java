@@ -0,0 +1,17 @@
+package io.github.deweyjose.jswarm.benchmarks.agents;
+
+import io.github.deweyjose.jswarm.core.annotations.LLMAgent;
+import io.github.deweyjose.jswarm.core.annotations.LLMFunction;
+import io.github.deweyjose.jswarm.core.annotations.LLMFunctionParam;
+
+@LLMAgent(
+    description = "If you need to convert between units use me.",
+    instructions = "You are a unit conversion assistant.")
+public class UnitConverter {
+
+  @LLMFunction(description = "Convert Celsius to Fahrenheit")
+  public double convertToFahrenheit(
+      @LLMFunctionParam(description = "The input temp in Celsius") Double celsius) {
+    return (celsius * 9 / 5) + 32;
+  }
+}
@@ -0,0 +1,180 @@
+package io.github.deweyjose.jswarm.benchmarks.load;
+
+import com.openai.client.okhttp.OpenAIOkHttpClient;
+import io.github.deweyjose.jswarm.benchmarks.MockCompletionServer;
+import io.github.deweyjose.jswarm.benchmarks.agents.Concierge;
+import io.github.deweyjose.jswarm.core.LLMAgentRegistry;
+import io.github.deweyjose.jswarm.core.LLMNexus;
+import io.github.deweyjose.jswarm.core.LLMSession;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Replays recorded conversations against a {@link MockCompletionServer} from many concurrent
+ * sessions and reports throughput, latency percentiles per stage and the allocation rate. Nothing
+ * leaves the machine, so it can run at any scale for free.
+ *
+ * <pre>
+ * java -cp benchmarks-1.0-SNAPSHOT-jar-with-dependencies.jar \
+ *     io.github.deweyjose.jswarm.benchmarks.load.LoadTest \
+ *     --sessions 1000 --latency 200 --warmup 10 --duration 60 \
+ *     [--transcripts dir --agents package]
+ * </pre>
+ *
+ * Each session replays one transcript turn by turn through {@link LLMNexus#run(LLMSession,
+ * String)}, then starts over with a new session and the next transcript. The bundled transcripts
+ * run against the benchmark agents; recorded ones need {@code --agents} set to the package of the
+ * agents that recorded them.
+ */
+public class LoadTest {
+
+  public static void main(String[] args) throws Exception {
+    var options = options(args);
+    int sessions = Integer.parseInt(options.getOrDefault("sessions", "1000"));
+    var latency = Duration.ofMillis(Long.parseLong(options.getOrDefault("latency", "200")));
+    var warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "10")));
+    var duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "60")));
+    var transcripts =
+        options.containsKey("transcripts")
+            ? Transcript.load(Path.of(options.get("transcripts")))
+            : Transcript.bundled();
+    var agents = options.getOrDefault("agents", Concierge.class.getPackageName());
+
+    var recorder = new StageRecorder();
+    var server = new MockCompletionServer(latency, new ReplayResponder(transcripts));
+    var client =
+        OpenAIOkHttpClient.builder()
+            .baseUrl(server.getBaseUrl())
+            .apiKey("load-test")
+            .maxRetries(0)
+            .build();
+    var nexus = new LLMNexus(client, new LLMAgentRegistry(agents));
+    nexus.setListener(recorder);
+
+    // one thread per session, LLMNexus#run blocks for the whole turn
+    ExecutorService workers = Executors.newFixedThreadPool(sessions);
+    var running = new AtomicBoolean(true);
+    for (int i = 0; i < sessions; i++) {
+      int first = i;
+      workers.execute(() -> replay(nexus, transcripts, first, running, recorder));
+    }
+
+    System.out.printf(
+        "%d sessions, %d transcripts, %d ms latency, warming up for %d s%n",
+        sessions, transcripts.size(), latency.toMillis(), warmup.toSeconds());
+    Thread.sleep(warmup.toMillis());
+    recorder.reset();
+    var allocated = allocatedBytes();
+    long start = System.nanoTime();
+
+    Thread.sleep(duration.toMillis());
+    double seconds = (System.nanoTime() - start) / 1e9;
+    long allocation = allocatedSince(allocated);
+    var completions = recorder.completions.getIntervalHistogram();
+    var tools = recorder.tools.getIntervalHistogram();
+    var turns = recorder.turns.getIntervalHistogram();
+    long handoffs = recorder.handoffs.sum();
+    long errors = recorder.errors.sum();
+
+    running.set(false);
+    workers.shutdown();
+    workers.awaitTermination(1, TimeUnit.MINUTES);
+    server.close();
+
+    System.out.printf("%nmeasured %.1f s%n", seconds);
+    System.out.printf(
+        "throughput  %.1f turns/s  %.1f completions/s  %.1f tool calls/s  %.1f handoffs/s%n",
+        turns.getTotalCount() / seconds,
+        completions.getTotalCount() / seconds,
+        tools.getTotalCount() / seconds,
+        handoffs / seconds);
+    System.out.printf(
+        "%-12s %10s %10s %10s %10s %10s%n", "stage (ms)", "count", "p50", "p99", "p999", "max");
+    print("completion", completions);
+    print("tool", tools);
+    print("turn", turns);
+    System.out.printf("errors      %d%n", errors);
+    System.out.printf("allocation  %.1f MB/s%n", allocation / seconds / (1024 * 1024));
+  }
+
+  private static void replay(
+      LLMNexus nexus,
+      List<Transcript> transcripts,
+      int first,
+      AtomicBoolean running,
+      StageRecorder recorder) {
+    for (int next = first; running.get(); next++) {
+      var transcript = transcripts.get(next % transcripts.size());
+      var session = LLMSession.create();
+      for (var turn : transcript.getTurns()) {
+        if (!running.get()) {
+          return;
+        }
+        try {
+          nexus.run(session, turn.getPrompt());
+        } catch (RuntimeException e) {
+          // the listener counted it, the rest of this transcript no longer lines up
+          break;
+        }
+      }
+    }
+  }
+
+  private static void print(String stage, Histogram histogram) {
+    System.out.printf(
+        "%-12s %10d %10.2f %10.2f %10.2f %10.2f%n",
+        stage,
+        histogram.getTotalCount(),
+        histogram.getValueAtPercentile(50) / 1e6,
+        histogram.getValueAtPercentile(99) / 1e6,
+        histogram.getValueAtPercentile(99.9) / 1e6,
+        histogram.getMaxValue() / 1e6);
+  }
+
+  /** Bytes allocated so far by each live thread, by thread id. */
+  private static Map<Long, Long> allocatedBytes() {
+    var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long[] ids = threads.getAllThreadIds();
+    long[] bytes = threads.getThreadAllocatedBytes(ids);
+    var allocated = new HashMap<Long, Long>();
+    for (int i = 0; i < ids.length; i++) {
+      if (bytes[i] >= 0) {
+        allocated.put(ids[i], bytes[i]);
+      }
+    }
+    return allocated;
+  }
+
+  /**
+   * Bytes allocated since {@code before} by the threads alive now. Threads that ended in between
+   * are missed, the session, client and server pools all outlive the measurement so that covers
+   * almost everything.
+   */
+  private static long allocatedSince(Map<Long, Long> before) {
+    long total = 0;
+    for (var thread : allocatedBytes().entrySet()) {
+      total += thread.getValue() - before.getOrDefault(thread.getKey(), 0L);
+    }
+    return total;
+  }
+
+  private static Map<String, String> options(String[] args) {
+    var options = new HashMap<String, String>();
+    for (int i = 0; i + 1 < args.length; i += 2) {
+      if (!args[i].startsWith("--")) {
+        throw new IllegalArgumentException("Expected an option, got " + args[i]);
+      }
+      options.put(args[i].substring(2), args[i + 1]);
+    }
+    return options;
+  }
+}
@@ -0,0 +1,62 @@
+package io.github.deweyjose.jswarm.benchmarks.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Answers each request with the recorded completion it corresponds to. The server sees nothing but
+ * request bodies, so the position is read from the history: the first prompt identifies the
+ * transcript, the number of prompts the turn and the number of assistant messages since the last
+ * prompt the completion within the turn. Any number of sessions can replay the same transcript.
+ */
+class ReplayResponder implements Function<JsonNode, String> {
+
+  private final Map<String, Transcript> byFirstPrompt = new HashMap<>();
+
+  ReplayResponder(List<Transcript> transcripts) {
+    for (var transcript : transcripts) {
+      var prompt = transcript.getTurns().get(0).getPrompt();
+      var clash = byFirstPrompt.put(prompt, transcript);
+      if (clash != null) {
+        throw new IllegalArgumentException(
+            "Transcripts " + clash.getName() + " and " + transcript.getName() + " start alike");
+      }
+    }
+  }
+
+  @Override
+  public String apply(JsonNode request) {
+    String firstPrompt = null;
+    int turn = -1;
+    int step = 0;
+    for (var message : request.path("messages")) {
+      var role = message.path("role").asText();
+      if ("user".equals(role)) {
+        if (firstPrompt == null) {
+          firstPrompt = message.path("content").asText();
+        }
+        turn++;
+        step = 0;
+      } else if ("assistant".equals(role)) {
+        step++;
+      }
+    }
+
+    var transcript = byFirstPrompt.get(firstPrompt);
+    if (transcript == null) {
+      throw new IllegalStateException("No transcript starts with " + firstPrompt);
+    }
+    if (turn >= transcript.getTurns().size()) {
+      throw new IllegalStateException(transcript.getName() + " has no turn " + turn);
+    }
+    var completions = transcript.getTurns().get(turn).getCompletions();
+    if (step >= completions.size()) {
+      throw new IllegalStateException(
+          transcript.getName() + " has no completion " + step + " in turn " + turn);
+    }
+    return completions.get(step).toString();
+  }
+}
@@ -0,0 +1,69 @@
+package io.github.deweyjose.jswarm.benchmarks.load;
+
+import io.github.deweyjose.jswarm.core.model.LLMAgentWrapper;
+import io.github.deweyjose.jswarm.core.telemetry.LLMNexusListener;
+import io.github.deweyjose.jswarm.core.telemetry.LLMRunListener;
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.Recorder;
+
+/** Records the latency of every stage of every run, in nanoseconds. */
+class StageRecorder implements LLMNexusListener {
+
+  final Recorder completions = new Recorder(3);
+  final Recorder tools = new Recorder(3);
+  final Recorder turns = new Recorder(3);
+  final LongAdder handoffs = new LongAdder();
+  final LongAdder errors = new LongAdder();
+
+  private final LLMRunListener run =
+      new LLMRunListener() {
+        @Override
+        public void onCompletion(
+            LLMAgentWrapper agent,
+            Duration latency,
+            long promptTokens,
+            long completionTokens,
+            boolean cached) {
+          completions.recordValue(latency.toNanos());
+        }
+
+        @Override
+        public void onToolCall(
+            LLMAgentWrapper agent, String function, Duration latency, Throwable error) {
+          tools.recordValue(latency.toNanos());
+          if (error != null) {
+            errors.increment();
+          }
+        }
+
+        @Override
+        public void onHandoff(LLMAgentWrapper from, LLMAgentWrapper to) {
+          handoffs.increment();
+        }
+
+        @Override
+        public void onRunEnd(
+            LLMAgentWrapper agent, int completions, Duration duration, Throwable error) {
+          if (error == null) {
+            turns.recordValue(duration.toNanos());
+          } else {
+            errors.increment();
+          }
+        }
+      };
+
+  @Override
+  public LLMRunListener onRunStart(LLMAgentWrapper agent) {
+    return run;
+  }
+
+  /** Drops everything recorded so far, e.g. during warm up. */
+  void reset() {
+    completions.reset();
+    tools.reset();
+    turns.reset();
+    handoffs.reset();
+    errors.reset();
+  }
+}
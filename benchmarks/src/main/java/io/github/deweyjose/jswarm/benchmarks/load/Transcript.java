@@ -0,0 +1,110 @@
+package io.github.deweyjose.jswarm.benchmarks.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A recorded conversation: the prompt of each turn and the chat completions the model answered it
+ * with, in order. Completions are the response bodies as captured by a wire tap, tool calls and
+ * agent transfers included, so replaying them runs the same tools and handoffs again.
+ *
+ * <pre>{"turns": [{"prompt": "...", "completions": [{"id": "chatcmpl-1", ...}, ...]}, ...]}</pre>
+ */
+public class Transcript {
+
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  /** The transcripts bundled with the benchmarks, written against the benchmark agents. */
+  private static final List<String> BUNDLED =
+      List.of("transcripts/greeting.json", "transcripts/handoff.json");
+
+  private final String name;
+  private final List<Turn> turns;
+
+  private Transcript(String name, List<Turn> turns) {
+    this.name = name;
+    this.turns = turns;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public List<Turn> getTurns() {
+    return turns;
+  }
+
+  public static Transcript read(String name, InputStream in) throws IOException {
+    var turns = new ArrayList<Turn>();
+    for (var turn : mapper.readTree(in).path("turns")) {
+      var completions = new ArrayList<JsonNode>();
+      turn.path("completions").forEach(completions::add);
+      if (completions.isEmpty()) {
+        throw new IllegalArgumentException(name + ": every turn needs at least one completion");
+      }
+      turns.add(new Turn(turn.path("prompt").asText(), completions));
+    }
+    if (turns.isEmpty()) {
+      throw new IllegalArgumentException(name + ": no turns");
+    }
+    return new Transcript(name, turns);
+  }
+
+  /** Every {@code .json} file in the directory. */
+  public static List<Transcript> load(Path directory) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files
+          .filter(file -> file.toString().endsWith(".json"))
+          .sorted()
+          .map(
+              file -> {
+                try (var in = Files.newInputStream(file)) {
+                  return read(file.getFileName().toString(), in);
+                } catch (IOException e) {
+                  throw new UncheckedIOException(e);
+                }
+              })
+          .collect(Collectors.toList());
+    }
+  }
+
+  public static List<Transcript> bundled() throws IOException {
+    var transcripts = new ArrayList<Transcript>();
+    for (var resource : BUNDLED) {
+      try (var in = Transcript.class.getClassLoader().getResourceAsStream(resource)) {
+        if (in == null) {
+          throw new IOException("Missing resource " + resource);
+        }
+        transcripts.add(read(resource, in));
+      }
+    }
+    return transcripts;
+  }
+
+  public static class Turn {
+    private final String prompt;
+    private final List<JsonNode> completions;
+
+    private Turn(String prompt, List<JsonNode> completions) {
+      this.prompt = prompt;
+      this.completions = completions;
+    }
+
+    public String getPrompt() {
+      return prompt;
+    }
+
+    public List<JsonNode> getCompletions() {
+      return completions;
+    }
+  }
+}
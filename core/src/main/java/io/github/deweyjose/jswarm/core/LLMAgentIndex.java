@@ -0,0 +1,205 @@
+package io.github.deweyjose.jswarm.core;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Agents and function schemas recorded at compile time by the jswarm annotation processor. Loading
+ * the index replaces the classpath scan at startup. Every index on the classpath is merged, one per
+ * jar that was compiled with the processor.
+ *
+ * <p>The index is JSON: {@code coordinators} and {@code agents} list class names, and {@code
+ * schemas} maps each class name to the parameter schemas of its {@code LLMFunction} methods, keyed
+ * by {@link #signature(Method)}.
+ */
+@Slf4j
+public class LLMAgentIndex {
+
+  public static final String RESOURCE = "META-INF/jswarm/agents.json";
+
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  private final ClassLoader classLoader;
+  private final Set<String> coordinators;
+  private final Set<String> agents;
+  private final Map<String, ObjectNode> schemas;
+  private final Set<URL> unindexedRoots;
+
+  private LLMAgentIndex(
+      ClassLoader classLoader,
+      Set<String> coordinators,
+      Set<String> agents,
+      Map<String, ObjectNode> schemas,
+      Set<URL> unindexedRoots) {
+    this.classLoader = classLoader;
+    this.coordinators = coordinators;
+    this.agents = agents;
+    this.schemas = schemas;
+    this.unindexedRoots = unindexedRoots;
+  }
+
+  /** Loads the index from the context class loader, see {@link #load(ClassLoader, String)}. */
+  public static LLMAgentIndex load(String agentPackage) {
+    var classLoader = Thread.currentThread().getContextClassLoader();
+    if (classLoader == null) {
+      classLoader = LLMAgentIndex.class.getClassLoader();
+    }
+    return load(classLoader, agentPackage);
+  }
+
+  /**
+   * Loads the index entries for classes in {@code agentPackage} or its subpackages. Returns null
+   * when no index lists any class in the package.
+   */
+  public static LLMAgentIndex load(ClassLoader classLoader, String agentPackage) {
+    Set<String> coordinators = new LinkedHashSet<>();
+    Set<String> agents = new LinkedHashSet<>();
+    Map<String, ObjectNode> schemas = new HashMap<>();
+
+    List<URL> resources;
+    try {
+      resources = Collections.list(classLoader.getResources(RESOURCE));
+    } catch (IOException e) {
+      log.warn("Unable to list agent indexes", e);
+      return null;
+    }
+
+    for (URL resource : resources) {
+      JsonNode index;
+      try (InputStream in = resource.openStream()) {
+        index = mapper.readTree(in);
+      } catch (IOException e) {
+        throw new IllegalStateException("Unable to read agent index " + resource, e);
+      }
+
+      index.path("coordinators").forEach(name -> addIfInPackage(coordinators, name, agentPackage));
+      index.path("agents").forEach(name -> addIfInPackage(agents, name, agentPackage));
+      index
+          .path("schemas")
+          .fields()
+          .forEachRemaining(
+              classSchemas ->
+                  classSchemas
+                      .getValue()
+                      .fields()
+                      .forEachRemaining(
+                          method ->
+                              schemas.put(
+                                  classSchemas.getKey() + "#" + method.getKey(),
+                                  (ObjectNode) method.getValue())));
+    }
+
+    if (coordinators.isEmpty() && agents.isEmpty()) {
+      return null;
+    }
+    log.debug("Loaded agent index from {}", resources);
+    return new LLMAgentIndex(
+        classLoader,
+        coordinators,
+        agents,
+        schemas,
+        unindexedRoots(classLoader, agentPackage, resources));
+  }
+
+  /**
+   * The classpath roots, directories or jars, that hold part of the agent package but no index.
+   * Jars without directory entries cannot be found this way.
+   */
+  private static Set<URL> unindexedRoots(
+      ClassLoader classLoader, String agentPackage, List<URL> indexes) {
+    Set<String> indexed =
+        indexes.stream().map(index -> root(index, RESOURCE)).collect(Collectors.toSet());
+    Set<URL> unindexed = new LinkedHashSet<>();
+    var path = agentPackage.replace('.', '/');
+    try {
+      for (URL url : Collections.list(classLoader.getResources(path))) {
+        var root = root(url, path);
+        if (root != null && !indexed.contains(root)) {
+          unindexed.add(new URL(root));
+        }
+      }
+    } catch (IOException e) {
+      log.warn("Unable to list the classpath roots of {}", agentPackage, e);
+    }
+    return unindexed;
+  }
+
+  /** The URL of a resource without the resource path, or null if it does not end with it. */
+  private static String root(URL url, String path) {
+    var external = url.toExternalForm();
+    if (external.endsWith("/")) {
+      external = external.substring(0, external.length() - 1);
+    }
+    if (!external.endsWith(path)) {
+      return null;
+    }
+    return external.substring(0, external.length() - path.length());
+  }
+
+  private static void addIfInPackage(Set<String> names, JsonNode name, String agentPackage) {
+    if (name.asText().startsWith(agentPackage + ".")) {
+      names.add(name.asText());
+    }
+  }
+
+  /**
+   * Method name and the canonical names of its erased parameter types, e.g. {@code
+   * getWeather(java.lang.String,int)}. Must match what the processor writes.
+   */
+  public static String signature(Method method) {
+    return method.getName()
+        + "("
+        + Arrays.stream(method.getParameterTypes())
+            .map(type -> type.getCanonicalName() == null ? type.getName() : type.getCanonicalName())
+            .collect(Collectors.joining(","))
+        + ")";
+  }
+
+  public Set<Class<?>> getCoordinators() {
+    return loadClasses(coordinators);
+  }
+
+  public Set<Class<?>> getAgents() {
+    return loadClasses(agents);
+  }
+
+  /**
+   * Classpath roots holding classes of the agent package that no index lists, e.g. a jar built
+   * without the processor. Their agents can only be found by scanning these roots.
+   */
+  public Set<URL> getUnindexedRoots() {
+    return unindexedRoots;
+  }
+
+  /** Returns the precomputed parameter schema of a function, or null if it was not indexed. */
+  public ObjectNode getSchema(Method method) {
+    return schemas.get(method.getDeclaringClass().getName() + "#" + signature(method));
+  }
+
+  private Set<Class<?>> loadClasses(Set<String> names) {
+    List<Class<?>> classes = new ArrayList<>();
+    for (String name : names) {
+      try {
+        classes.add(Class.forName(name, true, classLoader));
+      } catch (ClassNotFoundException e) {
+        throw new IllegalStateException("Indexed agent class not found: " + name, e);
+      }
+    }
+    return new LinkedHashSet<>(classes);
+  }
+}
@@ -3,6 +3,7 @@ package io.github.deweyjose.jswarm.core;
 import static io.github.deweyjose.jswarm.core.LLMFunctionWrapper.*;
 import static io.github.deweyjose.jswarm.core.LLMFunctionWrapper.computeFunctionParameters;
 
+import com.openai.models.ChatCompletionTool;
 import com.openai.models.FunctionDefinition;
 import io.github.deweyjose.jswarm.core.annotations.LLMAgent;
 import io.github.deweyjose.jswarm.core.annotations.LLMCoordinator;
@@ -10,17 +11,30 @@ import io.github.deweyjose.jswarm.core.annotations.LLMFunction;
 import io.github.deweyjose.jswarm.core.model.LLMAgentWrapper;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.reflections.Reflections;
+import org.reflections.util.ConfigurationBuilder;
+import org.reflections.util.FilterBuilder;
 
+/**
+ * Agents and their functions. Readers work against an immutable snapshot published through an
+ * {@link AtomicReference}, so lookups never lock and a conversation in flight keeps resolving
+ * functions while agents are registered or removed. Writers copy the snapshot, change the copy and
+ * publish it.
+ */
 @Slf4j
 public class LLMAgentRegistry {
 
-  private Map<Object, Map<String, LLMFunctionWrapper>> registeredInstanceFunctions =
-      new HashMap<>();
-  private Map<String, LLMFunctionWrapper> registeredGlobalFunctions = new HashMap<>();
+  private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(Snapshot.EMPTY);
+  private final Object writeLock = new Object();
+
+  // compile time index of the agent package, null when the classpath was scanned instead
+  private LLMAgentIndex index;
 
   private LLMAgentWrapper coordinatorAgent;
 
@@ -35,8 +49,12 @@ public class LLMAgentRegistry {
     initialize(agentPackage);
   }
 
-  public static String functionName(int hashCode, String className, String methodName) {
-    return String.format("%s_%s_%s", hashCode, className, methodName);
+  /**
+   * Function names are derived from the class and method name only, so the tools sent to the model
+   * are byte identical across JVMs and nodes. Clashes are rejected at registration.
+   */
+  public static String functionName(String className, String methodName) {
+    return String.format("%s_%s", className, methodName);
   }
 
   public LLMAgentWrapper getCoordinatorAgent() {
@@ -44,10 +62,34 @@ public class LLMAgentRegistry {
   }
 
   private void initialize(String agentPackage) {
-    Reflections reflections = new Reflections(agentPackage);
-    Set<Class<?>> annotated =
-        reflections.getTypesAnnotatedWith(LLMCoordinator.class).stream()
-            .collect(Collectors.toSet());
+    Set<Class<?>> annotated;
+    Set<Class<?>> agentClasses;
+    index = LLMAgentIndex.load(agentPackage);
+    if (index != null) {
+      annotated = new LinkedHashSet<>(index.getCoordinators());
+      agentClasses = new LinkedHashSet<>(index.getAgents());
+      var unindexed = index.getUnindexedRoots();
+      if (!unindexed.isEmpty()) {
+        // e.g. a jar built without the processor, its agents would be missed otherwise
+        log.warn("No agent index for {} in {}, scanning them", agentPackage, unindexed);
+        Reflections reflections =
+            new Reflections(
+                new ConfigurationBuilder()
+                    .setUrls(unindexed)
+                    .filterInputsBy(new FilterBuilder().includePackage(agentPackage)));
+        annotated.addAll(reflections.getTypesAnnotatedWith(LLMCoordinator.class));
+        agentClasses.addAll(reflections.getTypesAnnotatedWith(LLMAgent.class));
+      }
+    } else {
+      log.debug("No agent index for {}, scanning the classpath", agentPackage);
+      Reflections reflections = new Reflections(agentPackage);
+      annotated =
+          reflections.getTypesAnnotatedWith(LLMCoordinator.class).stream()
+              .collect(Collectors.toSet());
+      agentClasses = reflections.getTypesAnnotatedWith(LLMAgent.class);
+    }
+
+    var builder = new SnapshotBuilder(Snapshot.EMPTY);
 
     // make sure we have a coordinator agent
     if (annotated.isEmpty()) {
@@ -65,148 +107,343 @@ public class LLMAgentRegistry {
                 .description(annotation.description())
                 .instructions(annotation.instructions())
                 .build();
-        registerAgent(coordinatorAgent);
+        builder.registerAgent(coordinatorAgent);
       } catch (Exception e) {
         throw new IllegalStateException("Error instantiating coordinator agent", e);
       }
     }
 
-    reflections
-        .getTypesAnnotatedWith(LLMAgent.class)
-        .forEach(
-            clazz -> {
-              try {
-                Object instance = clazz.getDeclaredConstructor().newInstance();
-                LLMAgent annotation = instance.getClass().getAnnotation(LLMAgent.class);
-                LLMAgentWrapper wrapper =
-                    LLMAgentWrapper.builder()
-                        .agent(instance)
-                        .model(annotation.model())
-                        .description(annotation.description())
-                        .instructions(annotation.instructions())
-                        .build();
-                registerAgent(wrapper);
-              } catch (Exception e) {
-                log.error("Error Loading agent class: {}", clazz.getSimpleName(), e);
-                throw new RuntimeException(e);
-              }
-            });
-  }
-
-  private void registerAgent(LLMAgentWrapper wrapper) {
-    Method[] methods = wrapper.getAgent().getClass().getDeclaredMethods();
-    for (Method method : methods) {
-      LLMFunction methodAnnotation = method.getAnnotation(LLMFunction.class);
-      if (methodAnnotation != null) {
-        if (Modifier.isStatic(method.getModifiers())) {
-          registerGlobalFunction(
-              methodAnnotation.description(),
-              method,
-              null,
-              functionName(
-                  method.hashCode(), method.getDeclaringClass().getSimpleName(), method.getName()));
-        } else {
-          var name =
-              functionName(
-                  wrapper.getAgent().hashCode(),
-                  wrapper.getAgent().getClass().getSimpleName(),
-                  method.getName());
-          if (methodAnnotation.global()) {
-            registerGlobalFunction(
-                methodAnnotation.description(), method, wrapper.getAgent(), name);
-          } else {
-            registerInstanceFunction(
-                methodAnnotation.description(), method, wrapper.getAgent(), name);
+    agentClasses.forEach(
+        clazz -> {
+          try {
+            Object instance = clazz.getDeclaredConstructor().newInstance();
+            builder.registerAgent(agentWrapper(instance));
+          } catch (Exception e) {
+            log.error("Error Loading agent class: {}", clazz.getSimpleName(), e);
+            throw new RuntimeException(e);
           }
-        }
-      }
+        });
+
+    publish(builder.build());
+  }
+
+  private static LLMAgentWrapper agentWrapper(Object instance) {
+    LLMAgent annotation = instance.getClass().getAnnotation(LLMAgent.class);
+    if (annotation == null) {
+      throw new IllegalArgumentException(
+          instance.getClass().getSimpleName() + " is not annotated with LLMAgent");
     }
+    return LLMAgentWrapper.builder()
+        .agent(instance)
+        .model(annotation.model())
+        .description(annotation.description())
+        .instructions(annotation.instructions())
+        .build();
+  }
 
-    Method agentTransfer =
-        Arrays.stream(wrapper.getClass().getDeclaredMethods())
-            .filter(m -> m.getName().equals("getWrapper"))
-            .findFirst()
-            .orElseThrow(
-                () ->
-                    new IllegalStateException(
-                        "No getAgent method found in agent class: "
-                            + wrapper.getClass().getSimpleName()));
-
-    registerGlobalFunction(
-        wrapper.getDescription(),
-        agentTransfer,
-        wrapper,
-        functionName(
-            wrapper.getAgent().hashCode(),
-            wrapper.getAgent().getClass().getSimpleName(),
-            "getAgent"));
-
-    log.debug("Loaded Agent: {}", wrapper.getName());
-  }
-
-  private void registerInstanceFunction(
-      String description, Method method, Object agent, String name) {
-    log.debug("Registering instance LLMFunction {}", name);
-
-    registeredInstanceFunctions
-        .computeIfAbsent(agent, k -> new HashMap<>())
-        .put(
-            name,
-            builder()
-                .instance(agent)
-                .method(method)
-                .functionDefinition(
-                    FunctionDefinition.builder()
-                        .name(name)
-                        .description(description)
-                        .strict(true)
-                        .parameters(computeFunctionParameters(method))
-                        .build())
-                .hasContextParam(hasLLMFunctionContextParam(method))
-                .build());
-  }
-
-  private void registerGlobalFunction(
-      String description, Method method, Object agent, String name) {
-    log.debug("Registering global LLMFunction {}", name);
-
-    if (registeredGlobalFunctions.containsKey(name)) {
-      throw new IllegalArgumentException("Global function already registered for " + name);
-    }
-
-    registeredGlobalFunctions.put(
-        name,
-        builder()
-            .instance(agent)
-            .method(method)
-            .functionDefinition(
-                FunctionDefinition.builder()
-                    .name(name)
-                    .description(description)
-                    .strict(true)
-                    .parameters(computeFunctionParameters(method))
-                    .build())
-            .hasContextParam(hasLLMFunctionContextParam(method))
-            .build());
+  /**
+   * Registers an {@link LLMAgent} annotated instance and its functions at runtime. Every agent can
+   * transfer to it from its next completion on.
+   */
+  public LLMAgentWrapper registerAgent(Object agent) {
+    var wrapper = agentWrapper(agent);
+    synchronized (writeLock) {
+      var builder = new SnapshotBuilder(snapshot.get());
+      builder.registerAgent(wrapper);
+      publish(builder.build());
+    }
+    return wrapper;
   }
 
-  public Map<String, LLMFunctionWrapper> getFunctions(LLMAgentWrapper wrapper) {
-    Map<String, LLMFunctionWrapper> allFunctions = new HashMap<>(registeredGlobalFunctions);
-    if (registeredInstanceFunctions.containsKey(wrapper.getAgent())) {
-      allFunctions.putAll(registeredInstanceFunctions.get(wrapper.getAgent()));
+  /**
+   * Removes an agent, its functions and its transfer function. Conversations currently handled by
+   * the agent finish their turn, the model is told the agent's functions are gone on its next tool
+   * call. The coordinator cannot be removed.
+   */
+  public void unregisterAgent(LLMAgentWrapper wrapper) {
+    if (wrapper.getAgent() == coordinatorAgent.getAgent()) {
+      throw new IllegalArgumentException("The coordinator agent cannot be unregistered");
     }
-    return Collections.unmodifiableMap(allFunctions);
+    synchronized (writeLock) {
+      var builder = new SnapshotBuilder(snapshot.get());
+      builder.unregisterAgent(wrapper);
+      publish(builder.build());
+    }
+  }
+
+  private void publish(Snapshot next) {
+    // build the tool definitions up front so the first turn of every agent is as cheap as the rest
+    next.agents.forEach(next::getTools);
+    snapshot.set(next);
+  }
+
+  public List<LLMAgentWrapper> getAgents() {
+    return snapshot.get().agents;
+  }
+
+  /** Returns the registered agent with the given {@link LLMAgentWrapper#getName()}, or null. */
+  public LLMAgentWrapper getAgent(String name) {
+    return snapshot.get().agents.stream()
+        .filter(agent -> agent.getName().equals(name))
+        .findFirst()
+        .orElse(null);
+  }
+
+  /**
+   * Functions are ordered canonically: global functions sorted by name, then the agent's own
+   * functions sorted by name. Every agent's tool list therefore starts with the same global prefix,
+   * which keeps provider side prompt caching effective across agents and turns.
+   */
+  public Map<String, LLMFunctionWrapper> getFunctions(LLMAgentWrapper wrapper) {
+    return snapshot.get().getFunctions(wrapper);
+  }
+
+  /**
+   * Returns the tool definitions sent to the model for the given agent. The list is immutable and
+   * cached per agent, so callers can reuse it on every turn.
+   */
+  public List<ChatCompletionTool> getTools(LLMAgentWrapper wrapper) {
+    return snapshot.get().getTools(wrapper);
   }
 
   public LLMFunctionWrapper getFunction(String name, LLMAgentWrapper wrapper) {
-    LLMFunctionWrapper function = registeredGlobalFunctions.get(name);
+    var current = snapshot.get();
+    LLMFunctionWrapper function = current.globalFunctions.get(name);
     if (function == null) {
-      Map<String, LLMFunctionWrapper> functions =
-          registeredInstanceFunctions.get(wrapper.getAgent());
+      Map<String, LLMFunctionWrapper> functions = current.instanceFunctions.get(wrapper.getAgent());
       if (functions != null) {
         function = functions.get(name);
       }
     }
     return function;
   }
+
+  private static LLMToolResultCache resultCache(
+      LLMFunction annotation, Method method, String name) {
+    if (annotation == null || annotation.cacheTtl() <= 0) {
+      return null;
+    }
+    // results that depend on the conversation cannot be shared across calls
+    if (hasLLMFunctionContextParam(method)) {
+      throw new IllegalArgumentException(
+          "Function " + name + " takes an LLMFunctionContext and cannot be cached");
+    }
+    return new LLMToolResultCache(
+        name, Duration.ofSeconds(annotation.cacheTtl()), annotation.cacheSize());
+  }
+
+  private static LLMToolGuard toolGuard(LLMFunction annotation, String name) {
+    if (annotation == null
+        || (annotation.timeoutMillis() <= 0
+            && annotation.maxConcurrency() <= 0
+            && annotation.failureThreshold() <= 0)) {
+      return null;
+    }
+    return new LLMToolGuard(
+        name,
+        Duration.ofMillis(Math.max(0, annotation.timeoutMillis())),
+        Math.max(0, annotation.maxConcurrency()),
+        Math.max(0, annotation.failureThreshold()),
+        Duration.ofSeconds(annotation.openSeconds()));
+  }
+
+  /** The annotation is null for agent transfers, which are never cached or guarded. */
+  private LLMFunctionWrapper functionWrapper(
+      String description, Method method, Object agent, String name, LLMFunction annotation) {
+    var schema = index == null ? null : index.getSchema(method);
+    return builder()
+        .instance(agent)
+        .method(method)
+        .functionDefinition(
+            FunctionDefinition.builder()
+                .name(name)
+                .description(description)
+                .strict(true)
+                .parameters(
+                    schema == null
+                        ? computeFunctionParameters(method)
+                        : computeFunctionParameters(schema))
+                .build())
+        .hasContextParam(hasLLMFunctionContextParam(method))
+        .resultCache(resultCache(annotation, method, name))
+        .guard(toolGuard(annotation, name))
+        .build();
+  }
+
+  /** Immutable view of the registry. The per agent views are derived lazily and never change. */
+  private static final class Snapshot {
+
+    private static final Snapshot EMPTY = new Snapshot(List.of(), Map.of(), Map.of());
+
+    private final List<LLMAgentWrapper> agents;
+    private final Map<Object, Map<String, LLMFunctionWrapper>> instanceFunctions;
+    private final Map<String, LLMFunctionWrapper> globalFunctions;
+
+    private final Map<Object, Map<String, LLMFunctionWrapper>> functionsByAgent =
+        new ConcurrentHashMap<>();
+    private final Map<Object, List<ChatCompletionTool>> toolsByAgent = new ConcurrentHashMap<>();
+
+    private Snapshot(
+        List<LLMAgentWrapper> agents,
+        Map<Object, Map<String, LLMFunctionWrapper>> instanceFunctions,
+        Map<String, LLMFunctionWrapper> globalFunctions) {
+      this.agents = agents;
+      this.instanceFunctions = instanceFunctions;
+      this.globalFunctions = globalFunctions;
+    }
+
+    private Map<String, LLMFunctionWrapper> getFunctions(LLMAgentWrapper wrapper) {
+      return functionsByAgent.computeIfAbsent(
+          wrapper.getAgent(),
+          agent -> {
+            Map<String, LLMFunctionWrapper> allFunctions =
+                new LinkedHashMap<>(new TreeMap<>(globalFunctions));
+            if (instanceFunctions.containsKey(agent)) {
+              allFunctions.putAll(new TreeMap<>(instanceFunctions.get(agent)));
+            }
+            return Collections.unmodifiableMap(allFunctions);
+          });
+    }
+
+    private List<ChatCompletionTool> getTools(LLMAgentWrapper wrapper) {
+      return toolsByAgent.computeIfAbsent(
+          wrapper.getAgent(),
+          agent ->
+              getFunctions(wrapper).values().stream()
+                  .map(
+                      function ->
+                          ChatCompletionTool.builder()
+                              .function(function.getFunctionDefinition())
+                              .build())
+                  .collect(Collectors.toUnmodifiableList()));
+    }
+  }
+
+  /** Mutable copy of a snapshot, only ever touched by one writer. */
+  private final class SnapshotBuilder {
+
+    private final List<LLMAgentWrapper> agents;
+    private final Map<Object, Map<String, LLMFunctionWrapper>> instanceFunctions =
+        new HashMap<>();
+    private final Map<String, LLMFunctionWrapper> globalFunctions;
+
+    private SnapshotBuilder(Snapshot snapshot) {
+      agents = new ArrayList<>(snapshot.agents);
+      snapshot.instanceFunctions.forEach(
+          (agent, functions) -> instanceFunctions.put(agent, new LinkedHashMap<>(functions)));
+      globalFunctions = new LinkedHashMap<>(snapshot.globalFunctions);
+    }
+
+    private Snapshot build() {
+      Map<Object, Map<String, LLMFunctionWrapper>> frozen = new HashMap<>();
+      instanceFunctions.forEach(
+          (agent, functions) ->
+              frozen.put(agent, Collections.unmodifiableMap(new LinkedHashMap<>(functions))));
+      return new Snapshot(
+          Collections.unmodifiableList(new ArrayList<>(agents)),
+          Collections.unmodifiableMap(frozen),
+          Collections.unmodifiableMap(new LinkedHashMap<>(globalFunctions)));
+    }
+
+    private void registerAgent(LLMAgentWrapper wrapper) {
+      if (agents.stream().anyMatch(agent -> agent.getAgent() == wrapper.getAgent())) {
+        throw new IllegalArgumentException("Agent already registered: " + wrapper.getName());
+      }
+      agents.add(wrapper);
+      Method[] methods = wrapper.getAgent().getClass().getDeclaredMethods();
+      for (Method method : methods) {
+        LLMFunction methodAnnotation = method.getAnnotation(LLMFunction.class);
+        if (methodAnnotation != null) {
+          if (Modifier.isStatic(method.getModifiers())) {
+            var name = functionName(method.getDeclaringClass().getSimpleName(), method.getName());
+            registerGlobalFunction(
+                methodAnnotation.description(), method, null, name, methodAnnotation);
+          } else {
+            var name =
+                functionName(wrapper.getAgent().getClass().getSimpleName(), method.getName());
+            if (methodAnnotation.global()) {
+              registerGlobalFunction(
+                  methodAnnotation.description(),
+                  method,
+                  wrapper.getAgent(),
+                  name,
+                  methodAnnotation);
+            } else {
+              registerInstanceFunction(
+                  methodAnnotation.description(),
+                  method,
+                  wrapper.getAgent(),
+                  name,
+                  methodAnnotation);
+            }
+          }
+        }
+      }
+
+      Method agentTransfer =
+          Arrays.stream(wrapper.getClass().getDeclaredMethods())
+              .filter(m -> m.getName().equals("getWrapper"))
+              .findFirst()
+              .orElseThrow(
+                  () ->
+                      new IllegalStateException(
+                          "No getAgent method found in agent class: "
+                              + wrapper.getClass().getSimpleName()));
+
+      registerGlobalFunction(
+          wrapper.getDescription(),
+          agentTransfer,
+          wrapper,
+          functionName(wrapper.getAgent().getClass().getSimpleName(), "getAgent"),
+          null);
+
+      log.debug("Loaded Agent: {}", wrapper.getName());
+    }
+
+    private void unregisterAgent(LLMAgentWrapper wrapper) {
+      if (!agents.removeIf(agent -> agent.getAgent() == wrapper.getAgent())) {
+        throw new IllegalArgumentException("Agent not registered: " + wrapper.getName());
+      }
+      instanceFunctions.remove(wrapper.getAgent());
+      var agentClass = wrapper.getAgent().getClass();
+      globalFunctions
+          .values()
+          .removeIf(
+              function -> {
+                var instance = function.getInstance();
+                return instance == wrapper.getAgent()
+                    || (instance instanceof LLMAgentWrapper
+                        && ((LLMAgentWrapper) instance).getAgent() == wrapper.getAgent())
+                    || (instance == null && function.getMethod().getDeclaringClass() == agentClass);
+              });
+
+      log.debug("Unloaded Agent: {}", wrapper.getName());
+    }
+
+    private void registerInstanceFunction(
+        String description, Method method, Object agent, String name, LLMFunction annotation) {
+      log.debug("Registering instance LLMFunction {}", name);
+
+      if (globalFunctions.containsKey(name)
+          || instanceFunctions.getOrDefault(agent, Map.of()).containsKey(name)) {
+        throw new IllegalArgumentException("Function already registered for " + name);
+      }
+
+      instanceFunctions
+          .computeIfAbsent(agent, k -> new LinkedHashMap<>())
+          .put(name, functionWrapper(description, method, agent, name, annotation));
+    }
+
+    private void registerGlobalFunction(
+        String description, Method method, Object agent, String name, LLMFunction annotation) {
+      log.debug("Registering global LLMFunction {}", name);
+
+      if (globalFunctions.containsKey(name)
+          || instanceFunctions.values().stream().anyMatch(f -> f.containsKey(name))) {
+        throw new IllegalArgumentException("Global function already registered for " + name);
+      }
+
+      globalFunctions.put(name, functionWrapper(description, method, agent, name, annotation));
+    }
+  }
 }
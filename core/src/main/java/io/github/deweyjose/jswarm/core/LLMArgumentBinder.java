@@ -0,0 +1,109 @@
+package io.github.deweyjose.jswarm.core;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.github.deweyjose.jswarm.core.model.LLMFunctionContext;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps the arguments JSON of a tool call onto the parameters of an {@link
+ * io.github.deweyjose.jswarm.core.annotations.LLMFunction} method. Everything that depends only on
+ * the method signature is resolved once, and each call parses the arguments in a single streaming
+ * pass straight into the parameter types.
+ */
+public class LLMArgumentBinder {
+
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  // binders are immutable, so one per method is shared; kept per class so they go with it
+  private static final ClassValue<Map<Method, LLMArgumentBinder>> binders =
+      new ClassValue<>() {
+        @Override
+        protected Map<Method, LLMArgumentBinder> computeValue(Class<?> type) {
+          return new ConcurrentHashMap<>();
+        }
+      };
+
+  private final int parameterCount;
+  private final int contextIndex;
+  private final Map<String, Binding> bindings = new HashMap<>();
+
+  private LLMArgumentBinder(Method method) {
+    Parameter[] parameters = method.getParameters();
+    int context = -1;
+
+    for (int i = 0; i < parameters.length; i++) {
+      Parameter parameter = parameters[i];
+      if (parameter.getType().equals(LLMFunctionContext.class)) {
+        context = i;
+      } else {
+        // Build a reader from the parameter's generic type to support nested collections.
+        var reader =
+            mapper.readerFor(
+                mapper.getTypeFactory().constructType(parameter.getParameterizedType()));
+        bindings.put("arg" + i, new Binding(i, reader));
+      }
+    }
+
+    this.parameterCount = parameters.length;
+    this.contextIndex = context;
+  }
+
+  /** Returns the binder of the method, built on first use and shared after that. */
+  public static LLMArgumentBinder of(Method method) {
+    return binders.get(method.getDeclaringClass()).computeIfAbsent(method, LLMArgumentBinder::new);
+  }
+
+  public Object[] bind(String argumentsJson, LLMFunctionContext context) throws IOException {
+    Object[] args = new Object[parameterCount];
+    boolean[] bound = new boolean[parameterCount];
+
+    if (contextIndex >= 0) {
+      args[contextIndex] = context;
+      bound[contextIndex] = true;
+    }
+
+    try (JsonParser parser = mapper.getFactory().createParser(argumentsJson)) {
+      JsonToken token = parser.nextToken();
+      if (token != null) {
+        if (token != JsonToken.START_OBJECT) {
+          throw new IllegalArgumentException("Function arguments must be a JSON object");
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          Binding binding = bindings.get(parser.getCurrentName());
+          parser.nextToken();
+          if (binding == null) {
+            parser.skipChildren();
+          } else {
+            args[binding.index] = binding.reader.readValue(parser);
+            bound[binding.index] = true;
+          }
+        }
+      }
+    }
+
+    for (int i = 0; i < parameterCount; i++) {
+      if (!bound[i]) {
+        throw new IllegalArgumentException("Missing argument for parameter: arg" + i);
+      }
+    }
+    return args;
+  }
+
+  private static class Binding {
+    private final int index;
+    private final ObjectReader reader;
+
+    private Binding(int index, ObjectReader reader) {
+      this.index = index;
+      this.reader = reader;
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package io.github.deweyjose.jswarm.core;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+public final class LLMExecutors {
+
+  private LLMExecutors() {}
+
+  /**
+   * Shared executor used for tool dispatch when the caller does not supply one. Uses a virtual
+   * thread per task when running on Java 21+, otherwise a cached pool of daemon threads.
+   */
+  public static ExecutorService defaultExecutor() {
+    return Holder.DEFAULT;
+  }
+
+  static ExecutorService newDefaultExecutor() {
+    try {
+      return (ExecutorService)
+          Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      log.debug("Virtual threads not available, falling back to a cached thread pool");
+      var counter = new AtomicInteger();
+      return Executors.newCachedThreadPool(
+          runnable -> {
+            var thread = new Thread(runnable, "jswarm-tool-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          });
+    }
+  }
+
+  private static final class Holder {
+    private static final ExecutorService DEFAULT = newDefaultExecutor();
+  }
+}
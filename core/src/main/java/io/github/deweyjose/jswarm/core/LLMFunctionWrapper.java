@@ -1,32 +1,83 @@
 package io.github.deweyjose.jswarm.core;
 
-import com.fasterxml.jackson.databind.JavaType;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.openai.core.JsonValue;
 import com.openai.models.FunctionDefinition;
 import com.openai.models.FunctionParameters;
 import io.github.deweyjose.jswarm.core.model.LLMFunctionContext;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
-import java.lang.reflect.Parameter;
+import java.lang.reflect.Modifier;
 import java.util.Arrays;
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 
 @Getter
-@Builder
 @Slf4j
 public class LLMFunctionWrapper {
 
-  private static final ObjectMapper mapper = new ObjectMapper();
-
   private final Object instance;
   private final Method method;
   private final boolean hasContextParam;
   private final FunctionDefinition functionDefinition;
 
+  /** Null unless the function opted into caching. */
+  private final LLMToolResultCache resultCache;
+
+  /** Null unless the function set a timeout, concurrency limit or failure threshold. */
+  private final LLMToolGuard guard;
+
+  @Getter(AccessLevel.NONE)
+  private final MethodHandle invoker;
+
+  @Getter(AccessLevel.NONE)
+  private final LLMArgumentBinder argumentBinder;
+
+  @Builder
+  public LLMFunctionWrapper(
+      Object instance,
+      Method method,
+      boolean hasContextParam,
+      FunctionDefinition functionDefinition,
+      LLMToolResultCache resultCache,
+      LLMToolGuard guard) {
+    this.instance = instance;
+    this.method = method;
+    this.hasContextParam = hasContextParam;
+    this.functionDefinition = functionDefinition;
+    this.resultCache = resultCache;
+    this.guard = guard;
+    this.invoker = createInvoker(method, instance);
+    this.argumentBinder = LLMArgumentBinder.of(method);
+  }
+
+  /**
+   * Binds the method, and its instance when not static, into a handle of type {@code
+   * (Object[])Object} once, so each call skips reflective access checks and can be inlined by the
+   * JIT.
+   */
+  @SneakyThrows
+  static MethodHandle createInvoker(Method method, Object instance) {
+    MethodHandle handle;
+    try {
+      handle = MethodHandles.lookup().unreflect(method);
+    } catch (IllegalAccessException e) {
+      method.setAccessible(true);
+      handle = MethodHandles.lookup().unreflect(method);
+    }
+    if (!Modifier.isStatic(method.getModifiers())) {
+      handle = handle.bindTo(instance);
+    }
+    return handle
+        .asSpreader(Object[].class, method.getParameterCount())
+        .asType(MethodType.methodType(Object.class, Object[].class));
+  }
+
   public static boolean hasLLMFunctionContextParam(Method method) {
     Class<?>[] params = method.getParameterTypes();
 
@@ -55,6 +106,11 @@ public class LLMFunctionWrapper {
 
     log.debug("Generated schema for function {}: {}", method.getName(), schema.toPrettyString());
 
+    return computeFunctionParameters(schema);
+  }
+
+  /** Builds the function parameters from a schema generated earlier, e.g. by the processor. */
+  public static FunctionParameters computeFunctionParameters(ObjectNode schema) {
     return FunctionParameters.builder()
         .putAdditionalProperty("type", JsonValue.from(schema.get("type")))
         .putAdditionalProperty("properties", JsonValue.from(schema.get("properties")))
@@ -63,36 +119,36 @@ public class LLMFunctionWrapper {
         .build();
   }
 
+  /** Maps the arguments with the binder shared by every wrapper of the method. */
   @SneakyThrows
   public static Object[] mapArguments(
       Method method, String argumentsJson, LLMFunctionContext context) {
+    return LLMArgumentBinder.of(method).bind(argumentsJson, context);
+  }
 
-    JsonNode jsonNode = mapper.readTree(argumentsJson);
-    Parameter[] parameters = method.getParameters();
-    Object[] args = new Object[parameters.length];
-
-    for (int i = 0; i < parameters.length; i++) {
-      Parameter parameter = parameters[i];
-      if (parameter.getType().equals(LLMFunctionContext.class)) {
-        args[i] = context;
-      } else {
-        String key = "arg" + i;
-        JsonNode valueNode = jsonNode.get(key);
-        if (valueNode == null) {
-          throw new IllegalArgumentException("Missing argument for parameter: " + key);
-        }
-        // Build a JavaType from the parameter's generic type to support nested collections.
-        JavaType javaType = mapper.getTypeFactory().constructType(parameter.getParameterizedType());
-        Object value = mapper.convertValue(valueNode, javaType);
-        args[i] = value;
-      }
+  @SuppressWarnings("unchecked")
+  public <R> R invoke(LLMFunctionContext functionContext, String arguments) throws Exception {
+    if (resultCache == null) {
+      return invokeGuarded(argumentBinder.bind(arguments, functionContext));
     }
-    return args;
+
+    var key = resultCache.key(arguments);
+    var result = resultCache.get(key);
+    if (result == null) {
+      result = invokeGuarded(argumentBinder.bind(arguments, functionContext));
+      resultCache.put(key, result);
+    }
+    return (R) result;
+  }
+
+  private <R> R invokeGuarded(Object[] arguments) throws Exception {
+    return guard == null ? invokeMapped(arguments) : guard.call(() -> invokeMapped(arguments));
   }
 
+  /** Invokes the function with already mapped arguments. Exceptions thrown by it are not wrapped. */
+  @SneakyThrows
   @SuppressWarnings("unchecked")
-  public <R> R invoke(LLMFunctionContext functionContext, String arguments) throws Exception {
-    var mappedArgs = mapArguments(method, arguments, functionContext);
-    return (R) method.invoke(instance, mappedArgs);
+  public <R> R invokeMapped(Object[] arguments) {
+    return (R) (Object) invoker.invokeExact(arguments);
   }
 }
@@ -1,26 +1,53 @@
 package io.github.deweyjose.jswarm.core;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.openai.client.OpenAIClient;
 import com.openai.client.okhttp.OpenAIOkHttpClient;
 import com.openai.core.JsonValue;
+import com.openai.core.http.StreamResponse;
 import com.openai.models.ChatCompletion;
+import com.openai.models.ChatCompletionChunk;
 import com.openai.models.ChatCompletionCreateParams;
 import com.openai.models.ChatCompletionMessage;
 import com.openai.models.ChatCompletionMessageParam;
 import com.openai.models.ChatCompletionMessageToolCall;
-import com.openai.models.ChatCompletionSystemMessageParam;
-import com.openai.models.ChatCompletionTool;
+import com.openai.models.ChatCompletionStreamOptions;
 import com.openai.models.ChatCompletionToolMessageParam;
 import com.openai.models.ChatCompletionUserMessageParam;
+import com.openai.models.CompletionUsage;
+import io.github.deweyjose.jswarm.core.cache.LLMCompletionCache;
+import io.github.deweyjose.jswarm.core.history.LLMHistoryCompactor;
 import io.github.deweyjose.jswarm.core.model.LLMAgentWrapper;
 import io.github.deweyjose.jswarm.core.model.LLMFunctionContext;
 import io.github.deweyjose.jswarm.core.model.LLMResponse;
+import io.github.deweyjose.jswarm.core.model.LLMStopReason;
 import io.github.deweyjose.jswarm.core.model.LLMToolResponse;
+import io.github.deweyjose.jswarm.core.model.LLMUsage;
+import io.github.deweyjose.jswarm.core.retry.LLMRetrier;
+import io.github.deweyjose.jswarm.core.routing.LLMIntentRouter;
+import io.github.deweyjose.jswarm.core.scheduler.LLMRequestPermit;
+import io.github.deweyjose.jswarm.core.scheduler.LLMRequestScheduler;
+import io.github.deweyjose.jswarm.core.store.LLMConversationStore;
+import io.github.deweyjose.jswarm.core.telemetry.LLMNexusListener;
+import io.github.deweyjose.jswarm.core.telemetry.LLMRunListener;
+import io.github.deweyjose.jswarm.core.wire.LLMWireExchange;
+import io.github.deweyjose.jswarm.core.wire.LLMWireFormat;
+import io.github.deweyjose.jswarm.core.wire.LLMWireTap;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import lombok.Setter;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 
@@ -29,6 +56,65 @@ public class LLMNexus {
 
   private final LLMAgentRegistry functionRegistry;
   private final OpenAIClient openAIClient;
+  private final LLMRequestAssembler requestAssembler = new LLMRequestAssembler();
+
+  /**
+   * When enabled, the tool calls of a single assistant message are dispatched concurrently on the
+   * {@link #toolExecutor}. Results are still appended to the history in tool call order.
+   */
+  @Setter private boolean parallelToolCalls = false;
+
+  @Setter private Executor toolExecutor = LLMExecutors.defaultExecutor();
+
+  /** Global wire tap, overridden per conversation by {@link LLMWireTap#CONTEXT_KEY}. */
+  @Setter private LLMWireTap wireTap;
+
+  /** Runs before every completion to keep the history within the agent's budget. */
+  @Setter private LLMHistoryCompactor historyCompactor;
+
+  /** Serves exact repeats of a completion request without calling the model. */
+  @Setter private LLMCompletionCache completionCache;
+
+  /** Stores the messages added by every session turn, see {@link #resumeSession(String, int)}. */
+  @Setter private LLMConversationStore conversationStore;
+
+  /**
+   * Runs the steps of {@code runAsync} that may block: history compaction, completion cache
+   * lookups and stores, and conversation store appends. They never run on the caller thread or on
+   * the thread of the client that completed the request. The attempts of a blocking {@code run}
+   * with a {@link #retrier} are sent from it too.
+   */
+  @Setter private Executor blockingExecutor = LLMExecutors.defaultExecutor();
+
+  /**
+   * Admits completion requests within each model's rate limits. Requests wait in a queue per model
+   * and conversations take turns, each history list counts as one conversation.
+   */
+  @Setter private LLMRequestScheduler requestScheduler;
+
+  /**
+   * Retries, hedges and bounds the completions of {@code run} and {@code runAsync}. Streamed runs
+   * are only held to the deadline: their chunks may already have reached the listener, so a stream
+   * is neither retried nor hedged.
+   */
+  @Setter private LLMRetrier retrier;
+
+  /** Observes every run, see {@link io.github.deweyjose.jswarm.core.telemetry}. */
+  @Setter private LLMNexusListener listener;
+
+  /** Limits the tokens and completions of every run, see {@link LLMResponse#getStopReason()}. */
+  @Setter private LLMRunBudget runBudget;
+
+  /**
+   * When enabled, an assistant message that only transfers to another agent is resolved locally.
+   * The transfer and its tool response are left out of the history and the target agent is asked
+   * right away, so it answers the prompt as if it had been addressed directly and later requests
+   * carry no routing messages.
+   */
+  @Setter private boolean fastHandoff = false;
+
+  /** Sends prompts that would start at the coordinator straight to an agent when it is sure. */
+  @Setter private LLMIntentRouter intentRouter;
 
   public LLMNexus(String apiKey, String functionRegistryPackage) {
     this.openAIClient = OpenAIOkHttpClient.builder().apiKey(apiKey).build();
@@ -50,57 +136,361 @@ public class LLMNexus {
     this.functionRegistry = new LLMAgentRegistry(functionRegistryPackage);
   }
 
-  @SneakyThrows
   private ChatCompletion getChatCompletion(
-      LLMAgentWrapper agent, List<ChatCompletionMessageParam> history) {
+      LLMAgentWrapper agent,
+      List<ChatCompletionMessageParam> history,
+      Map<String, Object> context,
+      Run run) {
+    compactHistory(agent, history);
+    var params = completionParams(agent, history);
+    long start = System.nanoTime();
+    var cacheKey = completionCacheKey(params);
+    var cached = cachedCompletion(cacheKey);
+    if (cached != null) {
+      run.completed(agent, start, cached.usage(), true);
+      return cached;
+    }
+
+    var tap = wireTap(context);
+    var completion = complete(agent, history, params, run.deadline);
+    run.completed(agent, start, completion.usage(), false);
+    if (tap != null) {
+      capture(
+          tap,
+          LLMWireExchange.builder()
+              .agent(agent.getName())
+              .request(params)
+              .response(completion)
+              .latency(Duration.ofNanos(System.nanoTime() - start)));
+    }
+    cacheCompletion(cacheKey, agent, completion);
+    return completion;
+  }
+
+  private ChatCompletion complete(
+      LLMAgentWrapper agent,
+      Object conversation,
+      ChatCompletionCreateParams params,
+      long deadline) {
+    if (retrier == null) {
+      var permit = acquirePermit(agent, conversation, params);
+      ChatCompletion completion = null;
+      try {
+        completion = chatCompletion(params);
+        return completion;
+      } finally {
+        releasePermit(permit, completion);
+      }
+    }
+    // attempts run off the caller thread so a hedge or the deadline does not wait on a slow one
+    return retrier.call(
+        agent.getModel(),
+        () ->
+            scheduled(
+                agent,
+                conversation,
+                params,
+                () ->
+                    CompletableFuture.supplyAsync(() -> chatCompletion(params), blockingExecutor)),
+        deadline);
+  }
+
+  private CompletableFuture<ChatCompletion> completeAsync(
+      LLMAgentWrapper agent,
+      Object conversation,
+      ChatCompletionCreateParams params,
+      long deadline) {
+    Supplier<CompletableFuture<ChatCompletion>> attempt =
+        () -> scheduled(agent, conversation, params, () -> chatCompletionAsync(params));
+    return retrier == null ? attempt.get() : retrier.callAsync(agent.getModel(), attempt, deadline);
+  }
+
+  /**
+   * Sends one request once the scheduler, if any, admits it. Cancelling the returned future takes
+   * a waiting request out of the queue, so an attempt the {@link #retrier} gave up on is never
+   * sent.
+   */
+  private CompletableFuture<ChatCompletion> scheduled(
+      LLMAgentWrapper agent,
+      Object conversation,
+      ChatCompletionCreateParams params,
+      Supplier<CompletableFuture<ChatCompletion>> request) {
+    var admitted = acquirePermitAsync(agent, conversation, params);
+    var result = new CompletableFuture<ChatCompletion>();
+    result.whenComplete(
+        (completion, error) -> {
+          if (result.isCancelled()) {
+            admitted.cancel(false);
+          }
+        });
+    admitted.whenComplete(
+        (permit, error) -> {
+          if (error != null) {
+            result.completeExceptionally(error);
+            return;
+          }
+          if (result.isDone()) {
+            // cancelled just as it was admitted, nothing was sent
+            releaseUnused(permit);
+            return;
+          }
+          CompletableFuture<ChatCompletion> sent;
+          try {
+            sent = request.get();
+          } catch (Throwable e) {
+            releaseUnused(permit);
+            result.completeExceptionally(e);
+            return;
+          }
+          sent.whenComplete(
+              (completion, failure) -> {
+                releasePermit(permit, completion);
+                if (failure != null) {
+                  result.completeExceptionally(failure);
+                } else {
+                  result.complete(completion);
+                }
+              });
+          result.whenComplete(
+              (completion, failure) -> {
+                if (result.isCancelled()) {
+                  sent.cancel(true);
+                }
+              });
+        });
+    return result;
+  }
+
+  /**
+   * Starts a run at {@code agent}, its deadline is set by the {@link #retrier} and its limits by
+   * the {@link #runBudget}, less what the session has {@code spent} already.
+   */
+  private Run startRun(LLMAgentWrapper agent, LLMUsage spent) {
+    var run =
+        new Run(
+            agent,
+            retrier == null ? Long.MAX_VALUE : retrier.deadline(),
+            listener == null ? LLMRunListener.NOOP : listener.onRunStart(agent));
+    if (runBudget != null) {
+      if (runBudget.getMaxTokens() > 0) {
+        run.maxTokens = runBudget.getMaxTokens();
+      }
+      if (runBudget.getMaxSessionTokens() > 0) {
+        run.maxTokens =
+            Math.min(run.maxTokens, runBudget.getMaxSessionTokens() - spent.getTotalTokens());
+      }
+      if (runBudget.getMaxCompletions() > 0) {
+        run.maxCompletions = runBudget.getMaxCompletions();
+      }
+    }
+    return run;
+  }
+
+  private LLMRequestPermit acquirePermit(
+      LLMAgentWrapper agent, Object conversation, ChatCompletionCreateParams params) {
+    return requestScheduler == null
+        ? null
+        : requestScheduler.acquire(
+            agent.getModel(), conversation, requestScheduler.estimate(params));
+  }
+
+  private CompletableFuture<LLMRequestPermit> acquirePermitAsync(
+      LLMAgentWrapper agent, Object conversation, ChatCompletionCreateParams params) {
+    return requestScheduler == null
+        ? CompletableFuture.completedFuture(null)
+        : requestScheduler.acquireAsync(
+            agent.getModel(), conversation, requestScheduler.estimate(params));
+  }
+
+  /** Releases the permit with the tokens the completion actually used, when it reports them. */
+  private void releasePermit(LLMRequestPermit permit, ChatCompletion completion) {
+    releasePermit(permit, Optional.ofNullable(completion).flatMap(ChatCompletion::usage));
+  }
+
+  private void releasePermit(LLMRequestPermit permit, Optional<CompletionUsage> usage) {
+    if (permit != null) {
+      permit.release(usage.map(used -> used.totalTokens()).orElse(-1L));
+    }
+  }
+
+  /** Releases the permit of a request that was never sent, its whole estimate is returned. */
+  private static void releaseUnused(LLMRequestPermit permit) {
+    if (permit != null) {
+      permit.release(0);
+    }
+  }
+
+  private String completionCacheKey(ChatCompletionCreateParams params) {
+    return completionCache == null ? null : LLMCompletionCache.key(params);
+  }
+
+  private ChatCompletion cachedCompletion(String cacheKey) {
+    if (cacheKey == null) {
+      return null;
+    }
+    try {
+      var completion = completionCache.get(cacheKey);
+      if (completion != null) {
+        log.debug("Completion cache hit {}", cacheKey);
+      }
+      return completion;
+    } catch (Exception e) {
+      log.warn("Completion cache lookup failed", e);
+      return null;
+    }
+  }
+
+  private void cacheCompletion(String cacheKey, LLMAgentWrapper agent, ChatCompletion completion) {
+    if (cacheKey == null || !isCacheable(completion, agent)) {
+      return;
+    }
+    try {
+      completionCache.put(cacheKey, completion);
+    } catch (Exception e) {
+      log.warn("Completion cache store failed", e);
+    }
+  }
 
-    List<ChatCompletionMessageParam> messages = new ArrayList<>();
-    messages.add(
-        ChatCompletionMessageParam.ofSystem(
-            ChatCompletionSystemMessageParam.builder().content(agent.getInstructions()).build()));
+  /**
+   * Answers and agent transfers can be replayed. Any other tool call is never cached, a hit would
+   * replay a call whose arguments the model chose for a different moment.
+   */
+  private boolean isCacheable(ChatCompletion completion, LLMAgentWrapper agent) {
+    return completion.choices().get(0).message().toolCalls().orElse(List.of()).stream()
+        .allMatch(toolCall -> isTransfer(toolCall, agent));
+  }
 
-    log.debug("Adding system message: {}", agent.getInstructions());
+  private boolean isTransfer(ChatCompletionMessageToolCall toolCall, LLMAgentWrapper agent) {
+    var function = functionRegistry.getFunction(toolCall.function().name(), agent);
+    return function != null
+        && function.getMethod().getDeclaringClass().equals(LLMAgentWrapper.class);
+  }
 
-    messages.addAll(history);
+  /**
+   * The agent a message hands off to when it can skip the tool dispatch, see {@link
+   * #fastHandoff}, otherwise null. Two fast handoffs in a row go through the regular dispatch
+   * instead, so agents that keep transferring to each other still change the history and cannot
+   * loop on the same request.
+   */
+  private LLMAgentWrapper fastHandoffTarget(
+      ChatCompletionMessage message, LLMAgentWrapper agent, Run run) {
+    var toolCalls = message.toolCalls().orElse(List.of());
+    if (!fastHandoff || run.handedOff || toolCalls.isEmpty()) {
+      return null;
+    }
+    for (var toolCall : toolCalls) {
+      if (!isTransfer(toolCall, agent)) {
+        return null;
+      }
+    }
+    // like applyToolResponses, the first transfer wins
+    var target =
+        (LLMAgentWrapper)
+            functionRegistry.getFunction(toolCalls.get(0).function().name(), agent).getInstance();
+    return target == agent ? null : target;
+  }
 
-    var paramsBuilder =
-        ChatCompletionCreateParams.builder()
-            .model(agent.getModel())
-            .addSystemMessage(agent.getInstructions())
-            .messages(messages);
+  /**
+   * The agent a run should start at: the one the {@link #intentRouter} picks if the run would
+   * start at the coordinator, otherwise {@code agent}. A failing router falls back to the
+   * coordinator.
+   */
+  private LLMAgentWrapper route(LLMAgentWrapper agent, String prompt, Run run) {
+    if (intentRouter == null || agent != functionRegistry.getCoordinatorAgent()) {
+      return agent;
+    }
+    var agents =
+        functionRegistry.getAgents().stream()
+            .filter(candidate -> candidate != agent)
+            .collect(Collectors.toList());
+    LLMAgentWrapper routed;
+    try {
+      routed = intentRouter.route(prompt, agents);
+    } catch (Exception e) {
+      log.warn("Intent router failed", e);
+      routed = null;
+    }
+    if (routed != null && !agents.contains(routed)) {
+      log.warn("Intent router picked unknown agent {}", routed.getName());
+      routed = null;
+    }
+    run.listener.onRoute(routed);
+    if (routed == null) {
+      return agent;
+    }
+    log.debug("Routed prompt to {}", routed.getName());
+    run.agent = routed;
+    return routed;
+  }
 
-    for (var entry : functionRegistry.getFunctions(agent).entrySet()) {
-      var name = entry.getKey();
-      var function = entry.getValue();
-      paramsBuilder.addTool(
-          ChatCompletionTool.builder().function(function.getFunctionDefinition()).build());
-      log.debug(
-          "Adding function {}, {} to chat completion",
-          name,
-          function.getFunctionDefinition().description().get());
+  private LLMAgentWrapper handoff(Run run, LLMAgentWrapper from, LLMAgentWrapper to) {
+    run.listener.onHandoff(from, to);
+    run.agent = to;
+    return to;
+  }
+
+  private void compactHistory(LLMAgentWrapper agent, List<ChatCompletionMessageParam> history) {
+    if (historyCompactor != null) {
+      historyCompactor.compact(agent, history);
+    }
+  }
+
+  /** Returns the tap for this conversation if the next exchange is sampled, otherwise null. */
+  private LLMWireTap wireTap(Map<String, Object> context) {
+    var tap = wireTap;
+    if (context != null && context.get(LLMWireTap.CONTEXT_KEY) instanceof LLMWireTap) {
+      tap = (LLMWireTap) context.get(LLMWireTap.CONTEXT_KEY);
+    }
+    return tap != null && tap.sample() ? tap : null;
+  }
+
+  private void capture(LLMWireTap tap, LLMWireExchange.LLMWireExchangeBuilder exchange) {
+    try {
+      tap.capture(exchange.build());
+    } catch (Exception e) {
+      log.warn("Wire tap failed to capture exchange", e);
     }
+  }
+
+  private ChatCompletionCreateParams completionParams(
+      LLMAgentWrapper agent, List<ChatCompletionMessageParam> history) {
+    var tools = functionRegistry.getTools(agent);
+    log.debug("Adding {} tools to chat completion for agent {}", tools.size(), agent.getName());
 
-    log.debug("History:");
-    for (var message : history) {
-      log.debug("  {}", message);
+    if (log.isDebugEnabled()) {
+      log.debug("History:");
+      for (var message : history) {
+        log.debug("  {}", message);
+      }
     }
 
-    return chatCompletion(paramsBuilder.build());
+    return requestAssembler.assemble(agent, tools, history);
   }
 
   @SneakyThrows
   ChatCompletion chatCompletion(ChatCompletionCreateParams params) {
     var completion = openAIClient.chat().completions().create(params);
     log.debug("Chat completion: {}", completion);
-    log.debug("Chat completion json: {}", (new ObjectMapper()).writeValueAsString(completion));
+    if (log.isDebugEnabled()) {
+      log.debug("Chat completion json: {}", LLMWireFormat.toJson(completion));
+    }
     return completion;
   }
 
+  CompletableFuture<ChatCompletion> chatCompletionAsync(ChatCompletionCreateParams params) {
+    return openAIClient.async().chat().completions().create(params);
+  }
+
+  StreamResponse<ChatCompletionChunk> chatCompletionStreaming(ChatCompletionCreateParams params) {
+    return openAIClient.chat().completions().createStreaming(params);
+  }
+
   @SneakyThrows
   private LLMToolResponse handleToolCall(
       ChatCompletionMessageToolCall toolCall,
       LLMAgentWrapper agent,
-      LLMFunctionContext functionContext) {
+      LLMFunctionContext functionContext,
+      Run run) {
     var function = toolCall.function();
     var functionName = function.name();
     var functionArgs = function.arguments();
@@ -126,7 +516,23 @@ public class LLMNexus {
           .build();
     }
 
-    Object result = functionWrapper.invoke(functionContext, functionArgs);
+    Object result;
+    Throwable error = null;
+    long start = System.nanoTime();
+    try {
+      result = functionWrapper.invoke(functionContext, functionArgs);
+    } catch (RejectedExecutionException | TimeoutException e) {
+      // the guard gave up on the tool, let the model know right away instead of failing the run
+      log.warn("Tool call {} failed: {}", functionName, e.getMessage());
+      result = "Error: " + e.getMessage();
+      error = e;
+    } catch (Throwable e) {
+      error = e;
+      throw e;
+    } finally {
+      run.listener.onToolCall(
+          agent, functionName, Duration.ofNanos(System.nanoTime() - start), error);
+    }
 
     var responseBuilder = LLMToolResponse.builder();
     var completionMessageBuilder =
@@ -153,8 +559,188 @@ public class LLMNexus {
     return responseBuilder.message(completionMessageBuilder.build()).build();
   }
 
+  /**
+   * Runs the tool calls of one assistant message. All calls are resolved against the agent that
+   * issued them. The returned responses are in the same order as {@code toolCalls}, regardless of
+   * whether they ran sequentially or in parallel.
+   */
+  private List<LLMToolResponse> dispatchToolCalls(
+      List<ChatCompletionMessageToolCall> toolCalls,
+      LLMAgentWrapper agent,
+      LLMFunctionContext functionContext,
+      Run run) {
+    if (!parallelToolCalls || toolCalls.size() < 2) {
+      return toolCalls.stream()
+          .map(toolCall -> handleToolCall(toolCall, agent, functionContext, run))
+          .collect(Collectors.toList());
+    }
+
+    var futures =
+        toolCalls.stream()
+            .map(
+                toolCall ->
+                    CompletableFuture.supplyAsync(
+                        () -> handleToolCall(toolCall, agent, functionContext, run), toolExecutor))
+            .collect(Collectors.toList());
+
+    return joinAll(futures);
+  }
+
+  /**
+   * Non blocking variant of {@link #dispatchToolCalls}. Tools always run on the {@link
+   * #toolExecutor}, either chained one after another or all at once when parallel tool calls are
+   * enabled.
+   */
+  private CompletableFuture<List<LLMToolResponse>> dispatchToolCallsAsync(
+      List<ChatCompletionMessageToolCall> toolCalls,
+      LLMAgentWrapper agent,
+      LLMFunctionContext functionContext,
+      Run run) {
+    if (parallelToolCalls) {
+      var futures =
+          toolCalls.stream()
+              .map(
+                  toolCall ->
+                      CompletableFuture.supplyAsync(
+                          () -> handleToolCall(toolCall, agent, functionContext, run),
+                          toolExecutor))
+              .collect(Collectors.toList());
+      return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+          .thenApply(ignored -> joinAll(futures));
+    }
+
+    CompletableFuture<List<LLMToolResponse>> result =
+        CompletableFuture.completedFuture(new ArrayList<>());
+    for (var toolCall : toolCalls) {
+      result =
+          result.thenApplyAsync(
+              responses -> {
+                responses.add(handleToolCall(toolCall, agent, functionContext, run));
+                return responses;
+              },
+              toolExecutor);
+    }
+    return result;
+  }
+
+  /**
+   * Passes every chunk of the stream to {@code consumer}. When the run has a deadline the stream is
+   * closed once it passes and the read fails with a {@link TimeoutException}.
+   */
+  private void readStream(
+      StreamResponse<ChatCompletionChunk> stream,
+      Consumer<ChatCompletionChunk> consumer,
+      Run run)
+      throws TimeoutException {
+    var timeout = retrier == null ? null : retrier.atDeadline(run.deadline, stream::close);
+    if (timeout == null) {
+      stream.stream().forEach(consumer);
+      return;
+    }
+    try {
+      stream.stream().forEach(consumer);
+    } catch (RuntimeException e) {
+      if (timeout.cancel(false)) {
+        throw e;
+      }
+      var timedOut = new TimeoutException("Deadline passed while streaming");
+      timedOut.initCause(e);
+      throw timedOut;
+    }
+    // a stream closed under the reader may just end early
+    if (!timeout.cancel(false)) {
+      throw new TimeoutException("Deadline passed while streaming");
+    }
+  }
+
+  /**
+   * Starts a tool call of a message that is still streaming. Like {@link #dispatchToolCallsAsync}
+   * it runs on the {@link #toolExecutor}, right away when parallel tool calls are enabled and
+   * otherwise once the calls {@code dispatched} before it are done.
+   */
+  private CompletableFuture<LLMToolResponse> dispatchStreamedToolCall(
+      Collection<CompletableFuture<LLMToolResponse>> dispatched, Supplier<LLMToolResponse> call) {
+    if (parallelToolCalls || dispatched.isEmpty()) {
+      return CompletableFuture.supplyAsync(call, toolExecutor);
+    }
+    CompletableFuture<LLMToolResponse> previous = null;
+    for (var future : dispatched) {
+      previous = future;
+    }
+    return previous.thenApplyAsync(ignored -> call.get(), toolExecutor);
+  }
+
+  @SneakyThrows
+  private static <T> List<T> joinAll(List<CompletableFuture<T>> futures) {
+    try {
+      return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+    } catch (CompletionException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Appends the tool responses to the history and returns the agent that should handle the next
+   * completion. If more than one tool call transferred to an agent, the first transfer in tool
+   * call order wins and the others are ignored.
+   */
+  private LLMAgentWrapper applyToolResponses(
+      List<LLMToolResponse> toolResponses,
+      LLMAgentWrapper agent,
+      List<ChatCompletionMessageParam> history,
+      Run run) {
+    LLMAgentWrapper transfer = null;
+
+    for (var toolResponse : toolResponses) {
+      history.add(
+          ChatCompletionMessageParam.ofTool(
+              ChatCompletionToolMessageParam.builder()
+                  .toolCallId(toolResponse.getMessage().toolCalls().get().get(0).id())
+                  .content(toolResponse.getMessage().content().get())
+                  .build()));
+
+      if (toolResponse.getAgent() != null) {
+        if (transfer == null) {
+          transfer = toolResponse.getAgent();
+        } else {
+          log.warn(
+              "Ignoring transfer to agent {}, already transferring to {}",
+              toolResponse.getAgent().getName(),
+              transfer.getName());
+        }
+      }
+    }
+
+    return transfer == null ? agent : handoff(run, agent, transfer);
+  }
+
   public LLMResponse run(
       String prompt, List<ChatCompletionMessageParam> history, Map<String, Object> context) {
+    // we start off with the coordinator
+    return run(functionRegistry.getCoordinatorAgent(), prompt, history, context, LLMUsage.ZERO);
+  }
+
+  /**
+   * Runs a turn of the session, starting at the agent that handled its previous turn. Turns of the
+   * same session run one at a time.
+   */
+  public LLMResponse run(LLMSession session, String prompt) {
+    return session.turn(
+        () -> {
+          var turn = session.startTurn();
+          return completeTurn(
+              session,
+              turn,
+              run(startingAgent(session), prompt, turn, session.getContext(), session.getUsage()));
+        });
+  }
+
+  private LLMResponse run(
+      LLMAgentWrapper agent,
+      String prompt,
+      List<ChatCompletionMessageParam> history,
+      Map<String, Object> context,
+      LLMUsage spent) {
 
     history.add(
         ChatCompletionMessageParam.ofUser(
@@ -162,43 +748,492 @@ public class LLMNexus {
 
     ChatCompletionMessage message;
     boolean hasToolCalls;
-    // we start off with the coordinator
-    LLMAgentWrapper agent = functionRegistry.getCoordinatorAgent();
+    var run = startRun(agent, spent);
+    agent = route(agent, prompt, run);
 
-    do {
-      var completion = getChatCompletion(agent, history);
-      message = completion.choices().get(0).message();
+    try {
+      do {
+        var completion = getChatCompletion(agent, history, context, run);
+        message = completion.choices().get(0).message();
 
-      history.add(ChatCompletionMessageParam.ofAssistant(message.toParam()));
+        var target = fastHandoffTarget(message, agent, run);
+        run.handedOff = target != null;
+        if (target != null) {
+          agent = handoff(run, agent, target);
+          hasToolCalls = true;
+          continue;
+        }
 
-      // we only loop if there are tool calls
-      hasToolCalls = message.toolCalls().map(toolCalls -> !toolCalls.isEmpty()).orElse(false);
+        history.add(ChatCompletionMessageParam.ofAssistant(message.toParam()));
 
-      if (hasToolCalls) {
-        for (var toolCall : message.toolCalls().get()) {
-          var toolResponse =
-              handleToolCall(
-                  toolCall,
-                  agent,
-                  LLMFunctionContext.builder().history(history).developerContext(context).build());
+        // we only loop if there are tool calls
+        hasToolCalls = message.toolCalls().map(toolCalls -> !toolCalls.isEmpty()).orElse(false);
 
-          history.add(
-              ChatCompletionMessageParam.ofTool(
-                  ChatCompletionToolMessageParam.builder()
-                      .toolCallId(toolResponse.getMessage().toolCalls().get().get(0).id())
-                      .content(toolResponse.getMessage().content().get())
-                      .build()));
+        if (hasToolCalls) {
+          var functionContext =
+              LLMFunctionContext.builder().history(history).developerContext(context).build();
+          var toolResponses =
+              dispatchToolCalls(message.toolCalls().get(), agent, functionContext, run);
 
-          // if the tool response is an agent, we switch to that agent
+          // if a tool response is an agent, we switch to that agent
           // we then let the new agent handle conversation which might contain more tool calls
-          agent = Optional.ofNullable(toolResponse.getAgent()).orElse(agent);
+          agent = applyToolResponses(toolResponses, agent, history, run);
         }
-      }
-    } while (hasToolCalls);
+      } while (hasToolCalls && !run.isExhausted());
+    } catch (Throwable e) {
+      run.end(e);
+      throw e;
+    }
+    run.end(null);
 
     log.debug("User: {}", prompt);
-    log.debug("Assistant: {}", message.content().get());
+    log.debug("Assistant: {}", message.content().orElse(""));
+
+    return run.response(history, message, context);
+  }
+
+  /**
+   * Restores a stored conversation. The active agent is looked up by name, the coordinator is used
+   * if it is null or no longer registered.
+   */
+  public LLMSession resumeSession(
+      String id,
+      List<ChatCompletionMessageParam> history,
+      Map<String, Object> context,
+      String activeAgent) {
+    var agent = activeAgent == null ? null : functionRegistry.getAgent(activeAgent);
+    return new LLMSession(id, history, context, agent);
+  }
+
+  /**
+   * Restores a conversation from the {@link #conversationStore} with the messages of its last
+   * {@code turns} turns; older turns are not read. Context variables are not stored. An unknown id
+   * starts a new session with that id.
+   */
+  public LLMSession resumeSession(String id, int turns) {
+    if (conversationStore == null) {
+      throw new IllegalStateException("No conversation store configured");
+    }
+    var stored = conversationStore.load(id);
+    if (stored == null) {
+      return new LLMSession(id, List.of(), Map.of(), null);
+    }
+    return resumeSession(id, stored.getRecentMessages(turns), Map.of(), stored.getActiveAgent());
+  }
+
+  /** The session's last agent, or the coordinator if there is none or it was unregistered. */
+  private LLMAgentWrapper startingAgent(LLMSession session) {
+    var agent = session.getActiveAgent();
+    if (agent == null || !functionRegistry.getAgents().contains(agent)) {
+      return functionRegistry.getCoordinatorAgent();
+    }
+    return agent;
+  }
+
+  /** Ends a session turn. The response gets the published history, not the turn's live view. */
+  private LLMResponse completeTurn(LLMSession session, LLMTurnHistory turn, LLMResponse response) {
+    session.setActiveAgent(response.getAgent());
+    session.addUsage(response.getUsage());
+    if (conversationStore != null) {
+      conversationStore.append(session.getId(), turn.getAppended(), response.getAgent().getName());
+    }
+    return response.toBuilder().history(session.publishHistory()).build();
+  }
+
+  /**
+   * Streaming variant of {@link #run}. Content deltas are passed to the listener as they arrive and
+   * each tool call is dispatched on the tool executor as soon as its arguments are complete, while
+   * the rest of the message is still streaming. Unless parallel tool calls are enabled a call only
+   * starts once the one before it is done.
+   */
+  public LLMResponse runStreaming(
+      String prompt,
+      List<ChatCompletionMessageParam> history,
+      Map<String, Object> context,
+      LLMStreamListener listener) {
+    // we start off with the coordinator
+    return runStreaming(
+        functionRegistry.getCoordinatorAgent(), prompt, history, context, listener, LLMUsage.ZERO);
+  }
+
+  /** Streaming variant of {@link #run(LLMSession, String)}. */
+  public LLMResponse runStreaming(LLMSession session, String prompt, LLMStreamListener listener) {
+    return session.turn(
+        () -> {
+          var turn = session.startTurn();
+          return completeTurn(
+              session,
+              turn,
+              runStreaming(
+                  startingAgent(session),
+                  prompt,
+                  turn,
+                  session.getContext(),
+                  listener,
+                  session.getUsage()));
+        });
+  }
+
+  @SneakyThrows
+  private LLMResponse runStreaming(
+      LLMAgentWrapper agent,
+      String prompt,
+      List<ChatCompletionMessageParam> history,
+      Map<String, Object> context,
+      LLMStreamListener listener,
+      LLMUsage spent) {
+
+    history.add(
+        ChatCompletionMessageParam.ofUser(
+            ChatCompletionUserMessageParam.builder().content(prompt).build()));
+
+    ChatCompletionMessage message;
+    boolean hasToolCalls;
+    var run = startRun(agent, spent);
+    agent = route(agent, prompt, run);
+
+    try {
+      do {
+        if (run.isPastDeadline()) {
+          throw new TimeoutException("Deadline passed before the request");
+        }
+        var currentAgent = agent;
+        var functionContext =
+            LLMFunctionContext.builder().history(history).developerContext(context).build();
+        Map<String, CompletableFuture<LLMToolResponse>> pending = new LinkedHashMap<>();
+        Consumer<ChatCompletionMessageToolCall> dispatch =
+            toolCall -> {
+              listener.onToolCall(currentAgent, toolCall);
+              pending.put(
+                  toolCall.id(),
+                  dispatchStreamedToolCall(
+                      pending.values(),
+                      () -> handleToolCall(toolCall, currentAgent, functionContext, run)));
+            };
+        // a fast handoff hides its transfers, so they wait for the whole message
+        List<ChatCompletionMessageToolCall> transfers = new ArrayList<>();
+
+        var assembler =
+            new LLMStreamAssembler(
+                delta -> listener.onContent(currentAgent, delta),
+                toolCall -> {
+                  if (fastHandoff && !run.handedOff && isTransfer(toolCall, currentAgent)) {
+                    transfers.add(toolCall);
+                  } else {
+                    dispatch.accept(toolCall);
+                  }
+                });
+
+        compactHistory(agent, history);
+        var params =
+            completionParams(agent, history).toBuilder()
+                .streamOptions(ChatCompletionStreamOptions.builder().includeUsage(true).build())
+                .build();
+        var tap = wireTap(context);
+        List<ChatCompletionChunk> chunks = new ArrayList<>();
+        long start = System.nanoTime();
+
+        var permit = acquirePermit(agent, history, params);
+        try (permit;
+            var stream = chatCompletionStreaming(params)) {
+          readStream(
+              stream,
+              chunk -> {
+                if (tap != null) {
+                  chunks.add(chunk);
+                }
+                assembler.accept(chunk);
+              },
+              run);
+          // the stream reported its usage last, a failed one keeps the estimate on close
+          releasePermit(permit, assembler.getUsage());
+        }
+        message = assembler.toMessage();
+        run.completed(agent, start, assembler.getUsage(), false);
+
+        if (tap != null) {
+          capture(
+              tap,
+              LLMWireExchange.builder()
+                  .agent(agent.getName())
+                  .request(params)
+                  .chunks(chunks)
+                  .latency(Duration.ofNanos(System.nanoTime() - start)));
+        }
+
+        var target = fastHandoffTarget(message, agent, run);
+        run.handedOff = target != null;
+        if (target != null) {
+          agent = handoff(run, agent, target);
+          hasToolCalls = true;
+          continue;
+        }
+        transfers.forEach(dispatch);
 
-    return LLMResponse.builder().history(history).reply(message).contextVariables(context).build();
+        // we only loop if there are tool calls
+        hasToolCalls = message.toolCalls().map(toolCalls -> !toolCalls.isEmpty()).orElse(false);
+
+        // wait for the tools before touching the history, they may still be reading it
+        List<LLMToolResponse> toolResponses =
+            hasToolCalls
+                ? joinAll(
+                    message.toolCalls().get().stream()
+                        .map(toolCall -> pending.get(toolCall.id()))
+                        .collect(Collectors.toList()))
+                : List.of();
+
+        history.add(ChatCompletionMessageParam.ofAssistant(message.toParam()));
+
+        if (hasToolCalls) {
+          agent = applyToolResponses(toolResponses, agent, history, run);
+        }
+      } while (hasToolCalls && !run.isExhausted());
+    } catch (Throwable e) {
+      run.end(e);
+      throw e;
+    }
+    run.end(null);
+
+    log.debug("User: {}", prompt);
+    log.debug("Assistant: {}", message.content().orElse(""));
+
+    return run.response(history, message, context);
+  }
+
+  /**
+   * Non blocking variant of {@link #run}. Completions go through the OpenAI async client and each
+   * completion, tool dispatch and follow up completion is chained on the previous step, so no
+   * thread is held while waiting on the model.
+   */
+  public CompletableFuture<LLMResponse> runAsync(
+      String prompt, List<ChatCompletionMessageParam> history, Map<String, Object> context) {
+    // we start off with the coordinator
+    return runAsync(
+        functionRegistry.getCoordinatorAgent(), prompt, history, context, LLMUsage.ZERO);
+  }
+
+  /** Non blocking variant of {@link #run(LLMSession, String)}. */
+  public CompletableFuture<LLMResponse> runAsync(LLMSession session, String prompt) {
+    return session.turnAsync(
+        () -> {
+          var turn = session.startTurn();
+          return runAsync(
+                  startingAgent(session), prompt, turn, session.getContext(), session.getUsage())
+              .thenCompose(
+                  response ->
+                      offload(
+                          conversationStore != null,
+                          () -> completeTurn(session, turn, response)));
+        });
+  }
+
+  private CompletableFuture<LLMResponse> runAsync(
+      LLMAgentWrapper agent,
+      String prompt,
+      List<ChatCompletionMessageParam> history,
+      Map<String, Object> context,
+      LLMUsage spent) {
+
+    history.add(
+        ChatCompletionMessageParam.ofUser(
+            ChatCompletionUserMessageParam.builder().content(prompt).build()));
+
+    var run = startRun(agent, spent);
+    agent = route(agent, prompt, run);
+    return runAsyncLoop(agent, history, context, run)
+        .whenComplete(
+            (response, error) ->
+                run.end(error instanceof CompletionException ? error.getCause() : error))
+        .thenApply(
+            response -> {
+              log.debug("User: {}", prompt);
+              log.debug("Assistant: {}", response.getReply().content().orElse(""));
+              return response;
+            });
+  }
+
+  private CompletableFuture<LLMResponse> runAsyncLoop(
+      LLMAgentWrapper agent,
+      List<ChatCompletionMessageParam> history,
+      Map<String, Object> context,
+      Run run) {
+    return offload(
+            historyCompactor != null,
+            () -> {
+              compactHistory(agent, history);
+              return completionParams(agent, history);
+            })
+        .thenCompose(params -> getChatCompletionAsync(agent, history, context, params, run))
+        .thenCompose(completion -> continueAsync(completion, agent, history, context, run));
+  }
+
+  /** Handles the completion of one step of {@link #runAsyncLoop}, and starts the next if needed. */
+  private CompletableFuture<LLMResponse> continueAsync(
+      ChatCompletion completion,
+      LLMAgentWrapper agent,
+      List<ChatCompletionMessageParam> history,
+      Map<String, Object> context,
+      Run run) {
+    var message = completion.choices().get(0).message();
+
+    var target = fastHandoffTarget(message, agent, run);
+    run.handedOff = target != null;
+    if (target != null) {
+      var next = handoff(run, agent, target);
+      return run.isExhausted()
+          ? CompletableFuture.completedFuture(run.response(history, message, context))
+          : runAsyncLoop(next, history, context, run);
+    }
+
+    history.add(ChatCompletionMessageParam.ofAssistant(message.toParam()));
+
+    // we only loop if there are tool calls
+    boolean hasToolCalls = message.toolCalls().map(toolCalls -> !toolCalls.isEmpty()).orElse(false);
+    if (!hasToolCalls) {
+      return CompletableFuture.completedFuture(run.response(history, message, context));
+    }
+
+    var functionContext =
+        LLMFunctionContext.builder().history(history).developerContext(context).build();
+    return dispatchToolCallsAsync(message.toolCalls().get(), agent, functionContext, run)
+        .thenCompose(
+            toolResponses -> {
+              var next = applyToolResponses(toolResponses, agent, history, run);
+              return run.isExhausted()
+                  ? CompletableFuture.completedFuture(run.response(history, message, context))
+                  : runAsyncLoop(next, history, context, run);
+            });
+  }
+
+  /**
+   * Async variant of {@link #getChatCompletion}, the history is already compacted. Cache lookups
+   * and stores run on the {@link #blockingExecutor}.
+   */
+  private CompletableFuture<ChatCompletion> getChatCompletionAsync(
+      LLMAgentWrapper agent,
+      List<ChatCompletionMessageParam> history,
+      Map<String, Object> context,
+      ChatCompletionCreateParams params,
+      Run run) {
+    long start = System.nanoTime();
+    var cacheKey = completionCacheKey(params);
+    return offload(cacheKey != null, () -> cachedCompletion(cacheKey))
+        .thenCompose(
+            cached -> {
+              if (cached != null) {
+                run.completed(agent, start, cached.usage(), true);
+                return CompletableFuture.completedFuture(cached);
+              }
+              var tap = wireTap(context);
+              return completeAsync(agent, history, params, run.deadline)
+                  .thenCompose(
+                      completion -> {
+                        run.completed(agent, start, completion.usage(), false);
+                        if (tap != null) {
+                          capture(
+                              tap,
+                              LLMWireExchange.builder()
+                                  .agent(agent.getName())
+                                  .request(params)
+                                  .response(completion)
+                                  .latency(Duration.ofNanos(System.nanoTime() - start)));
+                        }
+                        return offload(
+                            cacheKey != null,
+                            () -> {
+                              cacheCompletion(cacheKey, agent, completion);
+                              return completion;
+                            });
+                      });
+            });
+  }
+
+  /**
+   * Runs a step of {@code runAsync} that may block on the {@link #blockingExecutor}, or right away
+   * when there is nothing to block on.
+   */
+  private <T> CompletableFuture<T> offload(boolean blocking, Supplier<T> step) {
+    if (blocking) {
+      return CompletableFuture.supplyAsync(step, blockingExecutor);
+    }
+    try {
+      return CompletableFuture.completedFuture(step.get());
+    } catch (Throwable e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  /** State of one run, from the prompt to the final reply, across agent transfers. */
+  private static class Run {
+    private final long deadline;
+    private final LLMRunListener listener;
+    private final long start = System.nanoTime();
+    private LLMAgentWrapper agent;
+    private int completions;
+    private long maxTokens = Long.MAX_VALUE;
+    private int maxCompletions = Integer.MAX_VALUE;
+    private LLMUsage usage = LLMUsage.ZERO;
+    private final Map<String, LLMUsage> usageByAgent = new LinkedHashMap<>();
+    private LLMStopReason stopReason = LLMStopReason.REPLY;
+    // the last completion was a fast handoff
+    private boolean handedOff;
+
+    private Run(LLMAgentWrapper agent, long deadline, LLMRunListener listener) {
+      this.agent = agent;
+      this.deadline = deadline;
+      this.listener = listener;
+    }
+
+    /** A completion requested at {@code requested}, a cached one cost nothing this time. */
+    private void completed(
+        LLMAgentWrapper agent,
+        long requested,
+        Optional<CompletionUsage> completionUsage,
+        boolean cached) {
+      completions++;
+      var used = cached ? LLMUsage.ZERO : completionUsage.map(LLMUsage::of).orElse(LLMUsage.ZERO);
+      usage = usage.plus(used);
+      usageByAgent.merge(agent.getName(), used, LLMUsage::plus);
+      listener.onCompletion(
+          agent,
+          Duration.ofNanos(System.nanoTime() - requested),
+          used.getPromptTokens(),
+          used.getCompletionTokens(),
+          cached);
+    }
+
+    /** Whether the deadline the retrier set has passed. */
+    private boolean isPastDeadline() {
+      return deadline != Long.MAX_VALUE && deadline - System.nanoTime() <= 0;
+    }
+
+    /** Whether the budget rules out another completion, checked before each one but the first. */
+    private boolean isExhausted() {
+      if (usage.getTotalTokens() >= maxTokens) {
+        stopReason = LLMStopReason.MAX_TOKENS;
+      } else if (completions >= maxCompletions) {
+        stopReason = LLMStopReason.MAX_COMPLETIONS;
+      }
+      return stopReason != LLMStopReason.REPLY;
+    }
+
+    private LLMResponse response(
+        List<ChatCompletionMessageParam> history,
+        ChatCompletionMessage reply,
+        Map<String, Object> context) {
+      return LLMResponse.builder()
+          .history(history)
+          .reply(reply)
+          .contextVariables(context)
+          .agent(agent)
+          .usage(usage)
+          .usageByAgent(usageByAgent)
+          .stopReason(stopReason)
+          .build();
+    }
+
+    private void end(Throwable error) {
+      listener.onRunEnd(agent, completions, Duration.ofNanos(System.nanoTime() - start), error);
+    }
   }
 }
@@ -0,0 +1,48 @@
+package io.github.deweyjose.jswarm.core;
+
+import com.openai.models.ChatCompletionCreateParams;
+import com.openai.models.ChatCompletionMessageParam;
+import com.openai.models.ChatCompletionSystemMessageParam;
+import com.openai.models.ChatCompletionTool;
+import io.github.deweyjose.jswarm.core.model.LLMAgentWrapper;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Builds completion requests in one canonical layout: the agent's instructions as the only system
+ * message, its tools, then the history. The instructions and tools of an agent do not change
+ * between turns, so every request of a conversation starts with the same bytes and the provider's
+ * prompt cache can serve that prefix. The system message is built once per agent.
+ */
+class LLMRequestAssembler {
+
+  // weak so unregistered agents do not pin their messages
+  private final Map<LLMAgentWrapper, ChatCompletionMessageParam> systemMessages =
+      Collections.synchronizedMap(new WeakHashMap<>());
+
+  ChatCompletionCreateParams assemble(
+      LLMAgentWrapper agent,
+      List<ChatCompletionTool> tools,
+      List<ChatCompletionMessageParam> history) {
+    List<ChatCompletionMessageParam> messages = new ArrayList<>(history.size() + 1);
+    messages.add(systemMessage(agent));
+    messages.addAll(history);
+
+    var builder = ChatCompletionCreateParams.builder().model(agent.getModel()).messages(messages);
+    if (!tools.isEmpty()) {
+      builder.tools(tools);
+    }
+    return builder.build();
+  }
+
+  ChatCompletionMessageParam systemMessage(LLMAgentWrapper agent) {
+    return systemMessages.computeIfAbsent(
+        agent,
+        key ->
+            ChatCompletionMessageParam.ofSystem(
+                ChatCompletionSystemMessageParam.builder().content(key.getInstructions()).build()));
+  }
+}
@@ -0,0 +1,20 @@
+package io.github.deweyjose.jswarm.core;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Caps what a run may spend. Once a limit is reached the run stops before its next completion and
+ * returns the last assistant message, with the tool responses already in the history, so the
+ * conversation can continue with the next prompt. Any limit left at zero is not enforced.
+ */
+@Builder
+@Getter
+public class LLMRunBudget {
+  // prompt plus completion tokens of one run
+  private final long maxTokens;
+  // completions of one run, each loop iteration is one completion
+  private final int maxCompletions;
+  // prompt plus completion tokens of all turns of a session, each turn still gets one completion
+  private final long maxSessionTokens;
+}
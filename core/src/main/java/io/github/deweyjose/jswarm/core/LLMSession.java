@@ -0,0 +1,137 @@
+package io.github.deweyjose.jswarm.core;
+
+import com.openai.models.ChatCompletionMessageParam;
+import io.github.deweyjose.jswarm.core.model.LLMAgentWrapper;
+import io.github.deweyjose.jswarm.core.model.LLMUsage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * One conversation: its history, context variables and the agent that handled the last turn. Pass
+ * it to {@link LLMNexus#run(LLMSession, String)} and the next turn starts at that agent instead of
+ * the coordinator.
+ *
+ * <p>A session can be shared between threads. Turns run one at a time in the order they were
+ * submitted, and the history and context can be read at any time. To resume a stored conversation
+ * construct the session from its id, history, context and last agent.
+ */
+@Getter
+public class LLMSession {
+
+  private final String id;
+
+  // only touched by the running turn, the turn order serializes access
+  @Getter(AccessLevel.NONE)
+  private final List<ChatCompletionMessageParam> history;
+
+  // what readers see, the history as of the end of the last turn
+  @Getter(AccessLevel.NONE)
+  private volatile List<ChatCompletionMessageParam> publishedHistory;
+
+  private final Map<String, Object> context;
+  private volatile LLMAgentWrapper activeAgent;
+
+  /** Tokens used by the turns run on this session, turns of a resumed conversation not included. */
+  private volatile LLMUsage usage = LLMUsage.ZERO;
+
+  // completes when the last submitted turn is done, successfully or not
+  @Getter(AccessLevel.NONE)
+  private CompletableFuture<Void> lastTurn = CompletableFuture.completedFuture(null);
+
+  public LLMSession(
+      String id,
+      List<ChatCompletionMessageParam> history,
+      Map<String, Object> context,
+      LLMAgentWrapper activeAgent) {
+    this.id = id;
+    this.history = new ArrayList<>(history);
+    // a synchronized HashMap rather than a ConcurrentHashMap, context variables may be null
+    this.context = Collections.synchronizedMap(new HashMap<>(context));
+    this.activeAgent = activeAgent;
+    publishHistory();
+  }
+
+  public static LLMSession create() {
+    return new LLMSession(UUID.randomUUID().toString(), List.of(), Map.of(), null);
+  }
+
+  /** The history as of the end of the last turn. The list is a snapshot and cannot be modified. */
+  public List<ChatCompletionMessageParam> getHistory() {
+    return publishedHistory;
+  }
+
+  /** A view of the history for the running turn, see {@link LLMTurnHistory}. */
+  LLMTurnHistory startTurn() {
+    return new LLMTurnHistory(history);
+  }
+
+  /** Makes the history as it is now visible to readers and returns it, at the end of a turn. */
+  List<ChatCompletionMessageParam> publishHistory() {
+    var snapshot = Collections.unmodifiableList(new ArrayList<>(history));
+    publishedHistory = snapshot;
+    return snapshot;
+  }
+
+  void setActiveAgent(LLMAgentWrapper activeAgent) {
+    this.activeAgent = activeAgent;
+  }
+
+  synchronized void addUsage(LLMUsage turn) {
+    usage = usage.plus(turn);
+  }
+
+  /**
+   * Runs a turn on the calling thread once every earlier turn of this session is done. A turn that
+   * completes publishes its history itself, one that fails has what it added so far published.
+   */
+  <T> T turn(Supplier<T> turn) {
+    var slot = enqueue();
+    try {
+      slot.previous.join();
+      return turn.get();
+    } catch (RuntimeException | Error e) {
+      publishHistory();
+      throw e;
+    } finally {
+      slot.done.complete(null);
+    }
+  }
+
+  /** Starts a turn once every earlier turn of this session is done, without blocking. */
+  <T> CompletableFuture<T> turnAsync(Supplier<CompletableFuture<T>> turn) {
+    var slot = enqueue();
+    return slot.previous
+        .thenCompose(ignored -> turn.get())
+        .whenComplete(
+            (result, error) -> {
+              if (error != null) {
+                publishHistory();
+              }
+              slot.done.complete(null);
+            });
+  }
+
+  private synchronized Slot enqueue() {
+    var slot = new Slot(lastTurn);
+    lastTurn = slot.done;
+    return slot;
+  }
+
+  /** A place in the turn order: the turn may start once {@code previous} completes. */
+  private static class Slot {
+    private final CompletableFuture<Void> previous;
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+    private Slot(CompletableFuture<Void> previous) {
+      this.previous = previous;
+    }
+  }
+}
@@ -0,0 +1,161 @@
+package io.github.deweyjose.jswarm.core;
+
+import com.openai.models.ChatCompletionChunk;
+import com.openai.models.ChatCompletionMessage;
+import com.openai.models.ChatCompletionMessageToolCall;
+import com.openai.models.CompletionUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Assembles a streamed assistant message from its chunks. Content deltas are forwarded as they
+ * arrive, and each tool call is handed off as soon as its arguments form a complete JSON object,
+ * without waiting for the rest of the message.
+ */
+class LLMStreamAssembler {
+
+  private final Consumer<String> contentListener;
+  private final Consumer<ChatCompletionMessageToolCall> toolCallListener;
+
+  private final StringBuilder content = new StringBuilder();
+  private final List<ToolCallBuilder> toolCalls = new ArrayList<>();
+  private CompletionUsage usage;
+
+  LLMStreamAssembler(
+      Consumer<String> contentListener, Consumer<ChatCompletionMessageToolCall> toolCallListener) {
+    this.contentListener = contentListener;
+    this.toolCallListener = toolCallListener;
+  }
+
+  void accept(ChatCompletionChunk chunk) {
+    // with usage requested the final chunk carries it, without any choices
+    chunk.usage().ifPresent(value -> usage = value);
+    for (var choice : chunk.choices()) {
+      if (choice.index() != 0) {
+        continue;
+      }
+      var delta = choice.delta();
+
+      delta
+          .content()
+          .filter(text -> !text.isEmpty())
+          .ifPresent(
+              text -> {
+                content.append(text);
+                contentListener.accept(text);
+              });
+
+      for (var fragment : delta.toolCalls().orElse(List.of())) {
+        int index = (int) fragment.index();
+        // a new index means every earlier tool call is done, whatever its arguments look like
+        for (int i = 0; i < index && i < toolCalls.size(); i++) {
+          complete(toolCalls.get(i));
+        }
+        while (toolCalls.size() <= index) {
+          toolCalls.add(new ToolCallBuilder());
+        }
+        var toolCall = toolCalls.get(index);
+        fragment.id().ifPresent(id -> toolCall.id = id);
+        fragment
+            .function()
+            .ifPresent(
+                function -> {
+                  function.name().ifPresent(toolCall.name::append);
+                  function.arguments().ifPresent(toolCall::appendArguments);
+                });
+        if (toolCall.isArgumentsComplete()) {
+          complete(toolCall);
+        }
+      }
+
+      if (choice.finishReason().isPresent()) {
+        finish();
+      }
+    }
+  }
+
+  /** Completes any tool call still pending. Safe to call more than once. */
+  void finish() {
+    toolCalls.forEach(this::complete);
+  }
+
+  Optional<CompletionUsage> getUsage() {
+    return Optional.ofNullable(usage);
+  }
+
+  ChatCompletionMessage toMessage() {
+    finish();
+    var builder =
+        ChatCompletionMessage.builder()
+            .content(content.length() == 0 ? Optional.empty() : Optional.of(content.toString()))
+            .refusal(Optional.empty());
+    if (!toolCalls.isEmpty()) {
+      var calls = new ArrayList<ChatCompletionMessageToolCall>();
+      for (var toolCall : toolCalls) {
+        calls.add(toolCall.build());
+      }
+      builder.toolCalls(calls);
+    }
+    return builder.build();
+  }
+
+  private void complete(ToolCallBuilder toolCall) {
+    if (!toolCall.completed) {
+      toolCall.completed = true;
+      toolCallListener.accept(toolCall.build());
+    }
+  }
+
+  private static class ToolCallBuilder {
+    private String id;
+    private final StringBuilder name = new StringBuilder();
+    private final StringBuilder arguments = new StringBuilder();
+    private boolean completed;
+
+    // incremental scan of the arguments so we know when the top level object closes
+    private int depth;
+    private boolean started;
+    private boolean inString;
+    private boolean escaped;
+
+    void appendArguments(String fragment) {
+      arguments.append(fragment);
+      for (int i = 0; i < fragment.length(); i++) {
+        char c = fragment.charAt(i);
+        if (inString) {
+          if (escaped) {
+            escaped = false;
+          } else if (c == '\\') {
+            escaped = true;
+          } else if (c == '"') {
+            inString = false;
+          }
+        } else if (c == '"') {
+          inString = true;
+        } else if (c == '{' || c == '[') {
+          depth++;
+          started = true;
+        } else if (c == '}' || c == ']') {
+          depth--;
+        }
+      }
+    }
+
+    boolean isArgumentsComplete() {
+      return id != null && name.length() > 0 && started && depth == 0;
+    }
+
+    ChatCompletionMessageToolCall build() {
+      return ChatCompletionMessageToolCall.builder()
+          .id(id)
+          .function(
+              ChatCompletionMessageToolCall.Function.builder()
+                  .name(name.toString())
+                  .arguments(arguments.toString())
+                  .build())
+          .build();
+    }
+  }
+}
@@ -0,0 +1,17 @@
+package io.github.deweyjose.jswarm.core;
+
+import com.openai.models.ChatCompletionMessageToolCall;
+import io.github.deweyjose.jswarm.core.model.LLMAgentWrapper;
+
+/** Receives incremental output of {@link LLMNexus#runStreaming}. Called on the caller thread. */
+@FunctionalInterface
+public interface LLMStreamListener {
+
+  void onContent(LLMAgentWrapper agent, String delta);
+
+  /**
+   * Called once the arguments of a tool call are complete, just before it is dispatched. Transfers
+   * that a fast handoff keeps out of the history are not reported.
+   */
+  default void onToolCall(LLMAgentWrapper agent, ChatCompletionMessageToolCall toolCall) {}
+}
@@ -0,0 +1,193 @@
+package io.github.deweyjose.jswarm.core;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+import lombok.Getter;
+
+/**
+ * Isolates one {@link io.github.deweyjose.jswarm.core.annotations.LLMFunction} from the rest of the
+ * conversation: a time limit per call, a bulkhead bounding concurrent calls and a circuit breaker
+ * that stops calling the function after repeated failures. A call that cannot run fails fast with a
+ * {@link RejectedExecutionException}, one that runs too long with a {@link TimeoutException}.
+ *
+ * <p>Timed calls run on their own thread and are interrupted at the limit. A call that ignores the
+ * interrupt keeps its bulkhead permit until it really returns, so hung calls cannot pile up. One
+ * that was still waiting for a thread at the limit never runs and gives its permit back at once.
+ */
+public class LLMToolGuard {
+
+  private final String functionName;
+  private final long timeoutNanos;
+  private final Semaphore bulkhead;
+  private final int maxConcurrency;
+  private final int failureThreshold;
+  private final long openNanos;
+  private final Executor executor;
+  private final LongSupplier clock;
+
+  // written under the lock, volatile so the getter sees the latest count
+  @Getter private volatile int consecutiveFailures;
+  // the breaker is open until this time, a single trial call is let through after it
+  private long openUntil;
+  private boolean trialRunning;
+
+  /**
+   * @param timeout zero for no limit
+   * @param maxConcurrency zero for no bulkhead
+   * @param failureThreshold consecutive failures that open the breaker, zero for no breaker
+   * @param openFor how long the breaker stays open before a trial call
+   */
+  public LLMToolGuard(
+      String functionName,
+      Duration timeout,
+      int maxConcurrency,
+      int failureThreshold,
+      Duration openFor) {
+    this(
+        functionName,
+        timeout,
+        maxConcurrency,
+        failureThreshold,
+        openFor,
+        LLMExecutors.defaultExecutor(),
+        System::nanoTime);
+  }
+
+  LLMToolGuard(
+      String functionName,
+      Duration timeout,
+      int maxConcurrency,
+      int failureThreshold,
+      Duration openFor,
+      Executor executor,
+      LongSupplier clock) {
+    this.functionName = functionName;
+    this.timeoutNanos = timeout.toNanos();
+    this.maxConcurrency = maxConcurrency;
+    this.bulkhead = maxConcurrency > 0 ? new Semaphore(maxConcurrency) : null;
+    this.failureThreshold = failureThreshold;
+    this.openNanos = openFor.toNanos();
+    this.executor = executor;
+    this.clock = clock;
+  }
+
+  public <R> R call(Callable<R> call) throws Exception {
+    boolean trial = admit();
+    if (bulkhead != null && !bulkhead.tryAcquire()) {
+      if (trial) {
+        endTrial();
+      }
+      throw new RejectedExecutionException(
+          "Tool " + functionName + " is busy, " + maxConcurrency + " calls are already running");
+    }
+
+    try {
+      R result = timeoutNanos > 0 ? callWithTimeout(call) : callAndRelease(call);
+      succeeded();
+      return result;
+    } catch (Exception e) {
+      failed(trial);
+      throw e;
+    }
+  }
+
+  private <R> R callAndRelease(Callable<R> call) throws Exception {
+    try {
+      return call.call();
+    } finally {
+      if (bulkhead != null) {
+        bulkhead.release();
+      }
+    }
+  }
+
+  private <R> R callWithTimeout(Callable<R> call) throws Exception {
+    // whoever claims the call owns the permit: the task by running it, or the caller by giving up
+    // on it before it started
+    var claimed = new AtomicBoolean();
+    var task =
+        new FutureTask<>(() -> claimed.compareAndSet(false, true) ? callAndRelease(call) : null);
+    try {
+      executor.execute(task);
+    } catch (RejectedExecutionException e) {
+      if (bulkhead != null) {
+        bulkhead.release();
+      }
+      throw e;
+    }
+
+    try {
+      return task.get(timeoutNanos, TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      abandon(task, claimed);
+      throw new TimeoutException(
+          "Tool "
+              + functionName
+              + " did not answer within "
+              + TimeUnit.NANOSECONDS.toMillis(timeoutNanos)
+              + "ms");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception) {
+        throw (Exception) e.getCause();
+      }
+      throw e;
+    } catch (InterruptedException e) {
+      abandon(task, claimed);
+      throw e;
+    }
+  }
+
+  private void abandon(FutureTask<?> task, AtomicBoolean claimed) {
+    task.cancel(true);
+    if (claimed.compareAndSet(false, true) && bulkhead != null) {
+      bulkhead.release();
+    }
+  }
+
+  /** Whether the breaker currently refuses calls. */
+  public synchronized boolean isOpen() {
+    return openUntil != 0 && (clock.getAsLong() - openUntil < 0 || trialRunning);
+  }
+
+  /** Lets the call through or throws if the breaker is open. Returns true for a trial call. */
+  private synchronized boolean admit() {
+    if (openUntil == 0) {
+      return false;
+    }
+    if (clock.getAsLong() - openUntil < 0 || trialRunning) {
+      throw new RejectedExecutionException(
+          "Tool " + functionName + " is unavailable after repeated failures, try again later");
+    }
+    trialRunning = true;
+    return true;
+  }
+
+  private synchronized void endTrial() {
+    trialRunning = false;
+  }
+
+  private synchronized void succeeded() {
+    consecutiveFailures = 0;
+    openUntil = 0;
+    trialRunning = false;
+  }
+
+  private synchronized void failed(boolean trial) {
+    consecutiveFailures++;
+    trialRunning = false;
+    if (failureThreshold > 0 && (trial || consecutiveFailures >= failureThreshold)) {
+      // zero means closed, nudge a deadline that happens to land on it
+      long until = clock.getAsLong() + openNanos;
+      openUntil = until == 0 ? 1 : until;
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package io.github.deweyjose.jswarm.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import lombok.SneakyThrows;
+
+/**
+ * Bounded cache of tool results for one {@link
+ * io.github.deweyjose.jswarm.core.annotations.LLMFunction}, enabled with {@code cacheTtl}. Entries
+ * are keyed on the function name and the canonical form of the arguments JSON, so the same call
+ * hits regardless of whitespace or the order the model wrote the fields in. The least recently used
+ * entry is evicted once the cache is full, and entries expire after the TTL.
+ */
+public class LLMToolResultCache {
+
+  private static final ObjectMapper canonicalMapper =
+      new ObjectMapper().enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+
+  private final String functionName;
+  private final long ttlNanos;
+  private final LongSupplier clock;
+  private final Map<String, CachedResult> entries;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  public LLMToolResultCache(String functionName, Duration ttl, int maxSize) {
+    this(functionName, ttl, maxSize, System::nanoTime);
+  }
+
+  LLMToolResultCache(String functionName, Duration ttl, int maxSize, LongSupplier clock) {
+    if (ttl.isNegative() || ttl.isZero() || maxSize < 1) {
+      throw new IllegalArgumentException(
+          "Cache for " + functionName + " needs a positive TTL and size");
+    }
+    this.functionName = functionName;
+    this.ttlNanos = ttl.toNanos();
+    this.clock = clock;
+    this.entries =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+            if (size() > maxSize) {
+              evictions.increment();
+              return true;
+            }
+            return false;
+          }
+        };
+  }
+
+  /** Canonical key of a call: the function name and the arguments with object keys sorted. */
+  @SneakyThrows
+  public String key(String argumentsJson) {
+    Object arguments = canonicalMapper.readValue(argumentsJson, Object.class);
+    return functionName + ":" + canonicalMapper.writeValueAsString(arguments);
+  }
+
+  /** Returns the cached result, or null when there is none or it expired. */
+  public synchronized Object get(String key) {
+    var entry = entries.get(key);
+    if (entry != null && clock.getAsLong() - entry.expiresAt >= 0) {
+      entries.remove(key);
+      entry = null;
+    }
+    if (entry == null) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    return entry.value;
+  }
+
+  /** Caches a result. Null results are not cached. */
+  public synchronized void put(String key, Object value) {
+    if (value != null) {
+      entries.put(key, new CachedResult(value, clock.getAsLong() + ttlNanos));
+    }
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  private static class CachedResult {
+    private final Object value;
+    private final long expiresAt;
+
+    private CachedResult(Object value, long expiresAt) {
+      this.value = value;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package io.github.deweyjose.jswarm.core;
+
+import com.openai.models.ChatCompletionMessageParam;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A session's history as seen by one turn. Reads and edits go straight to the session history,
+ * and every message appended during the turn is also recorded so only those need to be stored.
+ * Edits made by compaction are not recorded.
+ */
+class LLMTurnHistory extends AbstractList<ChatCompletionMessageParam> {
+
+  private final List<ChatCompletionMessageParam> history;
+  private final List<ChatCompletionMessageParam> appended = new ArrayList<>();
+
+  LLMTurnHistory(List<ChatCompletionMessageParam> history) {
+    this.history = history;
+  }
+
+  /** The messages appended so far, in order. */
+  synchronized List<ChatCompletionMessageParam> getAppended() {
+    return new ArrayList<>(appended);
+  }
+
+  @Override
+  public synchronized boolean add(ChatCompletionMessageParam message) {
+    history.add(message);
+    return appended.add(message);
+  }
+
+  @Override
+  public ChatCompletionMessageParam get(int index) {
+    return history.get(index);
+  }
+
+  @Override
+  public int size() {
+    return history.size();
+  }
+
+  @Override
+  public ChatCompletionMessageParam set(int index, ChatCompletionMessageParam message) {
+    return history.set(index, message);
+  }
+
+  @Override
+  public void add(int index, ChatCompletionMessageParam message) {
+    history.add(index, message);
+  }
+
+  @Override
+  public ChatCompletionMessageParam remove(int index) {
+    return history.remove(index);
+  }
+
+  // so compaction's subList(...).clear() shifts the rest of the history once
+  @Override
+  protected void removeRange(int fromIndex, int toIndex) {
+    history.subList(fromIndex, toIndex).clear();
+  }
+}
@@ -14,4 +14,35 @@ public @interface LLMFunction {
   String description();
 
   boolean global() default false;
+
+  /**
+   * Seconds to cache results for the same arguments. Zero, the default, disables caching. Only
+   * enable it for idempotent functions that do not take an {@code LLMFunctionContext}.
+   */
+  long cacheTtl() default 0;
+
+  /** Maximum number of cached results, the least recently used is evicted first. */
+  int cacheSize() default 1024;
+
+  /**
+   * Milliseconds a call may run before the model is told the tool timed out. Zero, the default,
+   * runs the call on the caller thread without a limit.
+   */
+  long timeoutMillis() default 0;
+
+  /** Calls allowed to run at once, further calls fail fast. Zero, the default, means no limit. */
+  int maxConcurrency() default 0;
+
+  /**
+   * Consecutive failures or timeouts after which the function is not called for {@link
+   * #openSeconds()} and the model is told it is unavailable. Zero, the default, disables this.
+   *
+   * <p>Only timeouts and rejected calls are reported to the model. An exception thrown by the
+   * function still aborts the whole run, so failures of that kind open the breaker across runs,
+   * not within one.
+   */
+  int failureThreshold() default 0;
+
+  /** Seconds the function stays unavailable once it reached its failure threshold. */
+  long openSeconds() default 30;
 }
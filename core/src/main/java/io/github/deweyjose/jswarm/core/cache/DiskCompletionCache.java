@@ -0,0 +1,81 @@
+package io.github.deweyjose.jswarm.core.cache;
+
+import com.openai.models.ChatCompletion;
+import io.github.deweyjose.jswarm.core.wire.LLMWireFormat;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Stores each completion as a JSON file named after its key, so the cache survives restarts and can
+ * be shared by processes on the same host. Files are written to a temporary file and moved into
+ * place, readers never see a partial entry. Entries older than the TTL are treated as missing.
+ */
+@Slf4j
+public class DiskCompletionCache implements LLMCompletionCache {
+
+  private final Path directory;
+  private final Duration ttl;
+
+  @SneakyThrows
+  public DiskCompletionCache(Path directory, Duration ttl) {
+    this.directory = Files.createDirectories(directory);
+    this.ttl = ttl;
+  }
+
+  public DiskCompletionCache(Path directory) {
+    this(directory, null);
+  }
+
+  @Override
+  public ChatCompletion get(String key) {
+    var file = file(key);
+    try {
+      if (ttl != null
+          && Files.getLastModifiedTime(file).toInstant().plus(ttl).isBefore(Instant.now())) {
+        Files.deleteIfExists(file);
+        return null;
+      }
+      return LLMWireFormat.mapper().readValue(file.toFile(), ChatCompletion.class);
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException e) {
+      log.warn("Unable to read cached completion {}", file, e);
+      return null;
+    }
+  }
+
+  @Override
+  public void put(String key, ChatCompletion completion) {
+    Path temp = null;
+    try {
+      temp = Files.createTempFile(directory, key, ".tmp");
+      LLMWireFormat.mapper().writeValue(temp.toFile(), completion);
+      Files.move(
+          temp, file(key), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      log.warn("Unable to cache completion {}", key, e);
+      deleteQuietly(temp);
+    }
+  }
+
+  private Path file(String key) {
+    return directory.resolve(key + ".json");
+  }
+
+  private static void deleteQuietly(Path path) {
+    if (path != null) {
+      try {
+        Files.deleteIfExists(path);
+      } catch (IOException e) {
+        log.debug("Unable to delete {}", path, e);
+      }
+    }
+  }
+}
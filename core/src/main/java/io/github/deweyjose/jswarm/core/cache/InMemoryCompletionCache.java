@@ -0,0 +1,56 @@
+package io.github.deweyjose.jswarm.core.cache;
+
+import com.openai.models.ChatCompletion;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Keeps up to {@code maxSize} completions in memory, evicting the least recently used. */
+public class InMemoryCompletionCache implements LLMCompletionCache {
+
+  private final Map<String, ChatCompletion> completions;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  public InMemoryCompletionCache(int maxSize) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("Cache size must be positive");
+    }
+    this.completions =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, ChatCompletion> eldest) {
+            return size() > maxSize;
+          }
+        };
+  }
+
+  @Override
+  public synchronized ChatCompletion get(String key) {
+    var completion = completions.get(key);
+    if (completion == null) {
+      misses.increment();
+    } else {
+      hits.increment();
+    }
+    return completion;
+  }
+
+  @Override
+  public synchronized void put(String key, ChatCompletion completion) {
+    completions.put(key, completion);
+  }
+
+  public synchronized int size() {
+    return completions.size();
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+}
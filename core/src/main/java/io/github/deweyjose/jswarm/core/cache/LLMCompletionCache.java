@@ -0,0 +1,38 @@
+package io.github.deweyjose.jswarm.core.cache;
+
+import com.openai.models.ChatCompletion;
+import com.openai.models.ChatCompletionCreateParams;
+import io.github.deweyjose.jswarm.core.wire.LLMWireFormat;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import lombok.SneakyThrows;
+
+/**
+ * Storage for whole chat completions, consulted by {@link io.github.deweyjose.jswarm.core.LLMNexus}
+ * before calling the model. Implementations must be safe for concurrent use.
+ */
+public interface LLMCompletionCache {
+
+  /** Returns the completion stored under the key, or null. */
+  ChatCompletion get(String key);
+
+  void put(String key, ChatCompletion completion);
+
+  /**
+   * SHA-256 of the model, messages and tools of a request in their wire form. The system message
+   * carries the agent's instructions, so a change to instructions, tools or any message is a
+   * different key.
+   */
+  @SneakyThrows
+  static String key(ChatCompletionCreateParams params) {
+    var digest = MessageDigest.getInstance("SHA-256");
+    var json = LLMWireFormat.toJson(LLMWireFormat.request(params));
+    var hash = digest.digest(json.getBytes(StandardCharsets.UTF_8));
+
+    var key = new StringBuilder(hash.length * 2);
+    for (byte b : hash) {
+      key.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return key.toString();
+  }
+}
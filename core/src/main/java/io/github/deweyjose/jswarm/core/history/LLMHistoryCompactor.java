@@ -0,0 +1,15 @@
+package io.github.deweyjose.jswarm.core.history;
+
+import com.openai.models.ChatCompletionMessageParam;
+import io.github.deweyjose.jswarm.core.model.LLMAgentWrapper;
+import java.util.List;
+
+/**
+ * Bounds the history sent to the model. Runs before every completion and edits the history in
+ * place, the same way functions given an {@code LLMFunctionContext} may.
+ */
+@FunctionalInterface
+public interface LLMHistoryCompactor {
+
+  void compact(LLMAgentWrapper agent, List<ChatCompletionMessageParam> history);
+}
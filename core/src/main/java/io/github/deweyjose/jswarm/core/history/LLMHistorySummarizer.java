@@ -0,0 +1,10 @@
+package io.github.deweyjose.jswarm.core.history;
+
+import com.openai.models.ChatCompletionMessageParam;
+import java.util.List;
+
+@FunctionalInterface
+public interface LLMHistorySummarizer {
+
+  String summarize(List<ChatCompletionMessageParam> messages);
+}
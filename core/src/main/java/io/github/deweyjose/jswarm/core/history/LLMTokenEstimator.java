@@ -0,0 +1,23 @@
+package io.github.deweyjose.jswarm.core.history;
+
+import com.openai.models.ChatCompletionMessageParam;
+
+/**
+ * Estimates how many tokens a piece of text or a message costs. The default counts four
+ * characters per token, plug in a real tokenizer for exact budgets.
+ */
+@FunctionalInterface
+public interface LLMTokenEstimator {
+
+  int MESSAGE_OVERHEAD = 4;
+
+  int estimate(String text);
+
+  default int estimate(ChatCompletionMessageParam message) {
+    return estimate(message.toString()) + MESSAGE_OVERHEAD;
+  }
+
+  static LLMTokenEstimator characters() {
+    return text -> text == null ? 0 : (text.length() + 3) / 4;
+  }
+}
@@ -0,0 +1,36 @@
+package io.github.deweyjose.jswarm.core.history;
+
+import com.openai.client.OpenAIClient;
+import com.openai.models.ChatCompletionCreateParams;
+import com.openai.models.ChatCompletionMessageParam;
+import io.github.deweyjose.jswarm.core.wire.LLMWireFormat;
+import java.util.List;
+
+/** Summarizes old turns with a chat completion, typically on a small and cheap model. */
+public class OpenAIHistorySummarizer implements LLMHistorySummarizer {
+
+  private static final String INSTRUCTIONS =
+      "Summarize the following conversation transcript, given as JSON chat messages. "
+          + "Keep every fact, decision, name, number and open question a later turn may need. "
+          + "Reply with the summary only.";
+
+  private final OpenAIClient openAIClient;
+  private final String model;
+
+  public OpenAIHistorySummarizer(OpenAIClient openAIClient, String model) {
+    this.openAIClient = openAIClient;
+    this.model = model;
+  }
+
+  @Override
+  public String summarize(List<ChatCompletionMessageParam> messages) {
+    var params =
+        ChatCompletionCreateParams.builder()
+            .model(model)
+            .addSystemMessage(INSTRUCTIONS)
+            .addUserMessage(LLMWireFormat.toJson(messages))
+            .build();
+    var completion = openAIClient.chat().completions().create(params);
+    return completion.choices().get(0).message().content().orElse("");
+  }
+}
@@ -0,0 +1,80 @@
+package io.github.deweyjose.jswarm.core.history;
+
+import com.openai.models.ChatCompletionMessageParam;
+import io.github.deweyjose.jswarm.core.model.LLMAgentWrapper;
+import java.util.List;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Drops the oldest messages once the history no longer fits the token budget of the agent's model.
+ * An assistant message that made tool calls and the tool results that answer it are kept or dropped
+ * together, and the current turn, from the latest user message on, is always kept.
+ */
+@Slf4j
+public class SlidingWindowCompactor implements LLMHistoryCompactor {
+
+  private final LLMTokenEstimator estimator;
+  private final Map<String, Integer> budgetsByModel;
+  private final int defaultBudget;
+
+  public SlidingWindowCompactor(
+      LLMTokenEstimator estimator, Map<String, Integer> budgetsByModel, int defaultBudget) {
+    this.estimator = estimator;
+    this.budgetsByModel = Map.copyOf(budgetsByModel);
+    this.defaultBudget = defaultBudget;
+  }
+
+  public SlidingWindowCompactor(int defaultBudget) {
+    this(LLMTokenEstimator.characters(), Map.of(), defaultBudget);
+  }
+
+  @Override
+  public void compact(LLMAgentWrapper agent, List<ChatCompletionMessageParam> history) {
+    int start = windowStart(agent, history, 0);
+    if (start > 0) {
+      log.debug("Dropping {} of {} messages from the history", start, history.size());
+      history.subList(0, start).clear();
+    }
+  }
+
+  public int getBudget(LLMAgentWrapper agent) {
+    return budgetsByModel.getOrDefault(agent.getModel(), defaultBudget);
+  }
+
+  /**
+   * Returns the index of the first message that fits the budget, less {@code reservedTokens} and
+   * the agent's instructions. Never cuts between a tool call and its results or into the current
+   * turn.
+   */
+  int windowStart(
+      LLMAgentWrapper agent, List<ChatCompletionMessageParam> history, int reservedTokens) {
+    int remaining =
+        getBudget(agent) - reservedTokens - estimator.estimate(agent.getInstructions());
+
+    int currentTurn = history.size();
+    for (int i = history.size() - 1; i >= 0; i--) {
+      if (history.get(i).isUser()) {
+        currentTurn = i;
+        break;
+      }
+    }
+
+    int start = history.size();
+    int unitTokens = 0;
+    for (int i = history.size() - 1; i >= 0; i--) {
+      unitTokens += estimator.estimate(history.get(i));
+      // tool results belong to the assistant message before them, keep scanning to it
+      if (history.get(i).isTool() && i > 0) {
+        continue;
+      }
+      if (unitTokens > remaining && start < history.size()) {
+        break;
+      }
+      remaining -= unitTokens;
+      unitTokens = 0;
+      start = i;
+    }
+    return Math.min(start, currentTurn);
+  }
+}
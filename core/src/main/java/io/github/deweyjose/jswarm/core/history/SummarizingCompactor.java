@@ -0,0 +1,54 @@
+package io.github.deweyjose.jswarm.core.history;
+
+import com.openai.models.ChatCompletionMessageParam;
+import com.openai.models.ChatCompletionUserMessageParam;
+import io.github.deweyjose.jswarm.core.model.LLMAgentWrapper;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Like {@link SlidingWindowCompactor}, but replaces the messages that fall out of the window with a
+ * single summary message instead of dropping them. The summary is only produced when the window
+ * overflows, and a previous summary is folded into the next one.
+ *
+ * <p>The summary is a user message at the start of the history, so the agent's instructions stay
+ * the only system message and the request prefix before it does not change when it is rewritten.
+ */
+@Slf4j
+public class SummarizingCompactor implements LLMHistoryCompactor {
+
+  static final String SUMMARY_PREFIX = "Summary of the earlier conversation: ";
+
+  private final SlidingWindowCompactor window;
+  private final LLMHistorySummarizer summarizer;
+  private final int summaryTokens;
+
+  /**
+   * @param summaryTokens tokens reserved in the budget for the summary message
+   */
+  public SummarizingCompactor(
+      SlidingWindowCompactor window, LLMHistorySummarizer summarizer, int summaryTokens) {
+    this.window = window;
+    this.summarizer = summarizer;
+    this.summaryTokens = summaryTokens;
+  }
+
+  @Override
+  public void compact(LLMAgentWrapper agent, List<ChatCompletionMessageParam> history) {
+    int start = window.windowStart(agent, history, summaryTokens);
+    if (start == 0) {
+      return;
+    }
+
+    var dropped = history.subList(0, start);
+    log.debug("Summarizing {} of {} messages", dropped.size(), history.size());
+    var summary = summarizer.summarize(new ArrayList<>(dropped));
+
+    dropped.clear();
+    history.add(
+        0,
+        ChatCompletionMessageParam.ofUser(
+            ChatCompletionUserMessageParam.builder().content(SUMMARY_PREFIX + summary).build()));
+  }
+}
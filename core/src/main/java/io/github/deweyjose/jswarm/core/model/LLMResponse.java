@@ -7,10 +7,21 @@ import java.util.Map;
 import lombok.Builder;
 import lombok.Getter;
 
-@Builder
+@Builder(toBuilder = true)
 @Getter
 public class LLMResponse {
   private final List<ChatCompletionMessageParam> history;
   private final Map<String, Object> contextVariables;
   private final ChatCompletionMessage reply;
+
+  /** The agent that produced the reply, where the next turn of the conversation should start. */
+  private final LLMAgentWrapper agent;
+
+  /** Tokens used by every completion of the run, cached completions used none. */
+  private final LLMUsage usage;
+
+  /** {@link #usage} by the name of the agent that requested each completion. */
+  private final Map<String, LLMUsage> usageByAgent;
+
+  private final LLMStopReason stopReason;
 }
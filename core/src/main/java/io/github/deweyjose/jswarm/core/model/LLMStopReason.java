@@ -0,0 +1,11 @@
+package io.github.deweyjose.jswarm.core.model;
+
+/** Why a run returned. */
+public enum LLMStopReason {
+  /** The model answered without calling a tool. */
+  REPLY,
+  /** The run used up {@link io.github.deweyjose.jswarm.core.LLMRunBudget#getMaxTokens()}. */
+  MAX_TOKENS,
+  /** The run used up {@link io.github.deweyjose.jswarm.core.LLMRunBudget#getMaxCompletions()}. */
+  MAX_COMPLETIONS
+}
@@ -0,0 +1,46 @@
+package io.github.deweyjose.jswarm.core.model;
+
+import com.openai.models.CompletionUsage;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Tokens used by one or more completions. Cached tokens are the part of the prompt tokens the
+ * provider served from its prompt cache.
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+public class LLMUsage {
+
+  public static final LLMUsage ZERO = new LLMUsage(0, 0, 0);
+
+  private final long promptTokens;
+  private final long completionTokens;
+  private final long cachedTokens;
+
+  public LLMUsage(long promptTokens, long completionTokens, long cachedTokens) {
+    this.promptTokens = promptTokens;
+    this.completionTokens = completionTokens;
+    this.cachedTokens = cachedTokens;
+  }
+
+  public static LLMUsage of(CompletionUsage usage) {
+    return new LLMUsage(
+        usage.promptTokens(),
+        usage.completionTokens(),
+        usage.promptTokensDetails().flatMap(details -> details.cachedTokens()).orElse(0L));
+  }
+
+  public long getTotalTokens() {
+    return promptTokens + completionTokens;
+  }
+
+  public LLMUsage plus(LLMUsage other) {
+    return new LLMUsage(
+        promptTokens + other.promptTokens,
+        completionTokens + other.completionTokens,
+        cachedTokens + other.cachedTokens);
+  }
+}
@@ -0,0 +1,238 @@
+package io.github.deweyjose.jswarm.core.retry;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import lombok.Getter;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs completion requests under an {@link LLMRetryPolicy}: transient failures are retried with
+ * exponential backoff and full jitter, a slow request can be hedged with a duplicate, and every
+ * attempt of a run shares one deadline. The first response to arrive wins, the slower attempt is
+ * cancelled or its response discarded.
+ */
+@Slf4j
+public class LLMRetrier {
+
+  private static final ScheduledThreadPoolExecutor timer = newTimer();
+
+  /** Latencies kept per model for the hedge delay, and the least needed to use them. */
+  private static final int LATENCY_WINDOW = 128;
+
+  private static final int MIN_LATENCY_SAMPLES = 20;
+
+  @Getter private final LLMRetryPolicy policy;
+  private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+
+  public LLMRetrier(LLMRetryPolicy policy) {
+    this.policy = policy;
+  }
+
+  private static ScheduledThreadPoolExecutor newTimer() {
+    var timer =
+        new ScheduledThreadPoolExecutor(
+            1,
+            runnable -> {
+              var thread = new Thread(runnable, "jswarm-retry");
+              thread.setDaemon(true);
+              return thread;
+            });
+    // most deadlines are never reached, do not keep their tasks around
+    timer.setRemoveOnCancelPolicy(true);
+    return timer;
+  }
+
+  /** The deadline of a run starting now, in {@link System#nanoTime()} units. */
+  public long deadline() {
+    return policy.getDeadline() == null
+        ? Long.MAX_VALUE
+        : System.nanoTime() + policy.getDeadline().toNanos();
+  }
+
+  /**
+   * Runs {@code task} once {@code deadline} passes, unless the returned future is cancelled first.
+   * Returns null when there is no deadline.
+   */
+  public ScheduledFuture<?> atDeadline(long deadline, Runnable task) {
+    if (deadline == Long.MAX_VALUE) {
+      return null;
+    }
+    return timer.schedule(task, Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+  }
+
+  /** Blocking variant of {@link #callAsync}, failures are rethrown as they are. */
+  @SneakyThrows
+  public <T> T call(String model, Supplier<CompletableFuture<T>> attempt, long deadline) {
+    try {
+      return callAsync(model, attempt, deadline).join();
+    } catch (CompletionException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Runs attempts until one succeeds, the error is not retryable, the attempts are used up or the
+   * deadline passes, in which case the result fails with a {@link TimeoutException}.
+   */
+  public <T> CompletableFuture<T> callAsync(
+      String model, Supplier<CompletableFuture<T>> attempt, long deadline) {
+    var call = new Call<>(model, attempt, deadline);
+    call.start();
+    return call.result;
+  }
+
+  /** Hedge delay for the model, from its recent latencies once there are enough of them. */
+  long hedgeDelayNanos(String model) {
+    var window = latencies.get(model);
+    long observed = window == null ? -1 : window.quantile(policy.getHedgeQuantile());
+    return observed >= 0 ? observed : policy.getHedgeDelay().toNanos();
+  }
+
+  long backoffNanos(int retry) {
+    long cap =
+        Math.min(
+            policy.getMaxBackoff().toNanos(),
+            policy.getInitialBackoff().toNanos() << Math.min(retry - 1, 30));
+    return cap <= 0 ? 0 : ThreadLocalRandom.current().nextLong(cap + 1);
+  }
+
+  private class Call<T> {
+    private final String model;
+    private final Supplier<CompletableFuture<T>> attempt;
+    private final long deadline;
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+    private final List<CompletableFuture<T>> running = new CopyOnWriteArrayList<>();
+
+    private int started;
+    private int pending;
+    private boolean hedged;
+
+    private Call(String model, Supplier<CompletableFuture<T>> attempt, long deadline) {
+      this.model = model;
+      this.attempt = attempt;
+      this.deadline = deadline;
+    }
+
+    void start() {
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        result.completeExceptionally(new TimeoutException("Deadline passed before the request"));
+        return;
+      }
+      if (deadline != Long.MAX_VALUE) {
+        var timeout =
+            timer.schedule(
+                () -> result.completeExceptionally(new TimeoutException("Deadline passed")),
+                remaining,
+                TimeUnit.NANOSECONDS);
+        result.whenComplete((value, error) -> timeout.cancel(false));
+      }
+      // stop whatever is still in flight once there is an outcome
+      result.whenComplete((value, error) -> running.forEach(future -> future.cancel(true)));
+
+      launch();
+      if (policy.getHedgeDelay() != null && policy.getMaxAttempts() > 1) {
+        timer.schedule(this::hedge, hedgeDelayNanos(model), TimeUnit.NANOSECONDS);
+      }
+    }
+
+    private void hedge() {
+      synchronized (this) {
+        if (result.isDone() || hedged || pending == 0 || started >= policy.getMaxAttempts()) {
+          return;
+        }
+        hedged = true;
+      }
+      log.debug("Hedging slow completion for {}", model);
+      launch();
+    }
+
+    private void launch() {
+      synchronized (this) {
+        if (result.isDone()) {
+          return;
+        }
+        started++;
+        pending++;
+      }
+      long start = System.nanoTime();
+      CompletableFuture<T> future;
+      try {
+        future = attempt.get();
+      } catch (Throwable e) {
+        future = CompletableFuture.failedFuture(e);
+      }
+      running.add(future);
+      future.whenComplete(
+          (value, error) -> {
+            if (error == null) {
+              latencies
+                  .computeIfAbsent(model, key -> new LatencyWindow())
+                  .add(System.nanoTime() - start);
+              result.complete(value);
+            } else {
+              failed(error instanceof CompletionException ? error.getCause() : error);
+            }
+          });
+    }
+
+    private void failed(Throwable error) {
+      long backoff;
+      synchronized (this) {
+        pending--;
+        if (result.isDone()) {
+          return;
+        }
+        boolean retry = policy.getRetryable().test(error) && started < policy.getMaxAttempts();
+        if (!retry || pending > 0) {
+          // a hedge still in flight may yet succeed
+          if (pending == 0) {
+            result.completeExceptionally(error);
+          }
+          return;
+        }
+        backoff = backoffNanos(started);
+      }
+      if (System.nanoTime() + backoff >= deadline) {
+        result.completeExceptionally(error);
+        return;
+      }
+      log.debug("Retrying completion for {} in {}ns: {}", model, backoff, error.toString());
+      timer.schedule(this::launch, backoff, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /** The most recent latencies of one model. */
+  private static class LatencyWindow {
+    private final long[] samples = new long[LATENCY_WINDOW];
+    private int next;
+    private int size;
+
+    synchronized void add(long nanos) {
+      samples[next] = nanos;
+      next = (next + 1) % samples.length;
+      size = Math.min(size + 1, samples.length);
+    }
+
+    synchronized long quantile(double quantile) {
+      if (size < MIN_LATENCY_SAMPLES) {
+        return -1;
+      }
+      long[] sorted = Arrays.copyOf(samples, size);
+      Arrays.sort(sorted);
+      return sorted[Math.min(size - 1, (int) Math.ceil(quantile * size) - 1)];
+    }
+  }
+}
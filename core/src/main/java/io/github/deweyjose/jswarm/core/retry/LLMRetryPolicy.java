@@ -0,0 +1,56 @@
+package io.github.deweyjose.jswarm.core.retry;
+
+import com.openai.errors.OpenAIIoException;
+import com.openai.errors.OpenAIServiceException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+import lombok.Builder;
+import lombok.Getter;
+
+/** How {@link LLMRetrier} retries, hedges and bounds completion requests. */
+@Builder
+@Getter
+public class LLMRetryPolicy {
+
+  /** Attempts per completion, including the first one and any hedge. */
+  @Builder.Default private final int maxAttempts = 3;
+
+  /** Upper bound of the first backoff, doubled on every retry up to {@link #maxBackoff}. */
+  @Builder.Default private final Duration initialBackoff = Duration.ofMillis(250);
+
+  @Builder.Default private final Duration maxBackoff = Duration.ofSeconds(8);
+
+  /** Time allowed for a whole run, all of its completions and retries included. Null for none. */
+  private final Duration deadline;
+
+  /**
+   * Sends a duplicate request when the first one takes longer than this. Once enough latencies of
+   * the model were observed the delay follows their {@link #hedgeQuantile} instead. Null disables
+   * hedging.
+   */
+  private final Duration hedgeDelay;
+
+  @Builder.Default private final double hedgeQuantile = 0.95;
+
+  @Builder.Default private final Predicate<Throwable> retryable = LLMRetryPolicy::isTransient;
+
+  /** Network failures, timeouts, 408, 409, 429 and server errors. */
+  public static boolean isTransient(Throwable error) {
+    for (var cause = error; cause != null; cause = cause.getCause()) {
+      if (cause instanceof OpenAIServiceException) {
+        int status = ((OpenAIServiceException) cause).statusCode();
+        return status == 408 || status == 409 || status == 429 || status >= 500;
+      }
+      if (cause instanceof OpenAIIoException
+          || cause instanceof IOException
+          || cause instanceof UncheckedIOException
+          || cause instanceof TimeoutException) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,70 @@
+package io.github.deweyjose.jswarm.core.routing;
+
+import io.github.deweyjose.jswarm.core.model.LLMAgentWrapper;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Routes by keyword rules. A prompt goes to the agent whose keywords it mentions most, provided it
+ * mentions at least {@code minMatches} of them and strictly more than of any other agent. Keywords
+ * match whole words or phrases, ignoring case. Add the rules before the router is in use.
+ *
+ * <pre>
+ * new KeywordIntentRouter()
+ *     .rule("WeatherMan", "weather", "forecast", "rain")
+ *     .rule("StockBroker", "stock price", "ticker");
+ * </pre>
+ */
+public class KeywordIntentRouter implements LLMIntentRouter {
+
+  private final int minMatches;
+  private final Map<String, List<Pattern>> rules = new HashMap<>();
+
+  public KeywordIntentRouter() {
+    this(1);
+  }
+
+  public KeywordIntentRouter(int minMatches) {
+    this.minMatches = minMatches;
+  }
+
+  /** Adds keywords for the agent with this {@link LLMAgentWrapper#getName() name}. */
+  public KeywordIntentRouter rule(String agent, String... keywords) {
+    var patterns = rules.computeIfAbsent(agent, name -> new ArrayList<>());
+    for (var keyword : keywords) {
+      patterns.add(
+          Pattern.compile(
+              "\\b" + Pattern.quote(keyword) + "\\b",
+              Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE));
+    }
+    return this;
+  }
+
+  @Override
+  public LLMAgentWrapper route(String prompt, List<LLMAgentWrapper> agents) {
+    LLMAgentWrapper best = null;
+    int bestMatches = 0;
+    int runnerUp = 0;
+
+    for (var agent : agents) {
+      int matches = 0;
+      for (var pattern : rules.getOrDefault(agent.getName(), List.of())) {
+        if (pattern.matcher(prompt).find()) {
+          matches++;
+        }
+      }
+      if (matches > bestMatches) {
+        runnerUp = bestMatches;
+        bestMatches = matches;
+        best = agent;
+      } else if (matches > runnerUp) {
+        runnerUp = matches;
+      }
+    }
+
+    return bestMatches >= minMatches && bestMatches > runnerUp ? best : null;
+  }
+}
@@ -0,0 +1,20 @@
+package io.github.deweyjose.jswarm.core.routing;
+
+import io.github.deweyjose.jswarm.core.model.LLMAgentWrapper;
+import java.util.List;
+
+/**
+ * Picks the agent for a prompt without asking the coordinator, saving the completion that would
+ * only route it. Consulted for every run that would start at the coordinator. Implementations can
+ * use keyword rules, an embedding index over the agent descriptions or a local classifier; they
+ * should only answer when they are confident and return null otherwise.
+ */
+@FunctionalInterface
+public interface LLMIntentRouter {
+
+  /**
+   * @param agents the registered agents, the coordinator excluded
+   * @return one of {@code agents}, or null to leave the prompt to the coordinator
+   */
+  LLMAgentWrapper route(String prompt, List<LLMAgentWrapper> agents);
+}
@@ -0,0 +1,16 @@
+package io.github.deweyjose.jswarm.core.scheduler;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/** Provider limits for one model. Any limit left at zero is not enforced. */
+@Builder
+@Getter
+public class LLMRateLimits {
+  private final int requestsPerMinute;
+  private final int tokensPerMinute;
+  // requests in flight at once
+  private final int maxConcurrent;
+  // requests waiting for a slot, beyond which new requests are rejected
+  private final int maxQueueDepth;
+}
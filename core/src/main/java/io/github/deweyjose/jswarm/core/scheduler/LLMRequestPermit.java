@@ -0,0 +1,30 @@
+package io.github.deweyjose.jswarm.core.scheduler;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongConsumer;
+
+/**
+ * Admission of one request by the {@link LLMRequestScheduler}. Release it once the response is in,
+ * with the tokens the request actually used so the token budget can be corrected.
+ */
+public class LLMRequestPermit implements AutoCloseable {
+
+  private final LongConsumer release;
+  private final AtomicBoolean released = new AtomicBoolean();
+
+  LLMRequestPermit(LongConsumer release) {
+    this.release = release;
+  }
+
+  /** Releases the permit. A negative count keeps the estimate the request was admitted with. */
+  public void release(long usedTokens) {
+    if (released.compareAndSet(false, true)) {
+      release.accept(usedTokens);
+    }
+  }
+
+  @Override
+  public void close() {
+    release(-1);
+  }
+}
@@ -0,0 +1,279 @@
+package io.github.deweyjose.jswarm.core.scheduler;
+
+import com.openai.models.ChatCompletionCreateParams;
+import io.github.deweyjose.jswarm.core.history.LLMTokenEstimator;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Admits completion requests at the rate a provider allows, with one queue per model. Each model
+ * has token buckets for requests and tokens per minute, a bound on requests in flight and a bound
+ * on requests waiting.
+ *
+ * <p>Waiting requests are grouped by caller, usually one conversation, and callers take turns: a
+ * conversation with many queued requests cannot starve the others. A request that would exceed the
+ * queue depth fails fast with a {@link RejectedExecutionException} instead of waiting for a 429.
+ */
+@Slf4j
+public class LLMRequestScheduler {
+
+  private static final ScheduledExecutorService timer =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            var thread = new Thread(runnable, "jswarm-scheduler");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private final Function<String, LLMRateLimits> limits;
+  private final LLMTokenEstimator estimator;
+  private final LongSupplier clock;
+  private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+
+  LLMRequestScheduler(
+      Function<String, LLMRateLimits> limits, LLMTokenEstimator estimator, LongSupplier clock) {
+    this.limits = limits;
+    this.estimator = estimator;
+    this.clock = clock;
+  }
+
+  /** @param limits limits of each model, looked up once per model */
+  public LLMRequestScheduler(Function<String, LLMRateLimits> limits, LLMTokenEstimator estimator) {
+    this(limits, estimator, System::nanoTime);
+  }
+
+  public LLMRequestScheduler(Function<String, LLMRateLimits> limits) {
+    this(limits, LLMTokenEstimator.characters());
+  }
+
+  /** Applies the same limits to every model, each model still gets its own budget. */
+  public LLMRequestScheduler(LLMRateLimits limits) {
+    this(model -> limits);
+  }
+
+  /** Tokens a request is admitted with: its messages plus the completion it may produce. */
+  public int estimate(ChatCompletionCreateParams params) {
+    int tokens = 0;
+    for (var message : params.messages()) {
+      tokens += estimator.estimate(message);
+    }
+    return tokens + params.maxCompletionTokens().orElse(0L).intValue();
+  }
+
+  /** Waits until the request may be sent. */
+  @SneakyThrows
+  public LLMRequestPermit acquire(String model, Object caller, int tokens) {
+    var permit = acquireAsync(model, caller, tokens);
+    try {
+      return permit.get();
+    } catch (InterruptedException e) {
+      if (!permit.cancel(false)) {
+        permit.join().close();
+      }
+      throw e;
+    } catch (ExecutionException e) {
+      throw e.getCause();
+    }
+  }
+
+  /** Completes once the request may be sent, fails if the model's queue is full. */
+  public CompletableFuture<LLMRequestPermit> acquireAsync(String model, Object caller, int tokens) {
+    return lanes.computeIfAbsent(model, name -> new Lane(name, limits.apply(name)))
+        .enqueue(caller, tokens);
+  }
+
+  /** Requests of the model waiting for admission. */
+  public int getQueueDepth(String model) {
+    var lane = lanes.get(model);
+    return lane == null ? 0 : lane.queueDepth();
+  }
+
+  private class Lane {
+    private final String model;
+    private final int maxConcurrent;
+    private final int maxQueueDepth;
+    private final TokenBucket requests;
+    private final TokenBucket tokens;
+
+    // callers with waiting requests, in the order they get their next turn
+    private final ArrayDeque<Object> callers = new ArrayDeque<>();
+    private final Map<Object, ArrayDeque<Ticket>> waiting = new IdentityHashMap<>();
+    private int queued;
+    private int inFlight;
+    private boolean retryScheduled;
+
+    private Lane(String model, LLMRateLimits limits) {
+      this.model = model;
+      this.maxConcurrent = unlimitedIfZero(limits.getMaxConcurrent());
+      this.maxQueueDepth = unlimitedIfZero(limits.getMaxQueueDepth());
+      this.requests = TokenBucket.perMinute(limits.getRequestsPerMinute(), clock.getAsLong());
+      this.tokens = TokenBucket.perMinute(limits.getTokensPerMinute(), clock.getAsLong());
+    }
+
+    CompletableFuture<LLMRequestPermit> enqueue(Object caller, int estimate) {
+      var ticket = new Ticket(Math.max(0, estimate));
+      synchronized (this) {
+        if (queued >= maxQueueDepth) {
+          return CompletableFuture.failedFuture(
+              new RejectedExecutionException(
+                  "Request queue for model " + model + " is full, " + queued + " waiting"));
+        }
+        waiting
+            .computeIfAbsent(
+                caller,
+                key -> {
+                  callers.addLast(key);
+                  return new ArrayDeque<>();
+                })
+            .addLast(ticket);
+        queued++;
+      }
+      dispatch();
+      return ticket.future;
+    }
+
+    synchronized int queueDepth() {
+      return queued;
+    }
+
+    private void release(Ticket ticket, long usedTokens) {
+      synchronized (this) {
+        inFlight--;
+        if (usedTokens >= 0 && tokens != null) {
+          tokens.adjust(ticket.tokens - usedTokens, clock.getAsLong());
+        }
+      }
+      dispatch();
+    }
+
+    private void dispatch() {
+      List<Ticket> admitted = new ArrayList<>();
+      synchronized (this) {
+        while (!callers.isEmpty() && inFlight < maxConcurrent) {
+          var caller = callers.peekFirst();
+          var queue = waiting.get(caller);
+          var ticket = queue.peekFirst();
+
+          if (!ticket.future.isCancelled()) {
+            long now = clock.getAsLong();
+            long wait =
+                Math.max(
+                    requests == null ? 0 : requests.waitNanos(1, now),
+                    tokens == null ? 0 : tokens.waitNanos(ticket.tokens, now));
+            if (wait > 0) {
+              scheduleRetry(wait);
+              break;
+            }
+            if (requests != null) {
+              requests.take(1);
+            }
+            if (tokens != null) {
+              tokens.take(ticket.tokens);
+            }
+            inFlight++;
+            admitted.add(ticket);
+          }
+
+          // the caller goes to the back of the line, or leaves it if nothing else is waiting
+          queue.pollFirst();
+          queued--;
+          callers.pollFirst();
+          if (queue.isEmpty()) {
+            waiting.remove(caller);
+          } else {
+            callers.addLast(caller);
+          }
+        }
+      }
+
+      // complete outside the lock, callers may continue on this thread
+      for (var ticket : admitted) {
+        var permit = new LLMRequestPermit(used -> release(ticket, used));
+        if (!ticket.future.complete(permit)) {
+          permit.close();
+        }
+      }
+    }
+
+    private void scheduleRetry(long nanos) {
+      if (!retryScheduled) {
+        retryScheduled = true;
+        log.debug("Model {} is over its rate limit, retrying in {}ns", model, nanos);
+        timer.schedule(
+            () -> {
+              synchronized (this) {
+                retryScheduled = false;
+              }
+              dispatch();
+            },
+            nanos,
+            TimeUnit.NANOSECONDS);
+      }
+    }
+  }
+
+  private static int unlimitedIfZero(int limit) {
+    return limit > 0 ? limit : Integer.MAX_VALUE;
+  }
+
+  private static class Ticket {
+    private final int tokens;
+    private final CompletableFuture<LLMRequestPermit> future = new CompletableFuture<>();
+
+    private Ticket(int tokens) {
+      this.tokens = tokens;
+    }
+  }
+
+  /**
+   * Refills continuously up to one minute's worth. Requests larger than the bucket are admitted
+   * once it is full, and usage above the estimate puts it in debt.
+   */
+  private static class TokenBucket {
+    private final double capacity;
+    private final double perNano;
+    private double available;
+    private long refilledAt;
+
+    private TokenBucket(int perMinute, long now) {
+      this.capacity = perMinute;
+      this.perNano = perMinute / (double) TimeUnit.MINUTES.toNanos(1);
+      this.available = perMinute;
+      this.refilledAt = now;
+    }
+
+    static TokenBucket perMinute(int perMinute, long now) {
+      return perMinute > 0 ? new TokenBucket(perMinute, now) : null;
+    }
+
+    long waitNanos(int amount, long now) {
+      available = Math.min(capacity, available + (now - refilledAt) * perNano);
+      refilledAt = now;
+      double needed = Math.min(amount, capacity) - available;
+      return needed <= 0 ? 0 : (long) Math.ceil(needed / perNano);
+    }
+
+    void take(int amount) {
+      available -= amount;
+    }
+
+    void adjust(long amount, long now) {
+      waitNanos(0, now);
+      available = Math.min(capacity, available + amount);
+    }
+  }
+}
@@ -0,0 +1,354 @@
+package io.github.deweyjose.jswarm.core.store;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.openai.models.ChatCompletionMessageParam;
+import io.github.deweyjose.jswarm.core.wire.LLMWireFormat;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Stores each conversation as two append-only files in a directory. {@code <id>.log} holds one
+ * length prefixed JSON record per turn, with the turn's messages and the active agent. {@code
+ * <id>.idx} holds the 8 byte offset of every record, so any turn can be found without reading the
+ * ones before it.
+ *
+ * <p>A turn is written to the log before its offset is added to the index, and only complete,
+ * indexed records are read back: a write torn by a crash is ignored, and cut off by the next
+ * append. Reads fetch and decode only the turns asked for.
+ *
+ * <p>Records are read with positional reads rather than from a memory-mapped log. A mapping is
+ * limited to 2 GB and holds on to the file until it is garbage collected, and a resumed turn is
+ * read once, so mapping would save nothing. The files of recently used sessions stay open between
+ * appends and reads; {@link #close()} closes them.
+ */
+@Slf4j
+public class FileConversationStore implements LLMConversationStore, Closeable {
+
+  private static final ObjectMapper mapper = LLMWireFormat.mapper();
+  private static final Pattern SESSION_ID = Pattern.compile("[A-Za-z0-9._-]+");
+  private static final int LOCK_STRIPES = 64;
+  private static final int MAX_OPEN_SESSIONS = 64;
+
+  private final Path directory;
+  private final boolean sync;
+  // striped so the number of locks stays fixed however many sessions are stored
+  private final Object[] locks = new Object[LOCK_STRIPES];
+
+  // files of the most recently used sessions, the least recently used are closed beyond the limit
+  private final Map<String, SessionFiles> open =
+      new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SessionFiles> eldest) {
+          if (size() <= MAX_OPEN_SESSIONS) {
+            return false;
+          }
+          eldest.getValue().evict();
+          return true;
+        }
+      };
+
+  private boolean closed;
+
+  /** @param sync force every append to disk before returning, instead of leaving it to the OS */
+  @SneakyThrows
+  public FileConversationStore(Path directory, boolean sync) {
+    this.directory = Files.createDirectories(directory);
+    this.sync = sync;
+    Arrays.setAll(locks, i -> new Object());
+  }
+
+  public FileConversationStore(Path directory) {
+    this(directory, false);
+  }
+
+  @Override
+  public void append(
+      String sessionId, List<ChatCompletionMessageParam> messages, String activeAgent) {
+    ObjectNode record = mapper.createObjectNode();
+    record.put("agent", activeAgent);
+    record.set("messages", mapper.valueToTree(messages));
+
+    byte[] json;
+    try {
+      json = mapper.writeValueAsBytes(record);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    // one writer per session at a time
+    synchronized (lock(sessionId)) {
+      var files = retain(sessionId);
+      try {
+        var logChannel = files.logChannel;
+        var indexChannel = files.indexChannel;
+        long entries = indexChannel.size() / Long.BYTES;
+        long offset = 0;
+        // drop whatever a crash left after the last complete turn
+        while (entries > 0) {
+          long last = read(indexChannel, (entries - 1) * Long.BYTES, Long.BYTES).getLong();
+          if (last + Integer.BYTES <= logChannel.size()) {
+            int length = read(logChannel, last, Integer.BYTES).getInt();
+            if (length >= 0 && last + Integer.BYTES + length <= logChannel.size()) {
+              offset = last + Integer.BYTES + length;
+              break;
+            }
+          }
+          entries--;
+        }
+        logChannel.truncate(offset);
+        indexChannel.truncate(entries * Long.BYTES);
+
+        var buffer = ByteBuffer.allocate(Integer.BYTES + json.length);
+        buffer.putInt(json.length).put(json).flip();
+        writeFully(logChannel, buffer, offset);
+
+        var entry = ByteBuffer.allocate(Long.BYTES);
+        entry.putLong(offset).flip();
+        writeFully(indexChannel, entry, entries * Long.BYTES);
+
+        if (sync) {
+          logChannel.force(false);
+          indexChannel.force(false);
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException("Unable to store turn of session " + sessionId, e);
+      } finally {
+        release(files);
+      }
+    }
+  }
+
+  @Override
+  public LLMStoredConversation load(String sessionId) {
+    if (!Files.exists(indexFile(sessionId)) || !Files.exists(logFile(sessionId))) {
+      return null;
+    }
+
+    var files = retain(sessionId);
+    try {
+      var logChannel = files.logChannel;
+      var indexChannel = files.indexChannel;
+      long logSize = logChannel.size();
+      long indexSize = indexChannel.size() / Long.BYTES * Long.BYTES;
+      if (indexSize > Integer.MAX_VALUE) {
+        throw new IllegalStateException(
+            "Session " + sessionId + " has too many turns to load: " + indexSize / Long.BYTES);
+      }
+      var entries = read(indexChannel, 0, (int) indexSize);
+
+      long[] offsets = new long[entries.remaining() / Long.BYTES];
+      int count = 0;
+      while (entries.remaining() >= Long.BYTES) {
+        offsets[count++] = entries.getLong();
+      }
+
+      // only keep records that were written completely
+      while (count > 0 && !isComplete(logChannel, logSize, offsets[count - 1])) {
+        log.warn("Ignoring incomplete turn {} of session {}", count - 1, sessionId);
+        count--;
+      }
+      if (count == 0) {
+        return null;
+      }
+      return new FileConversation(sessionId, Arrays.copyOf(offsets, count));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to load session " + sessionId, e);
+    } finally {
+      release(files);
+    }
+  }
+
+  /** Closes the open files. Conversations loaded from the store cannot be read afterwards. */
+  @Override
+  public void close() {
+    synchronized (open) {
+      closed = true;
+      open.values().forEach(SessionFiles::evict);
+      open.clear();
+    }
+  }
+
+  /** The open files of the session, opened if need be. Release them once done. */
+  private SessionFiles retain(String sessionId) {
+    var logFile = logFile(sessionId);
+    var indexFile = indexFile(sessionId);
+    synchronized (open) {
+      if (closed) {
+        throw new IllegalStateException("Conversation store is closed");
+      }
+      var files = open.get(sessionId);
+      if (files == null) {
+        try {
+          files = new SessionFiles(open(logFile), open(indexFile));
+        } catch (IOException e) {
+          throw new UncheckedIOException("Unable to open session " + sessionId, e);
+        }
+        open.put(sessionId, files);
+      }
+      // files still in the map were never evicted
+      files.users++;
+      return files;
+    }
+  }
+
+  private void release(SessionFiles files) {
+    synchronized (open) {
+      if (--files.users == 0 && files.evicted) {
+        files.closeQuietly();
+      }
+    }
+  }
+
+  private static boolean isComplete(FileChannel channel, long size, long offset)
+      throws IOException {
+    if (offset < 0 || offset + Integer.BYTES > size) {
+      return false;
+    }
+    int length = read(channel, offset, Integer.BYTES).getInt();
+    return length >= 0 && offset + Integer.BYTES + length <= size;
+  }
+
+  private static FileChannel open(Path file) throws IOException {
+    return FileChannel.open(
+        file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+  }
+
+  private static ByteBuffer read(FileChannel channel, long position, int size)
+      throws IOException {
+    var buffer = ByteBuffer.allocate(size);
+    while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) >= 0) {}
+    return buffer.flip();
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+  }
+
+  private Path logFile(String sessionId) {
+    return directory.resolve(checkId(sessionId) + ".log");
+  }
+
+  private Path indexFile(String sessionId) {
+    return directory.resolve(checkId(sessionId) + ".idx");
+  }
+
+  private static String checkId(String sessionId) {
+    if (sessionId == null || !SESSION_ID.matcher(sessionId).matches()) {
+      throw new IllegalArgumentException("Invalid session id: " + sessionId);
+    }
+    return sessionId;
+  }
+
+  private Object lock(String sessionId) {
+    return locks[Math.floorMod(sessionId.hashCode(), LOCK_STRIPES)];
+  }
+
+  /**
+   * The open log and index of one session. Positional reads and writes share the channels safely,
+   * an evicted pair is closed once the last user releases it.
+   */
+  private static class SessionFiles {
+    private final FileChannel logChannel;
+    private final FileChannel indexChannel;
+    // guarded by the store's open map
+    private int users;
+    private boolean evicted;
+
+    private SessionFiles(FileChannel logChannel, FileChannel indexChannel) {
+      this.logChannel = logChannel;
+      this.indexChannel = indexChannel;
+    }
+
+    private void evict() {
+      evicted = true;
+      if (users == 0) {
+        closeQuietly();
+      }
+    }
+
+    private void closeQuietly() {
+      // closes both channels even if the first one fails
+      try (logChannel;
+          indexChannel) {
+      } catch (IOException e) {
+        log.warn("Unable to close conversation files", e);
+      }
+    }
+  }
+
+  private class FileConversation implements LLMStoredConversation {
+
+    private final String sessionId;
+    private final long[] offsets;
+    private final String activeAgent;
+
+    private FileConversation(String sessionId, long[] offsets) {
+      this.sessionId = sessionId;
+      this.offsets = offsets;
+      this.activeAgent = record(offsets.length - 1).path("agent").asText(null);
+    }
+
+    @Override
+    public String getSessionId() {
+      return sessionId;
+    }
+
+    @Override
+    public String getActiveAgent() {
+      return activeAgent;
+    }
+
+    @Override
+    public int getTurnCount() {
+      return offsets.length;
+    }
+
+    @Override
+    public List<ChatCompletionMessageParam> getTurn(int index) {
+      var messages = record(index).path("messages");
+      List<ChatCompletionMessageParam> turn = new ArrayList<>(messages.size());
+      for (JsonNode message : messages) {
+        try {
+          turn.add(mapper.treeToValue(message, ChatCompletionMessageParam.class));
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+      return turn;
+    }
+
+    // records before the last complete one are never rewritten, appends only cut off torn tails
+    private JsonNode record(int index) {
+      long offset = offsets[index];
+      var files = retain(sessionId);
+      try {
+        int length = read(files.logChannel, offset, Integer.BYTES).getInt();
+        var json = read(files.logChannel, offset + Integer.BYTES, length);
+        return mapper.readTree(json.array(), 0, json.limit());
+      } catch (IOException e) {
+        throw new UncheckedIOException("Unable to read turn " + index + " of " + sessionId, e);
+      } finally {
+        release(files);
+      }
+    }
+  }
+}
@@ -0,0 +1,19 @@
+package io.github.deweyjose.jswarm.core.store;
+
+import com.openai.models.ChatCompletionMessageParam;
+import java.util.List;
+
+/**
+ * Durable storage for conversations run through an {@link
+ * io.github.deweyjose.jswarm.core.LLMSession}. Each turn is appended once with the messages it
+ * added, so the cost of saving a turn does not grow with the length of the conversation. Context
+ * variables hold arbitrary objects and are not stored.
+ */
+public interface LLMConversationStore {
+
+  /** Appends one turn: the messages it added and the agent that produced its reply. */
+  void append(String sessionId, List<ChatCompletionMessageParam> messages, String activeAgent);
+
+  /** Opens a stored conversation, or returns null if nothing was stored for the id. */
+  LLMStoredConversation load(String sessionId);
+}
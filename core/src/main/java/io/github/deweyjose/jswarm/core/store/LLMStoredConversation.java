@@ -0,0 +1,31 @@
+package io.github.deweyjose.jswarm.core.store;
+
+import com.openai.models.ChatCompletionMessageParam;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A stored conversation, read lazily: turns are only decoded when asked for, so resuming a long
+ * conversation with its last few turns does not read the rest.
+ */
+public interface LLMStoredConversation {
+
+  String getSessionId();
+
+  /** Name of the agent that produced the last reply. */
+  String getActiveAgent();
+
+  int getTurnCount();
+
+  /** The messages added by turn {@code index}, oldest turn first. */
+  List<ChatCompletionMessageParam> getTurn(int index);
+
+  /** The messages of the last {@code turns} turns, always starting at a turn boundary. */
+  default List<ChatCompletionMessageParam> getRecentMessages(int turns) {
+    List<ChatCompletionMessageParam> messages = new ArrayList<>();
+    for (int i = Math.max(0, getTurnCount() - turns); i < getTurnCount(); i++) {
+      messages.addAll(getTurn(i));
+    }
+    return messages;
+  }
+}
@@ -0,0 +1,28 @@
+package io.github.deweyjose.jswarm.core.telemetry;
+
+import io.github.deweyjose.jswarm.core.model.LLMAgentWrapper;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Observes the runs of an {@link io.github.deweyjose.jswarm.core.LLMNexus}. Each run gets its own
+ * {@link LLMRunListener}, so an implementation can keep per run state such as a trace span without
+ * relying on the thread a callback happens to arrive on.
+ */
+@FunctionalInterface
+public interface LLMNexusListener {
+
+  /** Called as a run starts at {@code agent}. Return {@link LLMRunListener#NOOP} to ignore it. */
+  LLMRunListener onRunStart(LLMAgentWrapper agent);
+
+  /** Passes every run to each of the listeners, in order. */
+  static LLMNexusListener of(LLMNexusListener... listeners) {
+    return agent -> {
+      List<LLMRunListener> runs = new ArrayList<>(listeners.length);
+      for (var listener : listeners) {
+        runs.add(listener.onRunStart(agent));
+      }
+      return LLMRunListener.of(runs);
+    };
+  }
+}
@@ -0,0 +1,79 @@
+package io.github.deweyjose.jswarm.core.telemetry;
+
+import io.github.deweyjose.jswarm.core.model.LLMAgentWrapper;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Events of one run. Callbacks arrive on whichever thread the run is on at the time, parallel tool
+ * calls report concurrently. They must be cheap and must not throw.
+ */
+public interface LLMRunListener {
+
+  LLMRunListener NOOP = new LLMRunListener() {};
+
+  /**
+   * One completion of the loop. Token counts are zero when the provider did not report usage. A
+   * cached completion cost no tokens this time.
+   */
+  default void onCompletion(
+      LLMAgentWrapper agent,
+      Duration latency,
+      long promptTokens,
+      long completionTokens,
+      boolean cached) {}
+
+  /** One tool call, {@code error} is null when it succeeded. */
+  default void onToolCall(
+      LLMAgentWrapper agent, String function, Duration latency, Throwable error) {}
+
+  default void onHandoff(LLMAgentWrapper from, LLMAgentWrapper to) {}
+
+  /**
+   * The intent router sent the prompt straight to {@code agent}, or left it to the coordinator
+   * when {@code agent} is null. Only runs that start at the coordinator are routed.
+   */
+  default void onRoute(LLMAgentWrapper agent) {}
+
+  /** The run ended at {@code agent} after {@code completions} completions. */
+  default void onRunEnd(
+      LLMAgentWrapper agent, int completions, Duration duration, Throwable error) {}
+
+  static LLMRunListener of(List<LLMRunListener> listeners) {
+    return new LLMRunListener() {
+      @Override
+      public void onCompletion(
+          LLMAgentWrapper agent,
+          Duration latency,
+          long promptTokens,
+          long completionTokens,
+          boolean cached) {
+        listeners.forEach(
+            listener ->
+                listener.onCompletion(agent, latency, promptTokens, completionTokens, cached));
+      }
+
+      @Override
+      public void onToolCall(
+          LLMAgentWrapper agent, String function, Duration latency, Throwable error) {
+        listeners.forEach(listener -> listener.onToolCall(agent, function, latency, error));
+      }
+
+      @Override
+      public void onHandoff(LLMAgentWrapper from, LLMAgentWrapper to) {
+        listeners.forEach(listener -> listener.onHandoff(from, to));
+      }
+
+      @Override
+      public void onRoute(LLMAgentWrapper agent) {
+        listeners.forEach(listener -> listener.onRoute(agent));
+      }
+
+      @Override
+      public void onRunEnd(
+          LLMAgentWrapper agent, int completions, Duration duration, Throwable error) {
+        listeners.forEach(listener -> listener.onRunEnd(agent, completions, duration, error));
+      }
+    };
+  }
+}
@@ -0,0 +1,112 @@
+package io.github.deweyjose.jswarm.core.telemetry;
+
+import io.github.deweyjose.jswarm.core.model.LLMAgentWrapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+
+/**
+ * Records runs as Micrometer meters. Requires {@code io.micrometer:micrometer-core} on the
+ * classpath.
+ *
+ * <ul>
+ *   <li>{@code jswarm.run} timer and {@code jswarm.run.completions} summary, by starting agent and
+ *       outcome
+ *   <li>{@code jswarm.completion} timer by agent, model and whether it was cached
+ *   <li>{@code jswarm.tokens} counter by agent, model and type, prompt or completion
+ *   <li>{@code jswarm.tool} timer by agent, function and outcome
+ *   <li>{@code jswarm.handoff} counter by source and target agent
+ *   <li>{@code jswarm.route} counter by outcome, hit or miss, and the agent routed to; the hit rate
+ *       of the intent router is hits over all routed runs
+ * </ul>
+ */
+public class MicrometerNexusListener implements LLMNexusListener {
+
+  private final MeterRegistry registry;
+
+  public MicrometerNexusListener(MeterRegistry registry) {
+    this.registry = registry;
+  }
+
+  private static String outcome(Throwable error) {
+    return error == null ? "success" : "error";
+  }
+
+  @Override
+  public LLMRunListener onRunStart(LLMAgentWrapper start) {
+    return new LLMRunListener() {
+      @Override
+      public void onCompletion(
+          LLMAgentWrapper agent,
+          Duration latency,
+          long promptTokens,
+          long completionTokens,
+          boolean cached) {
+        registry
+            .timer(
+                "jswarm.completion",
+                "agent",
+                agent.getName(),
+                "model",
+                agent.getModel(),
+                "cached",
+                String.valueOf(cached))
+            .record(latency);
+        if (!cached) {
+          registry
+              .counter(
+                  "jswarm.tokens", "agent", agent.getName(), "model", agent.getModel(), "type",
+                  "prompt")
+              .increment(promptTokens);
+          registry
+              .counter(
+                  "jswarm.tokens", "agent", agent.getName(), "model", agent.getModel(), "type",
+                  "completion")
+              .increment(completionTokens);
+        }
+      }
+
+      @Override
+      public void onToolCall(
+          LLMAgentWrapper agent, String function, Duration latency, Throwable error) {
+        registry
+            .timer(
+                "jswarm.tool",
+                "agent",
+                agent.getName(),
+                "function",
+                function,
+                "outcome",
+                outcome(error))
+            .record(latency);
+      }
+
+      @Override
+      public void onHandoff(LLMAgentWrapper from, LLMAgentWrapper to) {
+        registry.counter("jswarm.handoff", "from", from.getName(), "to", to.getName()).increment();
+      }
+
+      @Override
+      public void onRoute(LLMAgentWrapper agent) {
+        registry
+            .counter(
+                "jswarm.route",
+                "outcome",
+                agent == null ? "miss" : "hit",
+                "agent",
+                agent == null ? start.getName() : agent.getName())
+            .increment();
+      }
+
+      @Override
+      public void onRunEnd(
+          LLMAgentWrapper agent, int completions, Duration duration, Throwable error) {
+        registry
+            .timer("jswarm.run", "agent", start.getName(), "outcome", outcome(error))
+            .record(duration);
+        registry
+            .summary("jswarm.run.completions", "agent", start.getName())
+            .record(completions);
+      }
+    };
+  }
+}
@@ -0,0 +1,110 @@
+package io.github.deweyjose.jswarm.core.telemetry;
+
+import io.github.deweyjose.jswarm.core.model.LLMAgentWrapper;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Traces runs with OpenTelemetry: a {@code jswarm.run} span per run, with a child span per
+ * completion and per tool call and an event per handoff. Routed runs carry {@code jswarm.routed}
+ * and the agent the router picked as {@code jswarm.target_agent}. The run span is a child of the
+ * span current when the run starts. Requires {@code io.opentelemetry:opentelemetry-api} on the
+ * classpath.
+ */
+public class OpenTelemetryNexusListener implements LLMNexusListener {
+
+  private static final AttributeKey<String> AGENT = AttributeKey.stringKey("jswarm.agent");
+  private static final AttributeKey<String> FUNCTION = AttributeKey.stringKey("jswarm.function");
+  private static final AttributeKey<String> TARGET = AttributeKey.stringKey("jswarm.target_agent");
+  private static final AttributeKey<Boolean> CACHED = AttributeKey.booleanKey("jswarm.cached");
+  private static final AttributeKey<Boolean> ROUTED = AttributeKey.booleanKey("jswarm.routed");
+  private static final AttributeKey<Long> COMPLETIONS = AttributeKey.longKey("jswarm.completions");
+  private static final AttributeKey<String> MODEL = AttributeKey.stringKey("gen_ai.request.model");
+  private static final AttributeKey<Long> INPUT_TOKENS =
+      AttributeKey.longKey("gen_ai.usage.input_tokens");
+  private static final AttributeKey<Long> OUTPUT_TOKENS =
+      AttributeKey.longKey("gen_ai.usage.output_tokens");
+
+  private final Tracer tracer;
+
+  public OpenTelemetryNexusListener(Tracer tracer) {
+    this.tracer = tracer;
+  }
+
+  @Override
+  public LLMRunListener onRunStart(LLMAgentWrapper start) {
+    var run = tracer.spanBuilder("jswarm.run").setAttribute(AGENT, start.getName()).startSpan();
+    var parent = Context.current().with(run);
+
+    return new LLMRunListener() {
+      /** Events report once they are over, so child spans are backdated to when they began. */
+      private Span child(String name, Duration latency) {
+        var now = Instant.now();
+        return tracer
+            .spanBuilder(name)
+            .setParent(parent)
+            .setStartTimestamp(now.minus(latency))
+            .startSpan();
+      }
+
+      @Override
+      public void onCompletion(
+          LLMAgentWrapper agent,
+          Duration latency,
+          long promptTokens,
+          long completionTokens,
+          boolean cached) {
+        child("jswarm.completion", latency)
+            .setAttribute(AGENT, agent.getName())
+            .setAttribute(MODEL, agent.getModel())
+            .setAttribute(CACHED, cached)
+            .setAttribute(INPUT_TOKENS, promptTokens)
+            .setAttribute(OUTPUT_TOKENS, completionTokens)
+            .end();
+      }
+
+      @Override
+      public void onToolCall(
+          LLMAgentWrapper agent, String function, Duration latency, Throwable error) {
+        var span =
+            child("jswarm.tool", latency)
+                .setAttribute(AGENT, agent.getName())
+                .setAttribute(FUNCTION, function);
+        if (error != null) {
+          span.recordException(error).setStatus(StatusCode.ERROR);
+        }
+        span.end();
+      }
+
+      @Override
+      public void onHandoff(LLMAgentWrapper from, LLMAgentWrapper to) {
+        run.addEvent(
+            "jswarm.handoff", Attributes.of(AGENT, from.getName(), TARGET, to.getName()));
+      }
+
+      @Override
+      public void onRoute(LLMAgentWrapper agent) {
+        run.setAttribute(ROUTED, agent != null);
+        if (agent != null) {
+          run.setAttribute(TARGET, agent.getName());
+        }
+      }
+
+      @Override
+      public void onRunEnd(
+          LLMAgentWrapper agent, int completions, Duration duration, Throwable error) {
+        run.setAttribute(COMPLETIONS, (long) completions);
+        if (error != null) {
+          run.recordException(error).setStatus(StatusCode.ERROR);
+        }
+        run.end();
+      }
+    };
+  }
+}
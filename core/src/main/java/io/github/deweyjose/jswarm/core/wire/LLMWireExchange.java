@@ -0,0 +1,21 @@
+package io.github.deweyjose.jswarm.core.wire;
+
+import com.openai.models.ChatCompletion;
+import com.openai.models.ChatCompletionChunk;
+import com.openai.models.ChatCompletionCreateParams;
+import java.time.Duration;
+import java.util.List;
+import lombok.Builder;
+import lombok.Getter;
+
+@Builder
+@Getter
+public class LLMWireExchange {
+  private final String agent;
+  private final ChatCompletionCreateParams request;
+  // set for blocking and async completions
+  private final ChatCompletion response;
+  // set for streaming completions
+  private final List<ChatCompletionChunk> chunks;
+  private final Duration latency;
+}
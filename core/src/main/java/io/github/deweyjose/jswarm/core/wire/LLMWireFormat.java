@@ -0,0 +1,33 @@
+package io.github.deweyjose.jswarm.core.wire;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.openai.models.ChatCompletionCreateParams;
+import java.util.List;
+import lombok.SneakyThrows;
+
+/** JSON rendering of the wire payloads, backed by a single shared {@link ObjectMapper}. */
+public final class LLMWireFormat {
+
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  private LLMWireFormat() {}
+
+  public static ObjectMapper mapper() {
+    return mapper;
+  }
+
+  /** The parts of the request body that matter for capture and caching. */
+  public static ObjectNode request(ChatCompletionCreateParams params) {
+    ObjectNode node = mapper.createObjectNode();
+    node.put("model", params.model().toString());
+    node.set("messages", mapper.valueToTree(params.messages()));
+    node.set("tools", mapper.valueToTree(params.tools().orElse(List.of())));
+    return node;
+  }
+
+  @SneakyThrows
+  public static String toJson(Object value) {
+    return mapper.writeValueAsString(value);
+  }
+}
@@ -0,0 +1,21 @@
+package io.github.deweyjose.jswarm.core.wire;
+
+/**
+ * Captures the requests and responses exchanged with the model. Install one globally with {@code
+ * LLMNexus.setWireTap}, or for a single conversation by putting it in the context variables under
+ * {@link #CONTEXT_KEY}.
+ */
+public interface LLMWireTap {
+
+  String CONTEXT_KEY = "jswarm.wireTap";
+
+  /**
+   * Decides whether the next exchange is captured. Called before each request, so it must be cheap.
+   * Nothing is collected or serialized for exchanges that are not sampled.
+   */
+  default boolean sample() {
+    return true;
+  }
+
+  void capture(LLMWireExchange exchange);
+}
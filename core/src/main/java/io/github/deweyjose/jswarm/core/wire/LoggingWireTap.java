@@ -0,0 +1,27 @@
+package io.github.deweyjose.jswarm.core.wire;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Logs each captured exchange as JSON at INFO on the {@code io.github.deweyjose.jswarm.wire} logger. */
+public class LoggingWireTap implements LLMWireTap {
+
+  private static final Logger log = LoggerFactory.getLogger("io.github.deweyjose.jswarm.wire");
+
+  @Override
+  public boolean sample() {
+    return log.isInfoEnabled();
+  }
+
+  @Override
+  public void capture(LLMWireExchange exchange) {
+    log.info(
+        "agent={} latencyMs={} request={} response={}",
+        exchange.getAgent(),
+        exchange.getLatency().toMillis(),
+        LLMWireFormat.toJson(LLMWireFormat.request(exchange.getRequest())),
+        exchange.getResponse() != null
+            ? LLMWireFormat.toJson(exchange.getResponse())
+            : LLMWireFormat.toJson(exchange.getChunks()));
+  }
+}
@@ -0,0 +1,28 @@
+package io.github.deweyjose.jswarm.core.wire;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/** Forwards a random fraction of the exchanges to another tap. */
+public class SampledWireTap implements LLMWireTap {
+
+  private final LLMWireTap delegate;
+  private final double rate;
+
+  public SampledWireTap(LLMWireTap delegate, double rate) {
+    if (rate < 0 || rate > 1) {
+      throw new IllegalArgumentException("Sample rate must be between 0 and 1");
+    }
+    this.delegate = delegate;
+    this.rate = rate;
+  }
+
+  @Override
+  public boolean sample() {
+    return rate > 0 && ThreadLocalRandom.current().nextDouble() < rate && delegate.sample();
+  }
+
+  @Override
+  public void capture(LLMWireExchange exchange) {
+    delegate.capture(exchange);
+  }
+}
@@ -0,0 +1,117 @@
+package io.github.deweyjose.jswarm.core;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.deweyjose.jswarm.core.model.LLMFunctionContext;
+import io.github.deweyjose.jswarm.core.test.TestClass;
+import io.github.deweyjose.jswarm.core.test.TestMemeGenerator;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LLMAgentIndexTest {
+
+  private static final String INDEX =
+      "{\"coordinators\":[\"io.github.deweyjose.jswarm.core.test.TestClass\"],"
+          + "\"agents\":[\"io.github.deweyjose.jswarm.core.test.TestMemeGenerator\"],"
+          + "\"schemas\":{\"io.github.deweyjose.jswarm.core.test.TestMemeGenerator\":"
+          + "{\"helloWorld()\":{\"type\":\"object\",\"properties\":{},\"required\":[]}}}}";
+
+  @TempDir Path directory;
+
+  @SneakyThrows
+  private URLClassLoader classLoader(String index) {
+    var file = directory.resolve(LLMAgentIndex.RESOURCE);
+    Files.createDirectories(file.getParent());
+    Files.writeString(file, index);
+    return new URLClassLoader(new URL[] {directory.toUri().toURL()}, getClass().getClassLoader());
+  }
+
+  @Test
+  @SneakyThrows
+  void load_withIndex_returnsIndexedClassesAndSchemas() {
+    try (var classLoader = classLoader(INDEX)) {
+      var index = LLMAgentIndex.load(classLoader, "io.github.deweyjose.jswarm.core");
+
+      assertEquals(Set.of(TestClass.class), index.getCoordinators());
+      assertEquals(Set.of(TestMemeGenerator.class), index.getAgents());
+      assertEquals(
+          LLMFunctionSchemaGenerator.generateSchema(TestMemeGenerator.class.getMethod("helloWorld")),
+          index.getSchema(TestMemeGenerator.class.getMethod("helloWorld")));
+      assertNull(index.getSchema(TestClass.class.getMethod("methodWithoutContextParam")));
+    }
+  }
+
+  @Test
+  @SneakyThrows
+  void load_withClassesOutsidePackage_returnsNull() {
+    try (var classLoader = classLoader(INDEX)) {
+      assertNull(LLMAgentIndex.load(classLoader, "io.github.deweyjose.jswarm.other"));
+    }
+  }
+
+  @Test
+  @SneakyThrows
+  void signature_usesCanonicalParameterTypes() {
+    assertEquals(
+        "methodWithMultipleParamsIncludingContext("
+            + "io.github.deweyjose.jswarm.core.model.LLMFunctionContext,java.lang.String)",
+        LLMAgentIndex.signature(
+            TestClass.class.getMethod(
+                "methodWithMultipleParamsIncludingContext",
+                LLMFunctionContext.class,
+                String.class)));
+  }
+
+  @Test
+  @SneakyThrows
+  void registry_withIndex_registersSameFunctionsAsScanning() {
+    var scanned = new LLMAgentRegistry("io.github.deweyjose.jswarm.core.test");
+
+    var thread = Thread.currentThread();
+    var previous = thread.getContextClassLoader();
+    try (var classLoader = classLoader(INDEX)) {
+      thread.setContextClassLoader(classLoader);
+      var indexed = new LLMAgentRegistry("io.github.deweyjose.jswarm.core.test");
+
+      assertEquals(
+          List.copyOf(scanned.getFunctions(scanned.getCoordinatorAgent()).keySet()),
+          List.copyOf(indexed.getFunctions(indexed.getCoordinatorAgent()).keySet()));
+      assertEquals(2, indexed.getAgents().size());
+    } finally {
+      thread.setContextClassLoader(previous);
+    }
+  }
+
+  @Test
+  @SneakyThrows
+  void registry_withPartialIndex_scansRootsTheIndexDoesNotCover() {
+    // the index lists the coordinator only, the test classes themselves are not indexed
+    var coordinatorOnly =
+        "{\"coordinators\":[\"io.github.deweyjose.jswarm.core.test.TestClass\"],"
+            + "\"agents\":[],\"schemas\":{}}";
+
+    var thread = Thread.currentThread();
+    var previous = thread.getContextClassLoader();
+    try (var classLoader = classLoader(coordinatorOnly)) {
+      var index = LLMAgentIndex.load(classLoader, "io.github.deweyjose.jswarm.core.test");
+      assertTrue(
+          index
+              .getUnindexedRoots()
+              .contains(TestMemeGenerator.class.getProtectionDomain().getCodeSource().getLocation()));
+
+      thread.setContextClassLoader(classLoader);
+      var registry = new LLMAgentRegistry("io.github.deweyjose.jswarm.core.test");
+      assertEquals(2, registry.getAgents().size());
+      assertNotNull(registry.getAgent("TestMemeGenerator"));
+    } finally {
+      thread.setContextClassLoader(previous);
+    }
+  }
+}
@@ -2,11 +2,15 @@ package io.github.deweyjose.jswarm.core;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import io.github.deweyjose.jswarm.core.annotations.LLMAgent;
+import io.github.deweyjose.jswarm.core.annotations.LLMFunction;
 import io.github.deweyjose.jswarm.core.model.LLMAgentWrapper;
-import io.github.deweyjose.jswarm.core.test.TestClass;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
@@ -24,10 +28,35 @@ class LLMAgentWrapperRegistryTest {
 
   @Test
   void functionName() {
-    TestClass testClass = new TestClass();
-    String functionName =
-        llmAgentRegistry.functionName(testClass.hashCode(), "TestClass", "methodWithContextParam");
-    assertEquals(testClass.hashCode() + "_TestClass_methodWithContextParam", functionName);
+    String functionName = LLMAgentRegistry.functionName("TestClass", "methodWithContextParam");
+    assertEquals("TestClass_methodWithContextParam", functionName);
+  }
+
+  @Test
+  void getFunctions_isStableAcrossRegistries() {
+    var other = new LLMAgentRegistry("io.github.deweyjose.jswarm.core.test");
+    for (LLMAgentWrapper agent : llmAgentRegistry.getAgents()) {
+      var otherAgent =
+          other.getAgents().stream()
+              .filter(a -> a.getName().equals(agent.getName()))
+              .findFirst()
+              .orElseThrow();
+      assertEquals(
+          List.copyOf(llmAgentRegistry.getFunctions(agent).keySet()),
+          List.copyOf(other.getFunctions(otherAgent).keySet()));
+    }
+  }
+
+  @Test
+  void getFunctions_globalFunctionsComeFirstInNameOrder() {
+    var memeAgent =
+        llmAgentRegistry.getAgents().stream()
+            .filter(a -> a.getName().equals("TestMemeGenerator"))
+            .findFirst()
+            .orElseThrow();
+    assertEquals(
+        List.of("TestClass_getAgent", "TestMemeGenerator_getAgent", "TestMemeGenerator_helloWorld"),
+        List.copyOf(llmAgentRegistry.getFunctions(memeAgent).keySet()));
   }
 
   @Test
@@ -72,4 +101,107 @@ class LLMAgentWrapperRegistryTest {
       assertTrue(entry.getKey().endsWith("_getAgent"));
     }
   }
+
+  @Test
+  void getTools() {
+    var coordinator = llmAgentRegistry.getCoordinatorAgent();
+    var tools = llmAgentRegistry.getTools(coordinator);
+
+    assertEquals(llmAgentRegistry.getFunctions(coordinator).size(), tools.size());
+    assertSame(tools, llmAgentRegistry.getTools(coordinator));
+    assertThrows(UnsupportedOperationException.class, () -> tools.remove(0));
+  }
+
+  @Test
+  void registerAgent_publishesAgentAndTransferToEveryAgent() {
+    var coordinator = llmAgentRegistry.getCoordinatorAgent();
+    var toolsBefore = llmAgentRegistry.getTools(coordinator);
+
+    var weather = llmAgentRegistry.registerAgent(new TestWeatherAgent());
+
+    assertTrue(llmAgentRegistry.getAgents().contains(weather));
+    assertTrue(llmAgentRegistry.getFunctions(coordinator).containsKey("TestWeatherAgent_getAgent"));
+    assertNotNull(llmAgentRegistry.getFunction("TestWeatherAgent_forecast", weather));
+    assertNull(llmAgentRegistry.getFunction("TestWeatherAgent_forecast", coordinator));
+    assertEquals(toolsBefore.size() + 1, llmAgentRegistry.getTools(coordinator).size());
+    // readers holding the previous tools keep an unchanged list
+    assertEquals(2, toolsBefore.size());
+  }
+
+  @Test
+  void registerAgent_withoutAnnotation_throwsIllegalArgumentException() {
+    assertThrows(IllegalArgumentException.class, () -> llmAgentRegistry.registerAgent(new Object()));
+  }
+
+  @Test
+  void unregisterAgent_removesAgentAndItsFunctions() {
+    var coordinator = llmAgentRegistry.getCoordinatorAgent();
+    var weather = llmAgentRegistry.registerAgent(new TestWeatherAgent());
+
+    llmAgentRegistry.unregisterAgent(weather);
+
+    assertFalse(llmAgentRegistry.getAgents().contains(weather));
+    assertFalse(llmAgentRegistry.getFunctions(coordinator).containsKey("TestWeatherAgent_getAgent"));
+    assertNull(llmAgentRegistry.getFunction("TestWeatherAgent_forecast", weather));
+    assertThrows(IllegalArgumentException.class, () -> llmAgentRegistry.unregisterAgent(weather));
+  }
+
+  @Test
+  void unregisterAgent_withCoordinator_throwsIllegalArgumentException() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> llmAgentRegistry.unregisterAgent(llmAgentRegistry.getCoordinatorAgent()));
+  }
+
+  @Test
+  void getFunction_whileAgentsChange_alwaysSeesConsistentSnapshot() {
+    var coordinator = llmAgentRegistry.getCoordinatorAgent();
+    var running = new AtomicBoolean(true);
+    List<CompletableFuture<Void>> readers = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      readers.add(
+          CompletableFuture.runAsync(
+              () -> {
+                while (running.get()) {
+                  var size = llmAgentRegistry.getTools(coordinator).size();
+                  assertTrue(size == 2 || size == 3);
+                  assertNotNull(llmAgentRegistry.getFunction("TestClass_getAgent", coordinator));
+                }
+              }));
+    }
+
+    for (int i = 0; i < 200; i++) {
+      llmAgentRegistry.unregisterAgent(llmAgentRegistry.registerAgent(new TestWeatherAgent()));
+    }
+    running.set(false);
+
+    readers.forEach(CompletableFuture::join);
+    assertEquals(2, llmAgentRegistry.getFunctions(coordinator).size());
+  }
+
+  @Test
+  void registerAgent_withGuardAttributes_guardsOnlyThatFunction() {
+    var weather = llmAgentRegistry.registerAgent(new TestWeatherAgent());
+
+    assertNotNull(llmAgentRegistry.getFunction("TestWeatherAgent_radar", weather).getGuard());
+    assertNull(llmAgentRegistry.getFunction("TestWeatherAgent_forecast", weather).getGuard());
+    assertNull(llmAgentRegistry.getFunction("TestWeatherAgent_getAgent", weather).getGuard());
+  }
+
+  @LLMAgent(description = "Use this for weather forecasts.", instructions = "Be accurate.")
+  static class TestWeatherAgent {
+    @LLMFunction(description = "forecast for a city")
+    public String forecast(String city) {
+      return "sunny";
+    }
+
+    @LLMFunction(
+        description = "radar image for a city",
+        timeoutMillis = 2000,
+        maxConcurrency = 4,
+        failureThreshold = 3)
+    public String radar(String city) {
+      return "clear";
+    }
+  }
 }
@@ -0,0 +1,61 @@
+package io.github.deweyjose.jswarm.core;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.deweyjose.jswarm.core.model.LLMFunctionContext;
+import io.github.deweyjose.jswarm.core.test.TestClass;
+import java.util.List;
+import java.util.Map;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+
+class LLMArgumentBinderTest {
+
+  @Test
+  @SneakyThrows
+  void bind_withUnknownFields_skipsThem() {
+    var binder = LLMArgumentBinder.of(TestClass.class.getMethod("methodWithStringParam", String.class));
+    Object[] args =
+        binder.bind(
+            "{\"ignored\":{\"nested\":[1,2,{\"deep\":true}]},\"arg0\":\"test\",\"other\":1}",
+            LLMFunctionContext.builder().build());
+    assertEquals(1, args.length);
+    assertEquals("test", args[0]);
+  }
+
+  @Test
+  @SneakyThrows
+  void bind_withNullValue_bindsNull() {
+    var binder =
+        LLMArgumentBinder.of(TestClass.class.getMethod("methodWithIntegerParam", Integer.class));
+    Object[] args = binder.bind("{\"arg0\":null}", LLMFunctionContext.builder().build());
+    assertNull(args[0]);
+  }
+
+  @Test
+  @SneakyThrows
+  void bind_reusedAcrossCalls_bindsEachCallIndependently() {
+    var binder = LLMArgumentBinder.of(TestClass.class.getMethod("methodWithMapParam", Map.class));
+    var context = LLMFunctionContext.builder().build();
+    assertEquals(Map.of("a", 1), binder.bind("{\"arg0\":{\"a\":1}}", context)[0]);
+    assertEquals(Map.of("b", 2, "c", 3), binder.bind("{\"arg0\":{\"b\":2,\"c\":3}}", context)[0]);
+  }
+
+  @Test
+  @SneakyThrows
+  void bind_withContextAndList_bindsBoth() {
+    var binder = LLMArgumentBinder.of(TestClass.class.getMethod("methodWithListParam", List.class));
+    Object[] args =
+        binder.bind("{\"arg0\":[\"a\",\"b\"]}", LLMFunctionContext.builder().build());
+    assertEquals(List.of("a", "b"), args[0]);
+  }
+
+  @Test
+  @SneakyThrows
+  void bind_withNonObjectJson_throwsIllegalArgumentException() {
+    var binder =
+        LLMArgumentBinder.of(TestClass.class.getMethod("methodWithStringParam", String.class));
+    var context = LLMFunctionContext.builder().build();
+    assertThrows(IllegalArgumentException.class, () -> binder.bind("[\"test\"]", context));
+  }
+}
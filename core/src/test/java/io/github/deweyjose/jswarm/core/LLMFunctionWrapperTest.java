@@ -1,12 +1,16 @@
 package io.github.deweyjose.jswarm.core;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.openai.models.FunctionParameters;
 import io.github.deweyjose.jswarm.core.model.LLMFunctionContext;
 import io.github.deweyjose.jswarm.core.test.TestClass;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Method;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import lombok.SneakyThrows;
@@ -370,4 +374,106 @@ class LLMFunctionWrapperTest {
     Object result = wrapper.invoke(context, json);
     assertEquals("test", result);
   }
+
+  @Test
+  @SneakyThrows
+  void invoke_withResultCache_invokesMethodOncePerArguments() {
+    TestClass instance = spy(new TestClass());
+    Method method = TestClass.class.getMethod("methodWithStringParam", String.class);
+    var cache = new LLMToolResultCache("TestClass_methodWithStringParam", Duration.ofMinutes(1), 8);
+    LLMFunctionWrapper wrapper =
+        LLMFunctionWrapper.builder().instance(instance).method(method).resultCache(cache).build();
+    LLMFunctionContext context = LLMFunctionContext.builder().build();
+
+    assertEquals("test", wrapper.invoke(context, "{\"arg0\":\"Boston\"}"));
+    assertEquals("test", wrapper.invoke(context, "{ \"arg0\" : \"Boston\" }"));
+    assertEquals("test", wrapper.invoke(context, "{\"arg0\":\"Denver\"}"));
+
+    verify(instance, times(1)).methodWithStringParam("Boston");
+    verify(instance, times(1)).methodWithStringParam("Denver");
+    assertEquals(1, cache.getHits());
+    assertEquals(2, cache.getMisses());
+  }
+
+  @Test
+  @SneakyThrows
+  void invoke_withPackagePrivateClass_makesMethodAccessible() {
+    var type = Class.forName("io.github.deweyjose.jswarm.core.test.PackagePrivateTools");
+    var constructor = type.getDeclaredConstructor();
+    constructor.setAccessible(true);
+    Method method = type.getMethod("echo", String.class);
+    assertThrows(IllegalAccessException.class, () -> MethodHandles.lookup().unreflect(method));
+
+    LLMFunctionWrapper wrapper =
+        LLMFunctionWrapper.builder().instance(constructor.newInstance()).method(method).build();
+    LLMFunctionContext context = LLMFunctionContext.builder().build();
+    assertEquals("hello", wrapper.invoke(context, "{\"arg0\":\"hello\"}"));
+  }
+
+  @Test
+  @SneakyThrows
+  void invoke_withCheckedException_throwsItUnwrapped() {
+    Method method = Tools.class.getMethod("fail", String.class);
+    LLMFunctionWrapper wrapper =
+        LLMFunctionWrapper.builder().instance(new Tools()).method(method).build();
+    LLMFunctionContext context = LLMFunctionContext.builder().build();
+
+    var error =
+        assertThrows(IOException.class, () -> wrapper.invoke(context, "{\"arg0\":\"boom\"}"));
+    assertEquals("boom", error.getMessage());
+    assertThrows(IOException.class, () -> wrapper.invokeMapped(new Object[] {"boom"}));
+  }
+
+  @Test
+  @SneakyThrows
+  void invoke_withPrimitiveAndBoxedParams_adaptsArgumentsAndResult() {
+    LLMFunctionContext context = LLMFunctionContext.builder().build();
+    LLMFunctionWrapper add =
+        LLMFunctionWrapper.builder()
+            .instance(new Tools())
+            .method(Tools.class.getMethod("add", int.class, Integer.class))
+            .build();
+    assertEquals(5, (Object) add.invoke(context, "{\"arg0\":2,\"arg1\":3}"));
+    assertEquals(7, (Object) add.invokeMapped(new Object[] {3, 4}));
+
+    LLMFunctionWrapper isEven =
+        LLMFunctionWrapper.builder()
+            .instance(new Tools())
+            .method(Tools.class.getMethod("isEven", long.class))
+            .build();
+    assertEquals(true, (Object) isEven.invoke(context, "{\"arg0\":4}"));
+
+    // static functions are not bound to an instance
+    LLMFunctionWrapper square =
+        LLMFunctionWrapper.builder().method(Tools.class.getMethod("square", double.class)).build();
+    assertEquals(6.25, (Object) square.invoke(context, "{\"arg0\":2.5}"));
+  }
+
+  @Test
+  @SneakyThrows
+  void mapArguments_sharesTheBinderOfTheMethod() {
+    Method method = TestClass.class.getMethod("methodWithStringParam", String.class);
+    assertSame(LLMArgumentBinder.of(method), LLMArgumentBinder.of(method));
+    assertSame(
+        LLMArgumentBinder.of(method),
+        LLMArgumentBinder.of(TestClass.class.getMethod("methodWithStringParam", String.class)));
+  }
+
+  public static class Tools {
+    public String fail(String message) throws IOException {
+      throw new IOException(message);
+    }
+
+    public int add(int a, Integer b) {
+      return a + b;
+    }
+
+    public boolean isEven(long value) {
+      return value % 2 == 0;
+    }
+
+    public static double square(double value) {
+      return value * value;
+    }
+  }
 }
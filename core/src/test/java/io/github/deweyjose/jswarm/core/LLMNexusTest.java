@@ -6,15 +6,55 @@ import static org.mockito.Mockito.mock;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.openai.client.OpenAIClient;
 import com.openai.client.okhttp.OpenAIOkHttpClient;
+import com.openai.core.http.StreamResponse;
 import com.openai.models.ChatCompletion;
+import com.openai.models.ChatCompletionChunk;
+import com.openai.models.ChatCompletionCreateParams;
 import com.openai.models.ChatCompletionMessageParam;
+import com.openai.models.ChatCompletionMessageToolCall;
+import io.github.deweyjose.jswarm.core.annotations.LLMAgent;
+import io.github.deweyjose.jswarm.core.annotations.LLMFunction;
+import io.github.deweyjose.jswarm.core.cache.InMemoryCompletionCache;
+import io.github.deweyjose.jswarm.core.cache.LLMCompletionCache;
+import io.github.deweyjose.jswarm.core.model.LLMAgentWrapper;
 import io.github.deweyjose.jswarm.core.model.LLMResponse;
+import io.github.deweyjose.jswarm.core.model.LLMStopReason;
+import io.github.deweyjose.jswarm.core.model.LLMUsage;
+import io.github.deweyjose.jswarm.core.retry.LLMRetrier;
+import io.github.deweyjose.jswarm.core.retry.LLMRetryPolicy;
+import io.github.deweyjose.jswarm.core.routing.KeywordIntentRouter;
+import io.github.deweyjose.jswarm.core.scheduler.LLMRateLimits;
+import io.github.deweyjose.jswarm.core.scheduler.LLMRequestPermit;
+import io.github.deweyjose.jswarm.core.scheduler.LLMRequestScheduler;
+import io.github.deweyjose.jswarm.core.store.FileConversationStore;
+import io.github.deweyjose.jswarm.core.store.LLMConversationStore;
+import io.github.deweyjose.jswarm.core.store.LLMStoredConversation;
+import io.github.deweyjose.jswarm.core.telemetry.LLMRunListener;
+import io.github.deweyjose.jswarm.core.wire.LLMWireExchange;
+import io.github.deweyjose.jswarm.core.wire.LLMWireTap;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
 @Slf4j
@@ -66,7 +106,7 @@ class LLMNexusTest {
 
     var functionName =
         functions.keySet().stream()
-            .filter(p -> p.endsWith("_TestMemeGenerator_getAgent"))
+            .filter(p -> p.equals("TestMemeGenerator_getAgent"))
             .findFirst()
             .orElseThrow(() -> new IllegalStateException("No function found"));
 
@@ -113,7 +153,7 @@ class LLMNexusTest {
 
     var functionName =
         functions.keySet().stream()
-            .filter(p -> p.endsWith("_TestMemeGenerator_getAgent"))
+            .filter(p -> p.equals("TestMemeGenerator_getAgent"))
             .findFirst()
             .orElseThrow(() -> new IllegalStateException("No function found"));
 
@@ -143,4 +183,998 @@ class LLMNexusTest {
     LLMResponse response = spyLLMNexus.run("test it", history, Map.of());
     assertEquals("missing function, not recover", response.getReply()._content().toString());
   }
+
+  @Test
+  @SneakyThrows
+  void runParallelToolCalls() {
+    OpenAIClient client = mock(OpenAIClient.class);
+    System.setProperty("AGENT_PACKAGE", "io.github.deweyjose.jswarm.core.test");
+    LLMAgentRegistry registry = new LLMAgentRegistry();
+
+    LLMNexus spyLLMNexus = Mockito.spy(new LLMNexus(client, registry));
+    spyLLMNexus.setParallelToolCalls(true);
+
+    var functions = registry.getFunctions(registry.getCoordinatorAgent());
+
+    var memeAgentFunction =
+        functions.keySet().stream()
+            .filter(p -> p.equals("TestMemeGenerator_getAgent"))
+            .findFirst()
+            .orElseThrow(() -> new IllegalStateException("No function found"));
+    var coordinatorFunction =
+        functions.keySet().stream()
+            .filter(p -> p.equals("TestClass_getAgent"))
+            .findFirst()
+            .orElseThrow(() -> new IllegalStateException("No function found"));
+
+    String toolCallJson =
+        "{\"id\":\"chatcmpl-B4eDIn9tt6c2KtuPP8bzRa7wltNiW\","
+            + "\"choices\":[{\"finish_reason\":\"tool_calls\",\"index\":0,\"logprobs\":null,\"message\":{\"content\":null,\"refusal\":null,\"role\":\"assistant\","
+            + "\"tool_calls\":[{\"id\":\"call_1\",\"function\":{\"arguments\":\"{}\",\"name\":\"MEME_AGENT_FUNCTION_NAME\"},\"type\":\"function\"},"
+            + "{\"id\":\"call_2\",\"function\":{\"arguments\":\"{}\",\"name\":\"COORDINATOR_FUNCTION_NAME\"},\"type\":\"function\"}]}}],"
+            + "\"created\":1740447592,\"model\":\"gpt-4o-2024-08-06\",\"object\":\"chat.completion\",\"service_tier\":\"default\",\"system_fingerprint\":\"fp_f9f4fb6dbf\","
+            + "\"usage\":{\"completion_tokens\":18,\"prompt_tokens\":347,\"total_tokens\":365,\"completion_tokens_details\":{\"accepted_prediction_tokens\":0,\"audio_tokens\":0,\"reasoning_tokens\":0,"
+            + "\"rejected_prediction_tokens\":0},\"prompt_tokens_details\":{\"audio_tokens\":0,\"cached_tokens\":0}}}";
+
+    toolCallJson =
+        toolCallJson
+            .replace("MEME_AGENT_FUNCTION_NAME", memeAgentFunction)
+            .replace("COORDINATOR_FUNCTION_NAME", coordinatorFunction);
+
+    String toolCallResponseJson =
+        "{\"id\":\"chatcmpl-B4fH4iChM1B41UwzPjNRdHigAT2Ai\","
+            + "\"choices\":[{\"finish_reason\":\"stop\",\"index\":0,\"logprobs\":null,"
+            + "\"message\":{\"content\":\"ok\",\"refusal\":null,\"role\":\"assistant\"}}],"
+            + "\"created\":1740451670,\"model\":\"gpt-4o-2024-08-06\",\"object\":\"chat.completion\",\"service_tier\":\"default\",\"system_fingerprint\":\"fp_f9f4fb6dbf\","
+            + "\"usage\":{\"completion_tokens\":34,\"prompt_tokens\":407,\"total_tokens\":441,\"completion_tokens_details\":{\"accepted_prediction_tokens\":0,\"audio_tokens\":0,"
+            + "\"reasoning_tokens\":0,\"rejected_prediction_tokens\":0},\"prompt_tokens_details\":{\"audio_tokens\":0,\"cached_tokens\":0}}}";
+
+    Mockito.doReturn(
+            objectMapper.readValue(toolCallJson, ChatCompletion.class),
+            objectMapper.readValue(toolCallResponseJson, ChatCompletion.class))
+        .when(spyLLMNexus)
+        .chatCompletion(Mockito.any());
+
+    List<ChatCompletionMessageParam> history = new ArrayList<>();
+    LLMResponse response = spyLLMNexus.run("test it", history, Map.of());
+    assertEquals("ok", response.getReply()._content().toString());
+
+    // user, assistant tool calls, two tool results in tool call order, assistant reply
+    assertEquals(5, history.size());
+    assertEquals("call_1", history.get(2).asTool().toolCallId());
+    assertEquals("call_2", history.get(3).asTool().toolCallId());
+
+    // the first transfer wins, so the follow up completion is made by the meme agent
+    ArgumentCaptor<ChatCompletionCreateParams> params =
+        ArgumentCaptor.forClass(ChatCompletionCreateParams.class);
+    Mockito.verify(spyLLMNexus, Mockito.times(2)).chatCompletion(params.capture());
+    assertEquals(
+        registry.getFunctions(registry.getCoordinatorAgent()).size() + 1,
+        params.getAllValues().get(1).tools().get().size());
+  }
+
+  @Test
+  @SneakyThrows
+  void runParallelToolCalls_overlapsBlockingTools() {
+    OpenAIClient client = mock(OpenAIClient.class);
+    System.setProperty("AGENT_PACKAGE", "io.github.deweyjose.jswarm.core.test");
+    LLMAgentRegistry registry = new LLMAgentRegistry();
+    var tools = new BarrierTools();
+    registry.registerAgent(tools);
+
+    LLMNexus spyLLMNexus = Mockito.spy(new LLMNexus(client, registry));
+    spyLLMNexus.setParallelToolCalls(true);
+
+    String toolCallJson =
+        "{\"id\":\"chatcmpl-1\","
+            + "\"choices\":[{\"finish_reason\":\"tool_calls\",\"index\":0,\"logprobs\":null,\"message\":{\"content\":null,\"refusal\":null,\"role\":\"assistant\","
+            + "\"tool_calls\":[{\"id\":\"call_1\",\"function\":{\"arguments\":\"{}\",\"name\":\"BarrierTools_first\"},\"type\":\"function\"},"
+            + "{\"id\":\"call_2\",\"function\":{\"arguments\":\"{}\",\"name\":\"BarrierTools_second\"},\"type\":\"function\"}]}}],"
+            + "\"created\":1740447592,\"model\":\"gpt-4o-2024-08-06\",\"object\":\"chat.completion\"}";
+
+    String replyJson =
+        "{\"id\":\"chatcmpl-2\","
+            + "\"choices\":[{\"finish_reason\":\"stop\",\"index\":0,\"logprobs\":null,"
+            + "\"message\":{\"content\":\"ok\",\"refusal\":null,\"role\":\"assistant\"}}],"
+            + "\"created\":1740451670,\"model\":\"gpt-4o-2024-08-06\",\"object\":\"chat.completion\"}";
+
+    Mockito.doReturn(
+            objectMapper.readValue(toolCallJson, ChatCompletion.class),
+            objectMapper.readValue(replyJson, ChatCompletion.class))
+        .when(spyLLMNexus)
+        .chatCompletion(Mockito.any());
+
+    // each tool waits for the other, run one after the other the first one times out
+    List<ChatCompletionMessageParam> history = new ArrayList<>();
+    var response =
+        assertTimeoutPreemptively(
+            Duration.ofSeconds(10), () -> spyLLMNexus.run("test it", history, Map.of()));
+    assertEquals("ok", response.getReply()._content().toString());
+    assertEquals(List.of("second", "first"), tools.finished);
+
+    // the first call finished last, the results are still in call order
+    assertEquals(5, history.size());
+    assertEquals("call_1", history.get(2).asTool().toolCallId());
+    assertEquals("call_2", history.get(3).asTool().toolCallId());
+  }
+
+  @Test
+  @SneakyThrows
+  @SuppressWarnings("unchecked")
+  void runStreaming() {
+    OpenAIClient client = mock(OpenAIClient.class);
+    System.setProperty("AGENT_PACKAGE", "io.github.deweyjose.jswarm.core.test");
+    LLMAgentRegistry registry = new LLMAgentRegistry();
+
+    LLMNexus spyLLMNexus = Mockito.spy(new LLMNexus(client, registry));
+
+    String chunkJson =
+        "{\"id\":\"chatcmpl-B4e4liK9XUX30A3V4FzXBTjdp0VhG\",\"object\":\"chat.completion.chunk\","
+            + "\"created\":1740447063,\"model\":\"gpt-4o-2024-08-06\",\"system_fingerprint\":\"fp_f9f4fb6dbf\","
+            + "\"choices\":[{\"index\":0,\"delta\":{\"content\":\"CONTENT\"},\"logprobs\":null,\"finish_reason\":FINISH_REASON}]}";
+
+    StreamResponse<ChatCompletionChunk> stream = mock(StreamResponse.class);
+    Mockito.when(stream.stream())
+        .thenReturn(
+            Stream.of(
+                objectMapper.readValue(
+                    chunkJson.replace("CONTENT", "Hello!").replace("FINISH_REASON", "null"),
+                    ChatCompletionChunk.class),
+                objectMapper.readValue(
+                    chunkJson
+                        .replace("CONTENT", " How can I assist you today?")
+                        .replace("FINISH_REASON", "\"stop\""),
+                    ChatCompletionChunk.class)));
+    Mockito.doReturn(stream).when(spyLLMNexus).chatCompletionStreaming(Mockito.any());
+
+    List<String> deltas = new ArrayList<>();
+    List<ChatCompletionMessageParam> history = new ArrayList<>();
+    LLMResponse response =
+        spyLLMNexus.runStreaming("test it", history, Map.of(), (agent, delta) -> deltas.add(delta));
+
+    assertEquals(List.of("Hello!", " How can I assist you today?"), deltas);
+    assertEquals("Hello! How can I assist you today?", response.getReply().content().get());
+    assertEquals(2, history.size());
+    Mockito.verify(stream).close();
+  }
+
+  @Test
+  @SneakyThrows
+  @SuppressWarnings("unchecked")
+  void runStreaming_dispatchesToolCallsInOrderWhileStreaming() {
+    OpenAIClient client = mock(OpenAIClient.class);
+    System.setProperty("AGENT_PACKAGE", "io.github.deweyjose.jswarm.core.test");
+    LLMAgentRegistry registry = new LLMAgentRegistry();
+    var tools = new RecordingTools();
+    registry.registerAgent(tools);
+
+    LLMNexus spyLLMNexus = Mockito.spy(new LLMNexus(client, registry));
+
+    List<Supplier<ChatCompletionChunk>> chunks =
+        List.of(
+            () -> chunk(toolCallDelta(0, "call_1", "RecordingTools_first", "{"), null),
+            () -> chunk(toolCallDelta(0, null, null, "}"), null),
+            () -> chunk(toolCallDelta(1, "call_2", "RecordingTools_second", "{"), null),
+            () -> chunk(toolCallDelta(1, null, null, "}"), null),
+            () -> {
+              // hold the end of the message back until both tools ran
+              awaitQuietly(tools.done);
+              tools.events.add("finish");
+              return chunk("{}", "tool_calls");
+            });
+    StreamResponse<ChatCompletionChunk> toolStream = mock(StreamResponse.class);
+    Mockito.when(toolStream.stream()).thenReturn(chunks.stream().map(Supplier::get));
+    StreamResponse<ChatCompletionChunk> replyStream = mock(StreamResponse.class);
+    Mockito.when(replyStream.stream()).thenReturn(Stream.of(chunk("{\"content\":\"ok\"}", "stop")));
+    Mockito.doReturn(toolStream, replyStream)
+        .when(spyLLMNexus)
+        .chatCompletionStreaming(Mockito.any());
+
+    List<ChatCompletionMessageParam> history = new ArrayList<>();
+    var response = spyLLMNexus.runStreaming("test it", history, Map.of(), (agent, delta) -> {});
+    assertEquals("ok", response.getReply().content().get());
+
+    // both calls ran before the finish reason, one after the other
+    assertEquals(
+        List.of("first:start", "first:end", "second:start", "second:end", "finish"),
+        tools.events);
+    assertEquals(5, history.size());
+    assertEquals("call_1", history.get(2).asTool().toolCallId());
+    assertEquals("call_2", history.get(3).asTool().toolCallId());
+  }
+
+  @Test
+  @SneakyThrows
+  @SuppressWarnings("unchecked")
+  void runStreaming_withFastHandoff_keepsHiddenTransferFromListeners() {
+    OpenAIClient client = mock(OpenAIClient.class);
+    System.setProperty("AGENT_PACKAGE", "io.github.deweyjose.jswarm.core.test");
+    LLMAgentRegistry registry = new LLMAgentRegistry();
+
+    List<String> events = new ArrayList<>();
+    LLMNexus spyLLMNexus = Mockito.spy(new LLMNexus(client, registry));
+    spyLLMNexus.setFastHandoff(true);
+    spyLLMNexus.setListener(
+        start ->
+            new LLMRunListener() {
+              @Override
+              public void onToolCall(
+                  LLMAgentWrapper agent, String function, Duration latency, Throwable error) {
+                events.add("tool " + function);
+              }
+
+              @Override
+              public void onHandoff(LLMAgentWrapper from, LLMAgentWrapper to) {
+                events.add("handoff " + to.getName());
+              }
+            });
+
+    StreamResponse<ChatCompletionChunk> transferStream = mock(StreamResponse.class);
+    Mockito.when(transferStream.stream())
+        .thenReturn(
+            Stream.of(
+                chunk(toolCallDelta(0, "call_1", "TestMemeGenerator_getAgent", "{"), null),
+                chunk(toolCallDelta(0, null, null, "}"), null),
+                chunk("{}", "tool_calls")));
+    StreamResponse<ChatCompletionChunk> replyStream = mock(StreamResponse.class);
+    Mockito.when(replyStream.stream())
+        .thenReturn(Stream.of(chunk("{\"content\":\"ok\"}", "stop")));
+    Mockito.doReturn(transferStream, replyStream)
+        .when(spyLLMNexus)
+        .chatCompletionStreaming(Mockito.any());
+
+    var listener =
+        new LLMStreamListener() {
+          @Override
+          public void onContent(LLMAgentWrapper agent, String delta) {}
+
+          @Override
+          public void onToolCall(LLMAgentWrapper agent, ChatCompletionMessageToolCall toolCall) {
+            events.add("dispatch " + toolCall.function().name());
+          }
+        };
+    var response = spyLLMNexus.runStreaming("make a meme", new ArrayList<>(), Map.of(), listener);
+
+    assertEquals("TestMemeGenerator", response.getAgent().getName());
+    assertEquals("ok", response.getReply().content().get());
+    // the transfer never ran, only the handoff is reported
+    assertEquals(List.of("handoff TestMemeGenerator"), events);
+    assertEquals(2, response.getHistory().size());
+  }
+
+  @Test
+  @SneakyThrows
+  @SuppressWarnings("unchecked")
+  void runStreaming_withRequestScheduler_releasesPermitWithReportedUsage() {
+    OpenAIClient client = mock(OpenAIClient.class);
+    System.setProperty("AGENT_PACKAGE", "io.github.deweyjose.jswarm.core.test");
+    LLMAgentRegistry registry = new LLMAgentRegistry();
+
+    LLMNexus spyLLMNexus = Mockito.spy(new LLMNexus(client, registry));
+    var scheduler = mock(LLMRequestScheduler.class);
+    var permit = mock(LLMRequestPermit.class);
+    Mockito.when(scheduler.acquire(Mockito.any(), Mockito.any(), Mockito.anyInt()))
+        .thenReturn(permit);
+    spyLLMNexus.setRequestScheduler(scheduler);
+
+    var usage =
+        objectMapper.readValue(
+            "{\"id\":\"chatcmpl-1\",\"object\":\"chat.completion.chunk\",\"created\":1740447063,"
+                + "\"model\":\"gpt-4o-2024-08-06\",\"choices\":[],\"usage\":{\"prompt_tokens\":30,"
+                + "\"completion_tokens\":12,\"total_tokens\":42}}",
+            ChatCompletionChunk.class);
+    StreamResponse<ChatCompletionChunk> stream = mock(StreamResponse.class);
+    Mockito.when(stream.stream())
+        .thenReturn(Stream.of(chunk("{\"content\":\"ok\"}", "stop"), usage));
+    Mockito.doReturn(stream).when(spyLLMNexus).chatCompletionStreaming(Mockito.any());
+
+    spyLLMNexus.runStreaming("test it", new ArrayList<>(), Map.of(), (agent, delta) -> {});
+
+    // the token budget is corrected with what the stream used, not left at the estimate
+    Mockito.verify(permit).release(42L);
+  }
+
+  @Test
+  @SneakyThrows
+  @SuppressWarnings("unchecked")
+  void runStreaming_pastDeadline_closesTheStream() {
+    OpenAIClient client = mock(OpenAIClient.class);
+    System.setProperty("AGENT_PACKAGE", "io.github.deweyjose.jswarm.core.test");
+    LLMAgentRegistry registry = new LLMAgentRegistry();
+
+    LLMNexus spyLLMNexus = Mockito.spy(new LLMNexus(client, registry));
+    spyLLMNexus.setRetrier(
+        new LLMRetrier(LLMRetryPolicy.builder().deadline(Duration.ofMillis(100)).build()));
+
+    // a stream that stalls after its first chunk until it is closed
+    var closed = new CountDownLatch(1);
+    List<Supplier<ChatCompletionChunk>> chunks =
+        List.of(
+            () -> chunk("{\"content\":\"Hello\"}", null),
+            () -> {
+              awaitQuietly(closed);
+              throw new UncheckedIOException(new IOException("stream closed"));
+            });
+    StreamResponse<ChatCompletionChunk> stream = mock(StreamResponse.class);
+    Mockito.when(stream.stream()).thenReturn(chunks.stream().map(Supplier::get));
+    Mockito.doAnswer(
+            invocation -> {
+              closed.countDown();
+              return null;
+            })
+        .when(stream)
+        .close();
+    Mockito.doReturn(stream).when(spyLLMNexus).chatCompletionStreaming(Mockito.any());
+
+    assertTimeoutPreemptively(
+        Duration.ofSeconds(5),
+        () ->
+            assertThrows(
+                TimeoutException.class,
+                () ->
+                    spyLLMNexus.runStreaming(
+                        "test it", new ArrayList<>(), Map.of(), (agent, delta) -> {})));
+  }
+
+  @Test
+  @SneakyThrows
+  void runAsyncToolCalls() {
+    OpenAIClient client = mock(OpenAIClient.class);
+    System.setProperty("AGENT_PACKAGE", "io.github.deweyjose.jswarm.core.test");
+    LLMAgentRegistry registry = new LLMAgentRegistry();
+
+    LLMNexus spyLLMNexus = Mockito.spy(new LLMNexus(client, registry));
+
+    var functions = registry.getFunctions(registry.getCoordinatorAgent());
+
+    var functionName =
+        functions.keySet().stream()
+            .filter(p -> p.equals("TestMemeGenerator_getAgent"))
+            .findFirst()
+            .orElseThrow(() -> new IllegalStateException("No function found"));
+
+    String toolCallJson =
+        "{\"id\":\"chatcmpl-B4eDIn9tt6c2KtuPP8bzRa7wltNiW\","
+            + "\"choices\":[{\"finish_reason\":\"tool_calls\",\"index\":0,\"logprobs\":null,\"message\":{\"content\":null,\"refusal\":null,\"role\":\"assistant\","
+            + "\"tool_calls\":[{\"id\":\"call_HoyIRiaC1NOaXBg2JJe7VEic\",\"function\":{\"arguments\":\"{}\",\"name\":\"HELLO_WORLD_AGENT_FUNCTION_NAME\"},\"type\":\"function\"}]}}],"
+            + "\"created\":1740447592,\"model\":\"gpt-4o-2024-08-06\",\"object\":\"chat.completion\",\"service_tier\":\"default\",\"system_fingerprint\":\"fp_f9f4fb6dbf\","
+            + "\"usage\":{\"completion_tokens\":18,\"prompt_tokens\":347,\"total_tokens\":365,\"completion_tokens_details\":{\"accepted_prediction_tokens\":0,\"audio_tokens\":0,\"reasoning_tokens\":0,"
+            + "\"rejected_prediction_tokens\":0},\"prompt_tokens_details\":{\"audio_tokens\":0,\"cached_tokens\":0}}}";
+
+    toolCallJson = toolCallJson.replace("HELLO_WORLD_AGENT_FUNCTION_NAME", functionName);
+
+    String toolCallResponseJson =
+        "{\"id\":\"chatcmpl-B4fH4iChM1B41UwzPjNRdHigAT2Ai\","
+            + "\"choices\":[{\"finish_reason\":\"stop\",\"index\":0,\"logprobs\":null,"
+            + "\"message\":{\"content\":\"ok\",\"refusal\":null,\"role\":\"assistant\"}}],"
+            + "\"created\":1740451670,\"model\":\"gpt-4o-2024-08-06\",\"object\":\"chat.completion\",\"service_tier\":\"default\",\"system_fingerprint\":\"fp_f9f4fb6dbf\","
+            + "\"usage\":{\"completion_tokens\":34,\"prompt_tokens\":407,\"total_tokens\":441,\"completion_tokens_details\":{\"accepted_prediction_tokens\":0,\"audio_tokens\":0,"
+            + "\"reasoning_tokens\":0,\"rejected_prediction_tokens\":0},\"prompt_tokens_details\":{\"audio_tokens\":0,\"cached_tokens\":0}}}";
+
+    Mockito.doReturn(
+            CompletableFuture.completedFuture(
+                objectMapper.readValue(toolCallJson, ChatCompletion.class)),
+            CompletableFuture.completedFuture(
+                objectMapper.readValue(toolCallResponseJson, ChatCompletion.class)))
+        .when(spyLLMNexus)
+        .chatCompletionAsync(Mockito.any());
+
+    List<ChatCompletionMessageParam> history = new ArrayList<>();
+    LLMResponse response = spyLLMNexus.runAsync("test it", history, Map.of()).get();
+    assertEquals("ok", response.getReply()._content().toString());
+    assertEquals(4, history.size());
+  }
+
+  @Test
+  @SneakyThrows
+  void runWithConversationWireTap() {
+    OpenAIClient client = mock(OpenAIClient.class);
+    System.setProperty("AGENT_PACKAGE", "io.github.deweyjose.jswarm.core.test");
+    LLMNexus spyLLMNexus = Mockito.spy(new LLMNexus(client, new LLMAgentRegistry()));
+
+    String json =
+        "{\"id\":\"chatcmpl-B4e4liK9XUX30A3V4FzXBTjdp0VhG\","
+            + "\"choices\":[{\"finish_reason\":\"stop\",\"index\":0,\"logprobs\":null,\"message\":{\"content\":\"Hello! How can I assist you today?\",\"refusal\":null,\"role\":\"assistant\"}}],"
+            + "\"created\":1740447063,\"model\":\"gpt-4o-2024-08-06\",\"object\":\"chat.completion\",\"service_tier\":\"default\",\"system_fingerprint\":\"fp_f9f4fb6dbf\","
+            + "\"usage\":{\"completion_tokens\":11,\"prompt_tokens\":343,\"total_tokens\":354,\"completion_tokens_details\":{\"accepted_prediction_tokens\":0,\"audio_tokens\":0,\"reasoning_tokens\":0,"
+            + "\"rejected_prediction_tokens\":0},\"prompt_tokens_details\":{\"audio_tokens\":0,\"cached_tokens\":0}}}";
+    var completion = objectMapper.readValue(json, ChatCompletion.class);
+    Mockito.doReturn(completion).when(spyLLMNexus).chatCompletion(Mockito.any());
+
+    List<LLMWireExchange> captured = new ArrayList<>();
+    LLMWireTap tap = captured::add;
+
+    spyLLMNexus.run("test it", new ArrayList<>(), Map.of(LLMWireTap.CONTEXT_KEY, tap));
+    assertEquals(1, captured.size());
+    assertSame(completion, captured.get(0).getResponse());
+    assertEquals("TestClass", captured.get(0).getAgent());
+
+    // other conversations are not captured
+    spyLLMNexus.run("test it", new ArrayList<>(), Map.of());
+    assertEquals(1, captured.size());
+  }
+
+  @Test
+  @SneakyThrows
+  void runWithCompletionCache() {
+    OpenAIClient client = mock(OpenAIClient.class);
+    System.setProperty("AGENT_PACKAGE", "io.github.deweyjose.jswarm.core.test");
+    LLMAgentRegistry registry = new LLMAgentRegistry();
+
+    LLMNexus spyLLMNexus = Mockito.spy(new LLMNexus(client, registry));
+    var cache = new InMemoryCompletionCache(16);
+    spyLLMNexus.setCompletionCache(cache);
+
+    String transferJson =
+        "{\"id\":\"chatcmpl-1\","
+            + "\"choices\":[{\"finish_reason\":\"tool_calls\",\"index\":0,\"logprobs\":null,\"message\":{\"content\":null,\"refusal\":null,\"role\":\"assistant\","
+            + "\"tool_calls\":[{\"id\":\"call_1\",\"function\":{\"arguments\":\"{}\",\"name\":\"TestMemeGenerator_getAgent\"},\"type\":\"function\"}]}}],"
+            + "\"created\":1740447592,\"model\":\"gpt-4o-2024-08-06\",\"object\":\"chat.completion\"}";
+
+    String replyJson =
+        "{\"id\":\"chatcmpl-2\","
+            + "\"choices\":[{\"finish_reason\":\"stop\",\"index\":0,\"logprobs\":null,"
+            + "\"message\":{\"content\":\"ok\",\"refusal\":null,\"role\":\"assistant\"}}],"
+            + "\"created\":1740451670,\"model\":\"gpt-4o-2024-08-06\",\"object\":\"chat.completion\"}";
+
+    Mockito.doReturn(
+            objectMapper.readValue(transferJson, ChatCompletion.class),
+            objectMapper.readValue(replyJson, ChatCompletion.class))
+        .when(spyLLMNexus)
+        .chatCompletion(Mockito.any());
+
+    var first = spyLLMNexus.run("test it", new ArrayList<>(), Map.of());
+    var second = spyLLMNexus.run("test it", new ArrayList<>(), Map.of());
+
+    // the transfer and the reply are both replayed from the cache on the repeat
+    Mockito.verify(spyLLMNexus, Mockito.times(2)).chatCompletion(Mockito.any());
+    assertEquals(2, cache.getHits());
+    assertEquals("ok", second.getReply()._content().toString());
+    assertEquals(first.getHistory().size(), second.getHistory().size());
+  }
+
+  @Test
+  @SneakyThrows
+  void runWithRequestScheduler_releasesEveryPermit() {
+    OpenAIClient client = mock(OpenAIClient.class);
+    System.setProperty("AGENT_PACKAGE", "io.github.deweyjose.jswarm.core.test");
+    LLMAgentRegistry registry = new LLMAgentRegistry();
+
+    LLMNexus spyLLMNexus = Mockito.spy(new LLMNexus(client, registry));
+    var scheduler = new LLMRequestScheduler(LLMRateLimits.builder().maxConcurrent(1).build());
+    spyLLMNexus.setRequestScheduler(scheduler);
+
+    String transferJson =
+        "{\"id\":\"chatcmpl-1\","
+            + "\"choices\":[{\"finish_reason\":\"tool_calls\",\"index\":0,\"logprobs\":null,\"message\":{\"content\":null,\"refusal\":null,\"role\":\"assistant\","
+            + "\"tool_calls\":[{\"id\":\"call_1\",\"function\":{\"arguments\":\"{}\",\"name\":\"TestMemeGenerator_getAgent\"},\"type\":\"function\"}]}}],"
+            + "\"created\":1740447592,\"model\":\"gpt-4o-2024-08-06\",\"object\":\"chat.completion\"}";
+
+    String replyJson =
+        "{\"id\":\"chatcmpl-2\","
+            + "\"choices\":[{\"finish_reason\":\"stop\",\"index\":0,\"logprobs\":null,"
+            + "\"message\":{\"content\":\"ok\",\"refusal\":null,\"role\":\"assistant\"}}],"
+            + "\"created\":1740451670,\"model\":\"gpt-4o-2024-08-06\",\"object\":\"chat.completion\"}";
+
+    Mockito.doReturn(
+            objectMapper.readValue(transferJson, ChatCompletion.class),
+            objectMapper.readValue(replyJson, ChatCompletion.class))
+        .when(spyLLMNexus)
+        .chatCompletion(Mockito.any());
+
+    // with one request in flight per model, a leaked permit would block the second completion
+    var response =
+        assertTimeoutPreemptively(
+            Duration.ofSeconds(5), () -> spyLLMNexus.run("test it", new ArrayList<>(), Map.of()));
+    assertEquals("ok", response.getReply()._content().toString());
+
+    var model = registry.getCoordinatorAgent().getModel();
+    assertEquals(0, scheduler.getQueueDepth(model));
+    assertTrue(scheduler.acquireAsync(model, "next", 0).isDone());
+  }
+
+  @Test
+  @SneakyThrows
+  void runWithRetrier_retriesTransientFailure() {
+    OpenAIClient client = mock(OpenAIClient.class);
+    System.setProperty("AGENT_PACKAGE", "io.github.deweyjose.jswarm.core.test");
+    LLMAgentRegistry registry = new LLMAgentRegistry();
+
+    LLMNexus spyLLMNexus = Mockito.spy(new LLMNexus(client, registry));
+    spyLLMNexus.setRetrier(
+        new LLMRetrier(
+            LLMRetryPolicy.builder()
+                .maxAttempts(2)
+                .initialBackoff(Duration.ofMillis(1))
+                .deadline(Duration.ofSeconds(5))
+                .build()));
+
+    String replyJson =
+        "{\"id\":\"chatcmpl-2\","
+            + "\"choices\":[{\"finish_reason\":\"stop\",\"index\":0,\"logprobs\":null,"
+            + "\"message\":{\"content\":\"ok\",\"refusal\":null,\"role\":\"assistant\"}}],"
+            + "\"created\":1740451670,\"model\":\"gpt-4o-2024-08-06\",\"object\":\"chat.completion\"}";
+
+    Mockito.doThrow(new UncheckedIOException(new IOException("connection reset")))
+        .doReturn(objectMapper.readValue(replyJson, ChatCompletion.class))
+        .when(spyLLMNexus)
+        .chatCompletion(Mockito.any());
+
+    var response = spyLLMNexus.run("test it", new ArrayList<>(), Map.of());
+    assertEquals("ok", response.getReply()._content().toString());
+    Mockito.verify(spyLLMNexus, Mockito.times(2)).chatCompletion(Mockito.any());
+  }
+
+  @Test
+  @SneakyThrows
+  void runWithRetrier_pastDeadline_neverSendsTheQueuedRequest() {
+    OpenAIClient client = mock(OpenAIClient.class);
+    System.setProperty("AGENT_PACKAGE", "io.github.deweyjose.jswarm.core.test");
+    LLMAgentRegistry registry = new LLMAgentRegistry();
+
+    LLMNexus spyLLMNexus = Mockito.spy(new LLMNexus(client, registry));
+    var scheduler = new LLMRequestScheduler(LLMRateLimits.builder().maxConcurrent(1).build());
+    spyLLMNexus.setRequestScheduler(scheduler);
+    spyLLMNexus.setRetrier(
+        new LLMRetrier(
+            LLMRetryPolicy.builder()
+                .maxAttempts(2)
+                .hedgeDelay(Duration.ofMillis(20))
+                .deadline(Duration.ofMillis(100))
+                .build()));
+
+    // another caller holds the only slot until the run has given up
+    var model = registry.getCoordinatorAgent().getModel();
+    var held = scheduler.acquire(model, "other", 0);
+    assertThrows(
+        TimeoutException.class, () -> spyLLMNexus.run("test it", new ArrayList<>(), Map.of()));
+
+    held.close();
+    sleepQuietly(100);
+    Mockito.verify(spyLLMNexus, Mockito.never()).chatCompletion(Mockito.any());
+    assertEquals(0, scheduler.getQueueDepth(model));
+    assertTrue(scheduler.acquireAsync(model, "next", 0).isDone());
+  }
+
+  @Test
+  @SneakyThrows
+  void runSession_nextTurnStartsAtActiveAgent() {
+    OpenAIClient client = mock(OpenAIClient.class);
+    System.setProperty("AGENT_PACKAGE", "io.github.deweyjose.jswarm.core.test");
+    LLMAgentRegistry registry = new LLMAgentRegistry();
+
+    LLMNexus spyLLMNexus = Mockito.spy(new LLMNexus(client, registry));
+
+    String transferJson =
+        "{\"id\":\"chatcmpl-1\","
+            + "\"choices\":[{\"finish_reason\":\"tool_calls\",\"index\":0,\"logprobs\":null,\"message\":{\"content\":null,\"refusal\":null,\"role\":\"assistant\","
+            + "\"tool_calls\":[{\"id\":\"call_1\",\"function\":{\"arguments\":\"{}\",\"name\":\"TestMemeGenerator_getAgent\"},\"type\":\"function\"}]}}],"
+            + "\"created\":1740447592,\"model\":\"gpt-4o-2024-08-06\",\"object\":\"chat.completion\"}";
+
+    String replyJson =
+        "{\"id\":\"chatcmpl-2\","
+            + "\"choices\":[{\"finish_reason\":\"stop\",\"index\":0,\"logprobs\":null,"
+            + "\"message\":{\"content\":\"ok\",\"refusal\":null,\"role\":\"assistant\"}}],"
+            + "\"created\":1740451670,\"model\":\"gpt-4o-2024-08-06\",\"object\":\"chat.completion\"}";
+
+    Mockito.doReturn(
+            objectMapper.readValue(transferJson, ChatCompletion.class),
+            objectMapper.readValue(replyJson, ChatCompletion.class),
+            objectMapper.readValue(replyJson, ChatCompletion.class))
+        .when(spyLLMNexus)
+        .chatCompletion(Mockito.any());
+
+    var session = LLMSession.create();
+    var first = spyLLMNexus.run(session, "make a meme");
+    assertEquals("TestMemeGenerator", first.getAgent().getName());
+    assertSame(first.getAgent(), session.getActiveAgent());
+
+    // the second turn goes straight to the meme agent, no handoff round trip
+    var second = spyLLMNexus.run(session, "another one");
+    assertEquals("ok", second.getReply()._content().toString());
+    assertEquals(6, session.getHistory().size());
+
+    ArgumentCaptor<ChatCompletionCreateParams> params =
+        ArgumentCaptor.forClass(ChatCompletionCreateParams.class);
+    Mockito.verify(spyLLMNexus, Mockito.times(3)).chatCompletion(params.capture());
+    assertEquals(
+        registry.getTools(first.getAgent()).size(),
+        params.getAllValues().get(2).tools().get().size());
+
+    var resumed =
+        spyLLMNexus.resumeSession(
+            session.getId(), session.getHistory(), session.getContext(), "TestMemeGenerator");
+    assertSame(first.getAgent(), resumed.getActiveAgent());
+  }
+
+  @Test
+  @SneakyThrows
+  void runSession_withConversationStore_storesEachTurnAndResumes(@TempDir Path directory) {
+    OpenAIClient client = mock(OpenAIClient.class);
+    System.setProperty("AGENT_PACKAGE", "io.github.deweyjose.jswarm.core.test");
+    LLMAgentRegistry registry = new LLMAgentRegistry();
+
+    LLMNexus spyLLMNexus = Mockito.spy(new LLMNexus(client, registry));
+    spyLLMNexus.setConversationStore(new FileConversationStore(directory));
+
+    String transferJson =
+        "{\"id\":\"chatcmpl-1\","
+            + "\"choices\":[{\"finish_reason\":\"tool_calls\",\"index\":0,\"logprobs\":null,\"message\":{\"content\":null,\"refusal\":null,\"role\":\"assistant\","
+            + "\"tool_calls\":[{\"id\":\"call_1\",\"function\":{\"arguments\":\"{}\",\"name\":\"TestMemeGenerator_getAgent\"},\"type\":\"function\"}]}}],"
+            + "\"created\":1740447592,\"model\":\"gpt-4o-2024-08-06\",\"object\":\"chat.completion\"}";
+
+    String replyJson =
+        "{\"id\":\"chatcmpl-2\","
+            + "\"choices\":[{\"finish_reason\":\"stop\",\"index\":0,\"logprobs\":null,"
+            + "\"message\":{\"content\":\"ok\",\"refusal\":null,\"role\":\"assistant\"}}],"
+            + "\"created\":1740451670,\"model\":\"gpt-4o-2024-08-06\",\"object\":\"chat.completion\"}";
+
+    Mockito.doReturn(
+            objectMapper.readValue(transferJson, ChatCompletion.class),
+            objectMapper.readValue(replyJson, ChatCompletion.class),
+            objectMapper.readValue(replyJson, ChatCompletion.class))
+        .when(spyLLMNexus)
+        .chatCompletion(Mockito.any());
+
+    var session = LLMSession.create();
+    spyLLMNexus.run(session, "make a meme");
+    spyLLMNexus.run(session, "another one");
+
+    // user, transfer, tool result, reply, then user and reply
+    var stored = new FileConversationStore(directory).load(session.getId());
+    assertEquals(2, stored.getTurnCount());
+    assertEquals(4, stored.getTurn(0).size());
+    assertEquals(session.getHistory().subList(4, 6), stored.getTurn(1));
+    assertEquals("TestMemeGenerator", stored.getActiveAgent());
+
+    var resumed = spyLLMNexus.resumeSession(session.getId(), 1);
+    assertEquals(2, resumed.getHistory().size());
+    assertEquals("TestMemeGenerator", resumed.getActiveAgent().getName());
+
+    var unknown = spyLLMNexus.resumeSession("unknown", 1);
+    assertTrue(unknown.getHistory().isEmpty());
+    assertNull(unknown.getActiveAgent());
+  }
+
+  @Test
+  @SneakyThrows
+  void runAsyncSession_runsBlockingStepsOffCallerAndClientThreads() {
+    OpenAIClient client = mock(OpenAIClient.class);
+    System.setProperty("AGENT_PACKAGE", "io.github.deweyjose.jswarm.core.test");
+    LLMAgentRegistry registry = new LLMAgentRegistry();
+
+    LLMNexus spyLLMNexus = Mockito.spy(new LLMNexus(client, registry));
+    Map<String, Thread> threads = new ConcurrentHashMap<>();
+    spyLLMNexus.setHistoryCompactor(
+        (agent, history) -> threads.put("compact", Thread.currentThread()));
+    spyLLMNexus.setCompletionCache(
+        new LLMCompletionCache() {
+          @Override
+          public ChatCompletion get(String key) {
+            threads.put("cache get", Thread.currentThread());
+            return null;
+          }
+
+          @Override
+          public void put(String key, ChatCompletion completion) {
+            threads.put("cache put", Thread.currentThread());
+          }
+        });
+    spyLLMNexus.setConversationStore(
+        new LLMConversationStore() {
+          @Override
+          public void append(
+              String sessionId, List<ChatCompletionMessageParam> messages, String activeAgent) {
+            threads.put("append", Thread.currentThread());
+          }
+
+          @Override
+          public LLMStoredConversation load(String sessionId) {
+            return null;
+          }
+        });
+
+    String replyJson =
+        "{\"id\":\"chatcmpl-2\","
+            + "\"choices\":[{\"finish_reason\":\"stop\",\"index\":0,\"logprobs\":null,"
+            + "\"message\":{\"content\":\"ok\",\"refusal\":null,\"role\":\"assistant\"}}],"
+            + "\"created\":1740451670,\"model\":\"gpt-4o-2024-08-06\",\"object\":\"chat.completion\"}";
+    var reply = objectMapper.readValue(replyJson, ChatCompletion.class);
+
+    // the response arrives a little later on the client's own thread, like an HTTP callback
+    var clientThread =
+        Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "client"));
+    try {
+      Mockito.doAnswer(
+              invocation ->
+                  CompletableFuture.supplyAsync(
+                      () -> {
+                        sleepQuietly(50);
+                        return reply;
+                      },
+                      clientThread))
+          .when(spyLLMNexus)
+          .chatCompletionAsync(Mockito.any());
+
+      var response = spyLLMNexus.runAsync(LLMSession.create(), "test it").get(5, TimeUnit.SECONDS);
+      assertEquals("ok", response.getReply()._content().toString());
+    } finally {
+      clientThread.shutdown();
+    }
+
+    assertEquals(Set.of("compact", "cache get", "cache put", "append"), threads.keySet());
+    threads.forEach(
+        (step, thread) -> {
+          assertNotSame(Thread.currentThread(), thread, step);
+          assertNotEquals("client", thread.getName(), step);
+        });
+  }
+
+  @Test
+  @SneakyThrows
+  void runWithListener_reportsCompletionsToolCallsAndHandoff() {
+    OpenAIClient client = mock(OpenAIClient.class);
+    System.setProperty("AGENT_PACKAGE", "io.github.deweyjose.jswarm.core.test");
+    LLMAgentRegistry registry = new LLMAgentRegistry();
+
+    List<String> events = new ArrayList<>();
+    LLMNexus spyLLMNexus = Mockito.spy(new LLMNexus(client, registry));
+    spyLLMNexus.setListener(
+        start ->
+            new LLMRunListener() {
+              @Override
+              public void onCompletion(
+                  LLMAgentWrapper agent,
+                  Duration latency,
+                  long promptTokens,
+                  long completionTokens,
+                  boolean cached) {
+                events.add("completion " + agent.getName() + " " + promptTokens);
+              }
+
+              @Override
+              public void onToolCall(
+                  LLMAgentWrapper agent, String function, Duration latency, Throwable error) {
+                events.add("tool " + function);
+              }
+
+              @Override
+              public void onHandoff(LLMAgentWrapper from, LLMAgentWrapper to) {
+                events.add("handoff " + to.getName());
+              }
+
+              @Override
+              public void onRunEnd(
+                  LLMAgentWrapper agent, int completions, Duration duration, Throwable error) {
+                events.add("end " + start.getName() + " " + agent.getName() + " " + completions);
+              }
+            });
+
+    String transferJson =
+        "{\"id\":\"chatcmpl-1\","
+            + "\"choices\":[{\"finish_reason\":\"tool_calls\",\"index\":0,\"logprobs\":null,\"message\":{\"content\":null,\"refusal\":null,\"role\":\"assistant\","
+            + "\"tool_calls\":[{\"id\":\"call_1\",\"function\":{\"arguments\":\"{}\",\"name\":\"TestMemeGenerator_getAgent\"},\"type\":\"function\"}]}}],"
+            + "\"created\":1740447592,\"model\":\"gpt-4o-2024-08-06\",\"object\":\"chat.completion\","
+            + "\"usage\":{\"prompt_tokens\":50,\"completion_tokens\":5,\"total_tokens\":55}}";
+
+    String replyJson =
+        "{\"id\":\"chatcmpl-2\","
+            + "\"choices\":[{\"finish_reason\":\"stop\",\"index\":0,\"logprobs\":null,"
+            + "\"message\":{\"content\":\"ok\",\"refusal\":null,\"role\":\"assistant\"}}],"
+            + "\"created\":1740451670,\"model\":\"gpt-4o-2024-08-06\",\"object\":\"chat.completion\"}";
+
+    Mockito.doReturn(
+            objectMapper.readValue(transferJson, ChatCompletion.class),
+            objectMapper.readValue(replyJson, ChatCompletion.class))
+        .when(spyLLMNexus)
+        .chatCompletion(Mockito.any());
+
+    var response = spyLLMNexus.run("make a meme", new ArrayList<>(), Map.of());
+    var coordinator = registry.getCoordinatorAgent().getName();
+    assertEquals(
+        List.of(
+            "completion " + coordinator + " 50",
+            "tool TestMemeGenerator_getAgent",
+            "handoff TestMemeGenerator",
+            "completion TestMemeGenerator 0",
+            "end " + coordinator + " TestMemeGenerator 2"),
+        events);
+    assertEquals("ok", response.getReply()._content().toString());
+  }
+
+  @Test
+  @SneakyThrows
+  void runWithBudget_stopsOnceTokensAreUsedUp() {
+    OpenAIClient client = mock(OpenAIClient.class);
+    System.setProperty("AGENT_PACKAGE", "io.github.deweyjose.jswarm.core.test");
+    LLMAgentRegistry registry = new LLMAgentRegistry();
+
+    LLMNexus spyLLMNexus = Mockito.spy(new LLMNexus(client, registry));
+    spyLLMNexus.setRunBudget(LLMRunBudget.builder().maxTokens(50).build());
+
+    String transferJson =
+        "{\"id\":\"chatcmpl-1\","
+            + "\"choices\":[{\"finish_reason\":\"tool_calls\",\"index\":0,\"logprobs\":null,\"message\":{\"content\":null,\"refusal\":null,\"role\":\"assistant\","
+            + "\"tool_calls\":[{\"id\":\"call_1\",\"function\":{\"arguments\":\"{}\",\"name\":\"TestMemeGenerator_getAgent\"},\"type\":\"function\"}]}}],"
+            + "\"created\":1740447592,\"model\":\"gpt-4o-2024-08-06\",\"object\":\"chat.completion\","
+            + "\"usage\":{\"prompt_tokens\":50,\"completion_tokens\":5,\"total_tokens\":55,"
+            + "\"prompt_tokens_details\":{\"cached_tokens\":40}}}";
+
+    Mockito.doReturn(objectMapper.readValue(transferJson, ChatCompletion.class))
+        .when(spyLLMNexus)
+        .chatCompletion(Mockito.any());
+
+    var coordinator = registry.getCoordinatorAgent().getName();
+    var response = spyLLMNexus.run("make a meme", new ArrayList<>(), Map.of());
+
+    // the transfer still happens, the follow up completion does not
+    Mockito.verify(spyLLMNexus, Mockito.times(1)).chatCompletion(Mockito.any());
+    assertEquals(LLMStopReason.MAX_TOKENS, response.getStopReason());
+    assertEquals("TestMemeGenerator", response.getAgent().getName());
+    assertEquals(3, response.getHistory().size());
+    assertEquals(new LLMUsage(50, 5, 40), response.getUsage());
+    assertEquals(Map.of(coordinator, new LLMUsage(50, 5, 40)), response.getUsageByAgent());
+  }
+
+  @Test
+  @SneakyThrows
+  void runWithFastHandoff_leavesTransferOutOfHistory() {
+    OpenAIClient client = mock(OpenAIClient.class);
+    System.setProperty("AGENT_PACKAGE", "io.github.deweyjose.jswarm.core.test");
+    LLMAgentRegistry registry = new LLMAgentRegistry();
+
+    LLMNexus spyLLMNexus = Mockito.spy(new LLMNexus(client, registry));
+    spyLLMNexus.setFastHandoff(true);
+
+    String transferJson =
+        "{\"id\":\"chatcmpl-1\","
+            + "\"choices\":[{\"finish_reason\":\"tool_calls\",\"index\":0,\"logprobs\":null,\"message\":{\"content\":null,\"refusal\":null,\"role\":\"assistant\","
+            + "\"tool_calls\":[{\"id\":\"call_1\",\"function\":{\"arguments\":\"{}\",\"name\":\"TestMemeGenerator_getAgent\"},\"type\":\"function\"}]}}],"
+            + "\"created\":1740447592,\"model\":\"gpt-4o-2024-08-06\",\"object\":\"chat.completion\"}";
+
+    String replyJson =
+        "{\"id\":\"chatcmpl-2\","
+            + "\"choices\":[{\"finish_reason\":\"stop\",\"index\":0,\"logprobs\":null,"
+            + "\"message\":{\"content\":\"ok\",\"refusal\":null,\"role\":\"assistant\"}}],"
+            + "\"created\":1740451670,\"model\":\"gpt-4o-2024-08-06\",\"object\":\"chat.completion\"}";
+
+    Mockito.doReturn(
+            objectMapper.readValue(transferJson, ChatCompletion.class),
+            objectMapper.readValue(replyJson, ChatCompletion.class))
+        .when(spyLLMNexus)
+        .chatCompletion(Mockito.any());
+
+    var response = spyLLMNexus.run("make a meme", new ArrayList<>(), Map.of());
+    assertEquals("TestMemeGenerator", response.getAgent().getName());
+    assertEquals("ok", response.getReply()._content().toString());
+    // just the prompt and the answer, no transfer call or tool response
+    assertEquals(2, response.getHistory().size());
+
+    ArgumentCaptor<ChatCompletionCreateParams> params =
+        ArgumentCaptor.forClass(ChatCompletionCreateParams.class);
+    Mockito.verify(spyLLMNexus, Mockito.times(2)).chatCompletion(params.capture());
+    // the meme agent got the prompt right after the user: system message plus prompt
+    assertEquals(2, params.getAllValues().get(1).messages().size());
+    assertEquals(
+        registry.getTools(response.getAgent()).size(),
+        params.getAllValues().get(1).tools().get().size());
+  }
+
+  @Test
+  @SneakyThrows
+  void runWithIntentRouter_startsAtRoutedAgent() {
+    OpenAIClient client = mock(OpenAIClient.class);
+    System.setProperty("AGENT_PACKAGE", "io.github.deweyjose.jswarm.core.test");
+    LLMAgentRegistry registry = new LLMAgentRegistry();
+
+    LLMNexus spyLLMNexus = Mockito.spy(new LLMNexus(client, registry));
+    spyLLMNexus.setIntentRouter(new KeywordIntentRouter().rule("TestMemeGenerator", "meme"));
+
+    String replyJson =
+        "{\"id\":\"chatcmpl-2\","
+            + "\"choices\":[{\"finish_reason\":\"stop\",\"index\":0,\"logprobs\":null,"
+            + "\"message\":{\"content\":\"ok\",\"refusal\":null,\"role\":\"assistant\"}}],"
+            + "\"created\":1740451670,\"model\":\"gpt-4o-2024-08-06\",\"object\":\"chat.completion\"}";
+
+    Mockito.doReturn(objectMapper.readValue(replyJson, ChatCompletion.class))
+        .when(spyLLMNexus)
+        .chatCompletion(Mockito.any());
+
+    // no coordinator completion, the meme agent answers right away
+    var response = spyLLMNexus.run("make a meme", new ArrayList<>(), Map.of());
+    assertEquals("TestMemeGenerator", response.getAgent().getName());
+
+    ArgumentCaptor<ChatCompletionCreateParams> params =
+        ArgumentCaptor.forClass(ChatCompletionCreateParams.class);
+    Mockito.verify(spyLLMNexus, Mockito.times(1)).chatCompletion(params.capture());
+    assertEquals(
+        registry.getTools(response.getAgent()).size(), params.getValue().tools().get().size());
+
+    // a prompt the router is unsure about goes to the coordinator
+    var fallback = spyLLMNexus.run("hello", new ArrayList<>(), Map.of());
+    assertSame(registry.getCoordinatorAgent(), fallback.getAgent());
+  }
+
+  @SneakyThrows
+  private ChatCompletionChunk chunk(String delta, String finishReason) {
+    return objectMapper.readValue(
+        "{\"id\":\"chatcmpl-1\",\"object\":\"chat.completion.chunk\",\"created\":1740447063,"
+            + "\"model\":\"gpt-4o-2024-08-06\",\"system_fingerprint\":\"fp_f9f4fb6dbf\","
+            + "\"choices\":[{\"index\":0,\"delta\":"
+            + delta
+            + ",\"logprobs\":null,\"finish_reason\":"
+            + (finishReason == null ? "null" : "\"" + finishReason + "\"")
+            + "}]}",
+        ChatCompletionChunk.class);
+  }
+
+  private String toolCallDelta(int index, String id, String name, String arguments) {
+    return "{\"tool_calls\":[{\"index\":"
+        + index
+        + (id == null ? "" : ",\"id\":\"" + id + "\",\"type\":\"function\"")
+        + ",\"function\":{"
+        + (name == null ? "" : "\"name\":\"" + name + "\",")
+        + "\"arguments\":"
+        + objectMapper.valueToTree(arguments).toString()
+        + "}}]}";
+  }
+
+  @SneakyThrows
+  private static void sleepQuietly(long millis) {
+    Thread.sleep(millis);
+  }
+
+  @SneakyThrows
+  private static void awaitQuietly(CountDownLatch latch) {
+    latch.await(5, TimeUnit.SECONDS);
+  }
+
+  /** Two tools that record when they start and end. */
+  @LLMAgent(description = "Records its calls.", instructions = "Call both tools.")
+  static class RecordingTools {
+    final List<String> events = new CopyOnWriteArrayList<>();
+    final CountDownLatch done = new CountDownLatch(2);
+
+    @LLMFunction(description = "first", global = true)
+    public String first() throws Exception {
+      return record("first");
+    }
+
+    @LLMFunction(description = "second", global = true)
+    public String second() throws Exception {
+      return record("second");
+    }
+
+    private String record(String name) throws InterruptedException {
+      events.add(name + ":start");
+      // long enough for a call started in parallel to show up in between
+      Thread.sleep(50);
+      events.add(name + ":end");
+      done.countDown();
+      return name;
+    }
+  }
+
+  /** Two tools that only return once both are running. */
+  @LLMAgent(description = "Waits for its sibling.", instructions = "Call both tools.")
+  static class BarrierTools {
+    private final CyclicBarrier barrier = new CyclicBarrier(2);
+    final List<String> finished = new CopyOnWriteArrayList<>();
+
+    @LLMFunction(description = "first", global = true)
+    public String first() throws Exception {
+      barrier.await(2, TimeUnit.SECONDS);
+      // let the second call finish first
+      Thread.sleep(50);
+      finished.add("first");
+      return "first";
+    }
+
+    @LLMFunction(description = "second", global = true)
+    public String second() throws Exception {
+      barrier.await(2, TimeUnit.SECONDS);
+      finished.add("second");
+      return "second";
+    }
+  }
 }
@@ -0,0 +1,121 @@
+package io.github.deweyjose.jswarm.core;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.openai.models.ChatCompletionAssistantMessageParam;
+import com.openai.models.ChatCompletionMessageParam;
+import com.openai.models.ChatCompletionUserMessageParam;
+import io.github.deweyjose.jswarm.core.history.LLMTokenEstimator;
+import io.github.deweyjose.jswarm.core.history.SlidingWindowCompactor;
+import io.github.deweyjose.jswarm.core.history.SummarizingCompactor;
+import io.github.deweyjose.jswarm.core.wire.LLMWireFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class LLMRequestAssemblerTest {
+
+  private static ChatCompletionMessageParam user(String content) {
+    return ChatCompletionMessageParam.ofUser(
+        ChatCompletionUserMessageParam.builder().content(content).build());
+  }
+
+  private static ChatCompletionMessageParam assistant(String content) {
+    return ChatCompletionMessageParam.ofAssistant(
+        ChatCompletionAssistantMessageParam.builder().content(content).build());
+  }
+
+  @Test
+  void assemble_acrossTurns_keepsPrefixByteIdentical() {
+    var registry = new LLMAgentRegistry("io.github.deweyjose.jswarm.core.test");
+    var agent = registry.getCoordinatorAgent();
+    var assembler = new LLMRequestAssembler();
+
+    List<ChatCompletionMessageParam> history = new ArrayList<>(List.of(user("hello")));
+    var first = LLMWireFormat.request(assembler.assemble(agent, registry.getTools(agent), history));
+
+    history.add(assistant("hi"));
+    history.add(user("tell me a joke"));
+    var second =
+        LLMWireFormat.request(assembler.assemble(agent, registry.getTools(agent), history));
+
+    // one system message, first, and the instructions are not repeated anywhere else
+    var messages = second.get("messages");
+    assertEquals("system", messages.get(0).get("role").asText());
+    int systemMessages = 0;
+    for (var message : messages) {
+      systemMessages += "system".equals(message.get("role").asText()) ? 1 : 0;
+    }
+    assertEquals(1, systemMessages);
+
+    // the earlier request is a byte for byte prefix of the later one
+    assertEquals(first.get("model").asText(), second.get("model").asText());
+    assertEquals(
+        LLMWireFormat.toJson(first.get("tools")), LLMWireFormat.toJson(second.get("tools")));
+    var firstMessages = LLMWireFormat.toJson(first.get("messages"));
+    assertTrue(
+        LLMWireFormat.toJson(messages)
+            .startsWith(firstMessages.substring(0, firstMessages.length() - 1)));
+  }
+
+  @Test
+  void systemMessage_isBuiltOncePerAgent() {
+    var registry = new LLMAgentRegistry("io.github.deweyjose.jswarm.core.test");
+    var agent = registry.getCoordinatorAgent();
+    var assembler = new LLMRequestAssembler();
+
+    assertSame(assembler.systemMessage(agent), assembler.systemMessage(agent));
+    var params = assembler.assemble(agent, List.of(), List.of(user("hello")));
+    assertSame(assembler.systemMessage(agent), params.messages().get(0));
+    assertEquals(2, params.messages().size());
+  }
+
+  @Test
+  void assemble_afterSummarizingCompaction_keepsInstructionsTheOnlySystemMessage() {
+    var registry = new LLMAgentRegistry("io.github.deweyjose.jswarm.core.test");
+    var agent = registry.getCoordinatorAgent();
+    var assembler = new LLMRequestAssembler();
+    LLMTokenEstimator tenTokensEach =
+        new LLMTokenEstimator() {
+          @Override
+          public int estimate(String text) {
+            return 0;
+          }
+
+          @Override
+          public int estimate(ChatCompletionMessageParam message) {
+            return 10;
+          }
+        };
+    var compactor =
+        new SummarizingCompactor(
+            new SlidingWindowCompactor(tenTokensEach, Map.of(), 30),
+            messages -> "they said hello",
+            10);
+
+    List<ChatCompletionMessageParam> history =
+        new ArrayList<>(
+            List.of(user("hi"), assistant("hello"), user("question"), assistant("sure")));
+    var before =
+        LLMWireFormat.request(assembler.assemble(agent, registry.getTools(agent), history));
+    history.add(user("now what?"));
+    compactor.compact(agent, history);
+    var after = LLMWireFormat.request(assembler.assemble(agent, registry.getTools(agent), history));
+
+    // the instructions, then the summary as the first history message
+    var messages = after.get("messages");
+    assertEquals(4, messages.size());
+    for (int i = 1; i < messages.size(); i++) {
+      assertNotEquals("system", messages.get(i).get("role").asText());
+    }
+    assertEquals("user", messages.get(1).get("role").asText());
+    assertTrue(messages.get(1).toString().contains("they said hello"));
+
+    // compaction leaves the system message and the tools as they were
+    assertEquals(
+        LLMWireFormat.toJson(before.get("messages").get(0)), LLMWireFormat.toJson(messages.get(0)));
+    assertEquals(
+        LLMWireFormat.toJson(before.get("tools")), LLMWireFormat.toJson(after.get("tools")));
+  }
+}
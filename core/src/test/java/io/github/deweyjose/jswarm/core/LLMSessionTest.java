@@ -0,0 +1,152 @@
+package io.github.deweyjose.jswarm.core;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.openai.models.ChatCompletionMessageParam;
+import com.openai.models.ChatCompletionUserMessageParam;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+
+class LLMSessionTest {
+
+  @Test
+  void create_startsEmptyWithoutAgent() {
+    var session = LLMSession.create();
+    assertNotNull(session.getId());
+    assertTrue(session.getHistory().isEmpty());
+    assertTrue(session.getContext().isEmpty());
+    assertNull(session.getActiveAgent());
+    assertNotEquals(session.getId(), LLMSession.create().getId());
+  }
+
+  @Test
+  void constructor_copiesHistoryAndContext() {
+    var context = Map.<String, Object>of("user", "dewey");
+    var session = new LLMSession("id", List.of(), context, null);
+    session.getContext().put("turns", 1);
+    assertEquals("dewey", session.getContext().get("user"));
+    assertEquals(1, context.size());
+  }
+
+  @Test
+  void constructor_keepsNullContextValues() {
+    var context = new HashMap<String, Object>();
+    context.put("user", null);
+    var session = new LLMSession("id", List.of(), context, null);
+    session.getContext().put("plan", null);
+    assertTrue(session.getContext().containsKey("user"));
+    assertTrue(session.getContext().containsKey("plan"));
+  }
+
+  @Test
+  void getHistory_showsTheHistoryOfTheLastCompletedTurn() {
+    var session = LLMSession.create();
+    var message =
+        ChatCompletionMessageParam.ofUser(
+            ChatCompletionUserMessageParam.builder().content("hi").build());
+
+    var published =
+        session.turn(
+            () -> {
+              session.startTurn().add(message);
+              assertTrue(session.getHistory().isEmpty());
+              return session.publishHistory();
+            });
+
+    assertEquals(List.of(message), published);
+    assertEquals(List.of(message), session.getHistory());
+    assertThrows(UnsupportedOperationException.class, () -> session.getHistory().clear());
+  }
+
+  @Test
+  void turn_whenFailed_publishesWhatItAdded() {
+    var session = LLMSession.create();
+    var message =
+        ChatCompletionMessageParam.ofUser(
+            ChatCompletionUserMessageParam.builder().content("hi").build());
+
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            session.turn(
+                () -> {
+                  session.startTurn().add(message);
+                  throw new IllegalStateException("boom");
+                }));
+
+    assertEquals(List.of(message), session.getHistory());
+  }
+
+  @Test
+  void turnAsync_runsTurnsInSubmissionOrder() {
+    var session = LLMSession.create();
+    List<String> started = new ArrayList<>();
+    var first = new CompletableFuture<String>();
+
+    var firstTurn =
+        session.turnAsync(
+            () -> {
+              started.add("first");
+              return first;
+            });
+    var secondTurn =
+        session.turnAsync(
+            () -> {
+              started.add("second");
+              return CompletableFuture.completedFuture("second");
+            });
+
+    assertEquals(List.of("first"), started);
+    assertFalse(secondTurn.isDone());
+
+    first.complete("first");
+    assertEquals("first", firstTurn.join());
+    assertEquals("second", secondTurn.join());
+    assertEquals(List.of("first", "second"), started);
+  }
+
+  @Test
+  @SneakyThrows
+  void turn_waitsForPendingTurn() {
+    var session = LLMSession.create();
+    var first = new CompletableFuture<String>();
+    session.turnAsync(() -> first);
+
+    var started = new CountDownLatch(1);
+    var second =
+        CompletableFuture.supplyAsync(
+            () ->
+                session.turn(
+                    () -> {
+                      started.countDown();
+                      return "second";
+                    }));
+
+    assertFalse(started.await(100, TimeUnit.MILLISECONDS));
+    first.complete("first");
+    assertEquals("second", second.get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void turn_afterFailedTurn_stillRuns() {
+    var session = LLMSession.create();
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            session.turn(
+                () -> {
+                  throw new IllegalStateException("boom");
+                }));
+    var failed = session.turnAsync(() -> CompletableFuture.failedFuture(new RuntimeException()));
+
+    assertTrue(failed.isCompletedExceptionally());
+    assertEquals("next", session.turn(() -> "next"));
+  }
+}
@@ -0,0 +1,106 @@
+package io.github.deweyjose.jswarm.core;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openai.models.ChatCompletionChunk;
+import com.openai.models.ChatCompletionMessageToolCall;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+
+class LLMStreamAssemblerTest {
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  @SneakyThrows
+  private ChatCompletionChunk chunk(String delta, String finishReason) {
+    return objectMapper.readValue(
+        "{\"id\":\"chatcmpl-1\",\"object\":\"chat.completion.chunk\",\"created\":1740447063,"
+            + "\"model\":\"gpt-4o-2024-08-06\",\"system_fingerprint\":\"fp_f9f4fb6dbf\","
+            + "\"choices\":[{\"index\":0,\"delta\":"
+            + delta
+            + ",\"logprobs\":null,\"finish_reason\":"
+            + (finishReason == null ? "null" : "\"" + finishReason + "\"")
+            + "}]}",
+        ChatCompletionChunk.class);
+  }
+
+  private String toolCallDelta(int index, String id, String name, String arguments) {
+    return "{\"tool_calls\":[{\"index\":"
+        + index
+        + (id == null ? "" : ",\"id\":\"" + id + "\",\"type\":\"function\"")
+        + ",\"function\":{"
+        + (name == null ? "" : "\"name\":\"" + name + "\",")
+        + "\"arguments\":"
+        + objectMapper.valueToTree(arguments).toString()
+        + "}}]}";
+  }
+
+  @Test
+  void accept_withContentDeltas_forwardsAndAssemblesContent() {
+    List<String> deltas = new ArrayList<>();
+    var assembler = new LLMStreamAssembler(deltas::add, toolCall -> fail("no tool calls"));
+
+    assembler.accept(chunk("{\"role\":\"assistant\",\"content\":\"\"}", null));
+    assembler.accept(chunk("{\"content\":\"Hello\"}", null));
+    assembler.accept(chunk("{\"content\":\" world\"}", null));
+    assembler.accept(chunk("{}", "stop"));
+
+    assertEquals(List.of("Hello", " world"), deltas);
+    var message = assembler.toMessage();
+    assertEquals("Hello world", message.content().get());
+    assertTrue(message.toolCalls().isEmpty());
+  }
+
+  @Test
+  void accept_withToolCallFragments_completesEachToolCallWhenArgumentsClose() {
+    List<ChatCompletionMessageToolCall> completed = new ArrayList<>();
+    var assembler = new LLMStreamAssembler(delta -> {}, completed::add);
+
+    assembler.accept(chunk(toolCallDelta(0, "call_1", "getWeather", ""), null));
+    assembler.accept(chunk(toolCallDelta(0, null, null, "{\"arg0\":\"Bos"), null));
+    assertTrue(completed.isEmpty());
+
+    // a brace inside a string does not close the object
+    assembler.accept(chunk(toolCallDelta(0, null, null, "ton}\""), null));
+    assertTrue(completed.isEmpty());
+
+    assembler.accept(chunk(toolCallDelta(0, null, null, "}"), null));
+    assertEquals(1, completed.size());
+    assertEquals("call_1", completed.get(0).id());
+    assertEquals("{\"arg0\":\"Boston}\"}", completed.get(0).function().arguments());
+
+    assembler.accept(chunk(toolCallDelta(1, "call_2", "getTime", "{}"), null));
+    assertEquals(2, completed.size());
+    assertEquals("getTime", completed.get(1).function().name());
+
+    assembler.accept(chunk("{}", "tool_calls"));
+    assertEquals(2, completed.size());
+
+    var message = assembler.toMessage();
+    assertTrue(message.content().isEmpty());
+    assertEquals(2, message.toolCalls().get().size());
+    assertEquals("call_1", message.toolCalls().get().get(0).id());
+    assertEquals("call_2", message.toolCalls().get().get(1).id());
+  }
+
+  @Test
+  void accept_withNextToolCallIndex_completesPreviousToolCall() {
+    List<ChatCompletionMessageToolCall> completed = new ArrayList<>();
+    var assembler = new LLMStreamAssembler(delta -> {}, completed::add);
+
+    // arguments that never form an object are completed by the next index
+    assembler.accept(chunk(toolCallDelta(0, "call_1", "noArgs", ""), null));
+    assertTrue(completed.isEmpty());
+
+    assembler.accept(chunk(toolCallDelta(1, "call_2", "getTime", "{"), null));
+    assertEquals(1, completed.size());
+    assertEquals("call_1", completed.get(0).id());
+
+    assembler.finish();
+    assertEquals(2, completed.size());
+    assertEquals("call_2", completed.get(1).id());
+  }
+}
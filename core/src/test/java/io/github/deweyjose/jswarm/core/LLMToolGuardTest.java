@@ -0,0 +1,166 @@
+package io.github.deweyjose.jswarm.core;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+
+class LLMToolGuardTest {
+
+  private final AtomicLong now = new AtomicLong();
+  private final AtomicInteger calls = new AtomicInteger();
+
+  private LLMToolGuard guard(Duration timeout, int maxConcurrency, int failureThreshold) {
+    return new LLMToolGuard(
+        "StockBroker_getQuote",
+        timeout,
+        maxConcurrency,
+        failureThreshold,
+        Duration.ofSeconds(30),
+        LLMExecutors.defaultExecutor(),
+        now::get);
+  }
+
+  private String failingCall() {
+    calls.incrementAndGet();
+    throw new IllegalStateException("quote service down");
+  }
+
+  @Test
+  @SneakyThrows
+  void call_overTimeout_throwsTimeoutAndInterruptsTheCall() {
+    var guard = guard(Duration.ofMillis(50), 1, 0);
+    var interrupted = new CountDownLatch(1);
+
+    var error =
+        assertThrows(
+            TimeoutException.class,
+            () ->
+                guard.call(
+                    () -> {
+                      try {
+                        Thread.sleep(10_000);
+                      } catch (InterruptedException e) {
+                        interrupted.countDown();
+                      }
+                      return "late";
+                    }));
+    assertTrue(error.getMessage().contains("StockBroker_getQuote"));
+    assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+
+    // the permit of the interrupted call comes back once it returns
+    assertEquals("quote", retryUntilAdmitted(guard));
+  }
+
+  @SneakyThrows
+  private static String retryUntilAdmitted(LLMToolGuard guard) {
+    for (int i = 0; i < 100; i++) {
+      try {
+        return guard.call(() -> "quote");
+      } catch (RejectedExecutionException e) {
+        Thread.sleep(10);
+      }
+    }
+    return fail("permit was never released");
+  }
+
+  @Test
+  @SneakyThrows
+  void call_timedOutBeforeItStarted_releasesItsPermit() {
+    // the guard's only thread is busy, so timed calls never get to start
+    var executor = Executors.newSingleThreadExecutor();
+    var busy = new CountDownLatch(1);
+    executor.execute(() -> awaitQuietly(busy));
+    var guard =
+        new LLMToolGuard(
+            "StockBroker_getQuote",
+            Duration.ofMillis(20),
+            1,
+            0,
+            Duration.ofSeconds(30),
+            executor,
+            now::get);
+
+    try {
+      for (int i = 0; i < 3; i++) {
+        assertThrows(TimeoutException.class, () -> guard.call(calls::incrementAndGet));
+      }
+      busy.countDown();
+      // the abandoned calls never ran and the permit is free for the next one
+      assertEquals("quote", retryUntilAdmitted(guard));
+      assertEquals(0, calls.get());
+    } finally {
+      busy.countDown();
+      executor.shutdownNow();
+    }
+  }
+
+  @SneakyThrows
+  private static void awaitQuietly(CountDownLatch latch) {
+    latch.await();
+  }
+
+  @Test
+  @SneakyThrows
+  void call_overMaxConcurrency_rejectsWithoutWaiting() {
+    var guard = guard(Duration.ZERO, 1, 0);
+    var started = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+
+    var running =
+        CompletableFuture.supplyAsync(
+            () -> {
+              try {
+                return guard.call(
+                    () -> {
+                      started.countDown();
+                      release.await();
+                      return "first";
+                    });
+              } catch (Exception e) {
+                throw new IllegalStateException(e);
+              }
+            });
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    assertThrows(RejectedExecutionException.class, () -> guard.call(() -> "second"));
+
+    release.countDown();
+    assertEquals("first", running.get(5, TimeUnit.SECONDS));
+    assertEquals("third", guard.call(() -> "third"));
+  }
+
+  @Test
+  void call_afterFailureThreshold_opensUntilATrialSucceeds() {
+    var guard = guard(Duration.ZERO, 0, 2);
+
+    assertThrows(IllegalStateException.class, () -> guard.call(this::failingCall));
+    assertFalse(guard.isOpen());
+    assertThrows(IllegalStateException.class, () -> guard.call(this::failingCall));
+    assertTrue(guard.isOpen());
+
+    // open: the tool is not called at all
+    assertThrows(RejectedExecutionException.class, () -> guard.call(this::failingCall));
+    assertEquals(2, calls.get());
+
+    // a failed trial opens it again right away
+    now.addAndGet(Duration.ofSeconds(30).toNanos());
+    assertThrows(IllegalStateException.class, () -> guard.call(this::failingCall));
+    assertTrue(guard.isOpen());
+    assertEquals(3, calls.get());
+
+    now.addAndGet(Duration.ofSeconds(30).toNanos());
+    assertDoesNotThrow(() -> guard.call(() -> "quote"));
+    assertFalse(guard.isOpen());
+    assertEquals(0, guard.getConsecutiveFailures());
+  }
+}
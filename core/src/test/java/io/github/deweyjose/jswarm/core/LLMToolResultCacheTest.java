@@ -0,0 +1,70 @@
+package io.github.deweyjose.jswarm.core;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class LLMToolResultCacheTest {
+
+  private final AtomicLong now = new AtomicLong();
+
+  @Test
+  void key_ignoresFieldOrderAndWhitespace() {
+    var cache = new LLMToolResultCache("WeatherMan_getWeather", Duration.ofMinutes(1), 10);
+    assertEquals(
+        cache.key("{\"arg0\":\"Boston\",\"arg1\":{\"b\":1,\"a\":2}}"),
+        cache.key("{ \"arg1\": {\"a\": 2, \"b\": 1}, \"arg0\": \"Boston\" }"));
+    assertNotEquals(cache.key("{\"arg0\":\"Boston\"}"), cache.key("{\"arg0\":\"Denver\"}"));
+    assertTrue(cache.key("{}").startsWith("WeatherMan_getWeather"));
+  }
+
+  @Test
+  void get_countsHitsAndMisses() {
+    var cache = new LLMToolResultCache("f", Duration.ofMinutes(1), 10, now::get);
+    assertNull(cache.get("a"));
+    cache.put("a", "sunny");
+    assertEquals("sunny", cache.get("a"));
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+  }
+
+  @Test
+  void get_afterTtl_returnsNull() {
+    var cache = new LLMToolResultCache("f", Duration.ofSeconds(5), 10, now::get);
+    cache.put("a", "sunny");
+    now.addAndGet(Duration.ofSeconds(4).toNanos());
+    assertEquals("sunny", cache.get("a"));
+    now.addAndGet(Duration.ofSeconds(1).toNanos());
+    assertNull(cache.get("a"));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  void put_whenFull_evictsLeastRecentlyUsed() {
+    var cache = new LLMToolResultCache("f", Duration.ofMinutes(1), 2, now::get);
+    cache.put("a", "1");
+    cache.put("b", "2");
+    cache.get("a");
+    cache.put("c", "3");
+
+    assertEquals("1", cache.get("a"));
+    assertNull(cache.get("b"));
+    assertEquals("3", cache.get("c"));
+    assertEquals(1, cache.getEvictions());
+  }
+
+  @Test
+  void put_withNull_doesNotCache() {
+    var cache = new LLMToolResultCache("f", Duration.ofMinutes(1), 2, now::get);
+    cache.put("a", null);
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  void constructor_withZeroTtl_throwsIllegalArgumentException() {
+    assertThrows(
+        IllegalArgumentException.class, () -> new LLMToolResultCache("f", Duration.ZERO, 10));
+  }
+}
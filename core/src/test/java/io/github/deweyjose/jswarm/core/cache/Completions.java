@@ -0,0 +1,21 @@
+package io.github.deweyjose.jswarm.core.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openai.models.ChatCompletion;
+import lombok.SneakyThrows;
+
+class Completions {
+
+  private static final ObjectMapper objectMapper = new ObjectMapper();
+
+  @SneakyThrows
+  static ChatCompletion completion(String content) {
+    return objectMapper.readValue(
+        "{\"id\":\"chatcmpl-1\",\"choices\":[{\"finish_reason\":\"stop\",\"index\":0,"
+            + "\"logprobs\":null,\"message\":{\"content\":\""
+            + content
+            + "\",\"refusal\":null,\"role\":\"assistant\"}}],\"created\":1740447063,"
+            + "\"model\":\"gpt-4o-2024-08-06\",\"object\":\"chat.completion\"}",
+        ChatCompletion.class);
+  }
+}
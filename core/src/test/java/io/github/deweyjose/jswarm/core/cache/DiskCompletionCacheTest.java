@@ -0,0 +1,64 @@
+package io.github.deweyjose.jswarm.core.cache;
+
+import static io.github.deweyjose.jswarm.core.cache.Completions.completion;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DiskCompletionCacheTest {
+
+  @TempDir Path directory;
+
+  @Test
+  void get_afterPut_readsCompletionBack() {
+    var cache = new DiskCompletionCache(directory);
+    cache.put("abc", completion("hello"));
+
+    var cached = new DiskCompletionCache(directory).get("abc");
+    assertEquals("hello", cached.choices().get(0).message().content().get());
+  }
+
+  @Test
+  @SneakyThrows
+  void put_leavesNoTemporaryFiles() {
+    var cache = new DiskCompletionCache(directory);
+    cache.put("abc", completion("one"));
+    cache.put("abc", completion("two"));
+
+    try (var files = Files.list(directory)) {
+      assertEquals(1, files.count());
+    }
+    assertEquals("two", cache.get("abc").choices().get(0).message().content().get());
+  }
+
+  @Test
+  void get_withUnknownKey_returnsNull() {
+    assertNull(new DiskCompletionCache(directory).get("missing"));
+  }
+
+  @Test
+  @SneakyThrows
+  void get_afterTtl_returnsNullAndDeletesEntry() {
+    var cache = new DiskCompletionCache(directory, Duration.ofMinutes(1));
+    cache.put("abc", completion("hello"));
+    var file = directory.resolve("abc.json");
+    Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(Duration.ofMinutes(2))));
+
+    assertNull(cache.get("abc"));
+    assertFalse(Files.exists(file));
+  }
+
+  @Test
+  @SneakyThrows
+  void get_withCorruptEntry_returnsNull() {
+    Files.writeString(directory.resolve("abc.json"), "{not json");
+    assertNull(new DiskCompletionCache(directory).get("abc"));
+  }
+}
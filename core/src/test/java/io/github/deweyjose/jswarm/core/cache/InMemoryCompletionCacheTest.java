@@ -0,0 +1,38 @@
+package io.github.deweyjose.jswarm.core.cache;
+
+import static io.github.deweyjose.jswarm.core.cache.Completions.completion;
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class InMemoryCompletionCacheTest {
+
+  @Test
+  void get_afterPut_returnsCompletionAndCountsHit() {
+    var cache = new InMemoryCompletionCache(4);
+    var completion = completion("hello");
+    assertNull(cache.get("a"));
+    cache.put("a", completion);
+    assertSame(completion, cache.get("a"));
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+  }
+
+  @Test
+  void put_whenFull_evictsLeastRecentlyUsed() {
+    var cache = new InMemoryCompletionCache(2);
+    cache.put("a", completion("a"));
+    cache.put("b", completion("b"));
+    cache.get("a");
+    cache.put("c", completion("c"));
+
+    assertNotNull(cache.get("a"));
+    assertNull(cache.get("b"));
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  void constructor_withZeroSize_throwsIllegalArgumentException() {
+    assertThrows(IllegalArgumentException.class, () -> new InMemoryCompletionCache(0));
+  }
+}
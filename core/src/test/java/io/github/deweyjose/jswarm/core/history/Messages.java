@@ -0,0 +1,74 @@
+package io.github.deweyjose.jswarm.core.history;
+
+import com.openai.models.ChatCompletionMessage;
+import com.openai.models.ChatCompletionMessageParam;
+import com.openai.models.ChatCompletionMessageToolCall;
+import com.openai.models.ChatCompletionToolMessageParam;
+import com.openai.models.ChatCompletionUserMessageParam;
+import io.github.deweyjose.jswarm.core.model.LLMAgentWrapper;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/** Message and agent fixtures for the compactor tests. Every message costs ten tokens. */
+class Messages {
+
+  static final LLMTokenEstimator TEN_TOKENS_EACH =
+      new LLMTokenEstimator() {
+        @Override
+        public int estimate(String text) {
+          return 0;
+        }
+
+        @Override
+        public int estimate(ChatCompletionMessageParam message) {
+          return 10;
+        }
+      };
+
+  static LLMAgentWrapper agent(String model) {
+    return LLMAgentWrapper.builder()
+        .model(model)
+        .instructions("be brief")
+        .agent(new Object())
+        .build();
+  }
+
+  static ChatCompletionMessageParam user(String content) {
+    return ChatCompletionMessageParam.ofUser(
+        ChatCompletionUserMessageParam.builder().content(content).build());
+  }
+
+  static ChatCompletionMessageParam assistant(String content) {
+    return ChatCompletionMessageParam.ofAssistant(
+        ChatCompletionMessage.builder()
+            .content(Optional.of(content))
+            .refusal(Optional.empty())
+            .build()
+            .toParam());
+  }
+
+  static ChatCompletionMessageParam toolCalls(String... ids) {
+    var builder =
+        ChatCompletionMessage.builder().content(Optional.empty()).refusal(Optional.empty());
+    builder.toolCalls(
+        List.of(ids).stream()
+            .map(
+                id ->
+                    ChatCompletionMessageToolCall.builder()
+                        .id(id)
+                        .function(
+                            ChatCompletionMessageToolCall.Function.builder()
+                                .name("lookup")
+                                .arguments("{}")
+                                .build())
+                        .build())
+            .collect(Collectors.toList()));
+    return ChatCompletionMessageParam.ofAssistant(builder.build().toParam());
+  }
+
+  static ChatCompletionMessageParam tool(String id) {
+    return ChatCompletionMessageParam.ofTool(
+        ChatCompletionToolMessageParam.builder().toolCallId(id).content("result").build());
+  }
+}
@@ -0,0 +1,76 @@
+package io.github.deweyjose.jswarm.core.history;
+
+import static io.github.deweyjose.jswarm.core.history.Messages.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.openai.models.ChatCompletionMessageParam;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class SlidingWindowCompactorTest {
+
+  @Test
+  void compact_withinBudget_keepsHistory() {
+    var compactor = new SlidingWindowCompactor(TEN_TOKENS_EACH, Map.of(), 100);
+    List<ChatCompletionMessageParam> history =
+        new ArrayList<>(List.of(user("one"), assistant("two"), user("three")));
+    var original = List.copyOf(history);
+
+    compactor.compact(agent("gpt-4o"), history);
+
+    assertEquals(original, history);
+  }
+
+  @Test
+  void compact_overBudget_dropsOldestMessagesInPlace() {
+    var compactor = new SlidingWindowCompactor(TEN_TOKENS_EACH, Map.of(), 20);
+    var latest = user("three");
+    var reply = assistant("two");
+    List<ChatCompletionMessageParam> history =
+        new ArrayList<>(List.of(user("one"), reply, latest));
+
+    compactor.compact(agent("gpt-4o"), history);
+
+    assertEquals(List.of(reply, latest), history);
+  }
+
+  @Test
+  void compact_neverSeparatesToolCallsFromTheirResults() {
+    var compactor = new SlidingWindowCompactor(TEN_TOKENS_EACH, Map.of(), 30);
+    var calls = toolCalls("call_1", "call_2");
+    var latest = user("again");
+    List<ChatCompletionMessageParam> history =
+        new ArrayList<>(
+            List.of(user("one"), calls, tool("call_1"), tool("call_2"), assistant("done"), latest));
+
+    compactor.compact(agent("gpt-4o"), history);
+
+    // the call and both results cost 30 and no longer fit next to the last two messages
+    assertEquals(2, history.size());
+    assertFalse(history.get(0).isTool());
+    assertSame(latest, history.get(1));
+  }
+
+  @Test
+  void compact_alwaysKeepsTheCurrentTurn() {
+    var compactor = new SlidingWindowCompactor(TEN_TOKENS_EACH, Map.of(), 10);
+    var prompt = user("weather?");
+    var calls = toolCalls("call_1");
+    var result = tool("call_1");
+    List<ChatCompletionMessageParam> history =
+        new ArrayList<>(List.of(user("hi"), assistant("hello"), prompt, calls, result));
+
+    compactor.compact(agent("gpt-4o"), history);
+
+    assertEquals(List.of(prompt, calls, result), history);
+  }
+
+  @Test
+  void getBudget_usesModelBudgetWhenConfigured() {
+    var compactor = new SlidingWindowCompactor(TEN_TOKENS_EACH, Map.of("gpt-4o-mini", 50), 20);
+    assertEquals(50, compactor.getBudget(agent("gpt-4o-mini")));
+    assertEquals(20, compactor.getBudget(agent("gpt-4o")));
+  }
+}
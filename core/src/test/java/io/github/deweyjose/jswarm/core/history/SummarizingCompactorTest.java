@@ -0,0 +1,57 @@
+package io.github.deweyjose.jswarm.core.history;
+
+import static io.github.deweyjose.jswarm.core.history.Messages.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.openai.models.ChatCompletionMessageParam;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class SummarizingCompactorTest {
+
+  @Test
+  void compact_withinBudget_doesNotSummarize() {
+    var compactor =
+        new SummarizingCompactor(
+            new SlidingWindowCompactor(TEN_TOKENS_EACH, Map.of(), 100),
+            messages -> fail("nothing to summarize"),
+            10);
+    List<ChatCompletionMessageParam> history =
+        new ArrayList<>(List.of(user("one"), assistant("two")));
+
+    compactor.compact(agent("gpt-4o"), history);
+
+    assertEquals(2, history.size());
+  }
+
+  @Test
+  void compact_overBudget_replacesDroppedMessagesWithSummary() {
+    List<List<ChatCompletionMessageParam>> summarized = new ArrayList<>();
+    var compactor =
+        new SummarizingCompactor(
+            new SlidingWindowCompactor(TEN_TOKENS_EACH, Map.of(), 30),
+            messages -> {
+              summarized.add(messages);
+              return "they said hello";
+            },
+            10);
+    var first = user("hi");
+    var second = assistant("hello");
+    var question = user("question");
+    var reply = assistant("sure");
+    var latest = user("now what?");
+    List<ChatCompletionMessageParam> history =
+        new ArrayList<>(List.of(first, second, question, reply, latest));
+
+    compactor.compact(agent("gpt-4o"), history);
+
+    assertEquals(List.of(List.of(first, second, question)), summarized);
+    assertEquals(3, history.size());
+    assertTrue(history.get(0).isUser());
+    assertTrue(
+        history.get(0).toString().contains(SummarizingCompactor.SUMMARY_PREFIX + "they said hello"));
+    assertEquals(List.of(reply, latest), history.subList(1, 3));
+  }
+}
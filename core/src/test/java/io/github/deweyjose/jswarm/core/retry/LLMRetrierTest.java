@@ -0,0 +1,140 @@
+package io.github.deweyjose.jswarm.core.retry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+
+class LLMRetrierTest {
+
+  private final AtomicInteger attempts = new AtomicInteger();
+
+  private static LLMRetryPolicy.LLMRetryPolicyBuilder policy() {
+    return LLMRetryPolicy.builder()
+        .initialBackoff(Duration.ofMillis(1))
+        .maxBackoff(Duration.ofMillis(5));
+  }
+
+  private CompletableFuture<String> failing(int failures, RuntimeException error) {
+    return attempts.incrementAndGet() <= failures
+        ? CompletableFuture.failedFuture(error)
+        : CompletableFuture.completedFuture("ok");
+  }
+
+  @Test
+  void call_withTransientFailures_retriesUntilSuccess() {
+    var retrier = new LLMRetrier(policy().maxAttempts(3).build());
+    var error = new UncheckedIOException(new IOException("connection reset"));
+
+    assertEquals("ok", retrier.call("gpt-4o", () -> failing(2, error), retrier.deadline()));
+    assertEquals(3, attempts.get());
+  }
+
+  @Test
+  void call_afterMaxAttempts_throwsLastError() {
+    var retrier = new LLMRetrier(policy().maxAttempts(2).build());
+    var error = new UncheckedIOException(new IOException("connection reset"));
+
+    var thrown =
+        assertThrows(
+            UncheckedIOException.class,
+            () -> retrier.call("gpt-4o", () -> failing(5, error), retrier.deadline()));
+    assertSame(error, thrown);
+    assertEquals(2, attempts.get());
+  }
+
+  @Test
+  void call_withPermanentError_doesNotRetry() {
+    var retrier = new LLMRetrier(policy().maxAttempts(3).build());
+    var error = new IllegalStateException("bad request");
+
+    assertThrows(
+        IllegalStateException.class,
+        () -> retrier.call("gpt-4o", () -> failing(1, error), retrier.deadline()));
+    assertEquals(1, attempts.get());
+  }
+
+  @Test
+  void callAsync_pastDeadline_failsWithTimeout() {
+    var retrier = new LLMRetrier(policy().deadline(Duration.ofMillis(50)).build());
+    var never = new CompletableFuture<String>();
+
+    var result = retrier.callAsync("gpt-4o", () -> never, retrier.deadline());
+    var thrown = assertThrows(CompletionException.class, result::join);
+    assertInstanceOf(TimeoutException.class, thrown.getCause());
+    assertTrue(never.isCancelled());
+  }
+
+  @Test
+  @SneakyThrows
+  void atDeadline_runsTaskUnlessCancelled() {
+    var retrier = new LLMRetrier(policy().deadline(Duration.ofMillis(20)).build());
+    var ran = new CountDownLatch(1);
+    retrier.atDeadline(retrier.deadline(), ran::countDown);
+    assertTrue(ran.await(5, TimeUnit.SECONDS));
+
+    var cancelled = retrier.atDeadline(retrier.deadline(), attempts::incrementAndGet);
+    assertTrue(cancelled.cancel(false));
+    Thread.sleep(50);
+    assertEquals(0, attempts.get());
+
+    // no deadline, nothing to schedule
+    assertNull(retrier.atDeadline(Long.MAX_VALUE, attempts::incrementAndGet));
+  }
+
+  @Test
+  void callAsync_withSlowAttempt_takesTheHedge() {
+    var retrier = new LLMRetrier(policy().hedgeDelay(Duration.ofMillis(20)).build());
+    var slow = new CompletableFuture<String>();
+
+    var result =
+        retrier.callAsync(
+            "gpt-4o",
+            () ->
+                attempts.incrementAndGet() == 1
+                    ? slow
+                    : CompletableFuture.completedFuture("hedged"),
+            retrier.deadline());
+    assertEquals("hedged", result.join());
+    assertEquals(2, attempts.get());
+    assertTrue(slow.isCancelled());
+  }
+
+  @Test
+  void hedgeDelayNanos_afterEnoughSamples_followsObservedLatency() {
+    var retrier = new LLMRetrier(policy().hedgeDelay(Duration.ofMinutes(1)).build());
+    assertEquals(Duration.ofMinutes(1).toNanos(), retrier.hedgeDelayNanos("gpt-4o"));
+
+    for (int i = 0; i < 20; i++) {
+      retrier.call("gpt-4o", () -> CompletableFuture.completedFuture("ok"), retrier.deadline());
+    }
+    assertTrue(retrier.hedgeDelayNanos("gpt-4o") < Duration.ofSeconds(1).toNanos());
+    assertEquals(Duration.ofMinutes(1).toNanos(), retrier.hedgeDelayNanos("gpt-4o-mini"));
+  }
+
+  @Test
+  void backoffNanos_staysWithinExponentialCap() {
+    var retrier = new LLMRetrier(policy().maxBackoff(Duration.ofMillis(4)).build());
+    for (int i = 0; i < 100; i++) {
+      assertTrue(retrier.backoffNanos(1) <= Duration.ofMillis(1).toNanos());
+      assertTrue(retrier.backoffNanos(2) <= Duration.ofMillis(2).toNanos());
+      assertTrue(retrier.backoffNanos(10) <= Duration.ofMillis(4).toNanos());
+    }
+  }
+
+  @Test
+  void isTransient_classifiesCauseChain() {
+    assertTrue(LLMRetryPolicy.isTransient(new CompletionException(new TimeoutException())));
+    assertTrue(LLMRetryPolicy.isTransient(new UncheckedIOException(new IOException())));
+    assertFalse(LLMRetryPolicy.isTransient(new IllegalArgumentException()));
+  }
+}
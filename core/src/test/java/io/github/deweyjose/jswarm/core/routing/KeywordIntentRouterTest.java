@@ -0,0 +1,58 @@
+package io.github.deweyjose.jswarm.core.routing;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.deweyjose.jswarm.core.model.LLMAgentWrapper;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class KeywordIntentRouterTest {
+
+  static class WeatherMan {}
+
+  static class StockBroker {}
+
+  private final LLMAgentWrapper weather =
+      LLMAgentWrapper.builder().model("gpt-4o").instructions("w").agent(new WeatherMan()).build();
+  private final LLMAgentWrapper stocks =
+      LLMAgentWrapper.builder().model("gpt-4o").instructions("s").agent(new StockBroker()).build();
+  private final List<LLMAgentWrapper> agents = List.of(weather, stocks);
+
+  private final KeywordIntentRouter router =
+      new KeywordIntentRouter()
+          .rule("WeatherMan", "weather", "forecast", "rain")
+          .rule("StockBroker", "stock price", "ticker");
+
+  @Test
+  void route_withKeywordsOfOneAgent_picksThatAgent() {
+    assertSame(weather, router.route("Will it RAIN in Boston tomorrow?", agents));
+    assertSame(stocks, router.route("What's the stock price of ACME?", agents));
+  }
+
+  @Test
+  void route_withoutWholeWordMatch_fallsBack() {
+    // "train" contains "rain", "stock" alone is not the phrase
+    assertNull(router.route("When does the next train leave?", agents));
+    assertNull(router.route("Is this item in stock?", agents));
+  }
+
+  @Test
+  void route_withTie_fallsBack() {
+    assertNull(router.route("Does the forecast move the ticker?", agents));
+    // more matches for one agent settle it
+    assertSame(weather, router.route("Does the rain forecast move the ticker?", agents));
+  }
+
+  @Test
+  void route_belowMinMatches_fallsBack() {
+    var strict = new KeywordIntentRouter(2).rule("WeatherMan", "weather", "forecast");
+    assertNull(strict.route("What's the forecast?", agents));
+    assertSame(weather, strict.route("What's the weather forecast?", agents));
+  }
+
+  @Test
+  void route_ignoresRulesForUnregisteredAgents() {
+    var router = new KeywordIntentRouter().rule("Librarian", "book");
+    assertNull(router.route("Recommend a book", agents));
+  }
+}
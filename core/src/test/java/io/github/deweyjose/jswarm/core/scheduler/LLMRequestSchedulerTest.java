@@ -0,0 +1,111 @@
+package io.github.deweyjose.jswarm.core.scheduler;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.deweyjose.jswarm.core.history.LLMTokenEstimator;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+
+class LLMRequestSchedulerTest {
+
+  private final AtomicLong now = new AtomicLong();
+
+  private LLMRequestScheduler scheduler(LLMRateLimits limits) {
+    return new LLMRequestScheduler(model -> limits, LLMTokenEstimator.characters(), now::get);
+  }
+
+  @Test
+  void acquireAsync_overConcurrency_waitsForRelease() {
+    var scheduler = scheduler(LLMRateLimits.builder().maxConcurrent(1).build());
+    var first = scheduler.acquireAsync("gpt-4o", "a", 10);
+    var second = scheduler.acquireAsync("gpt-4o", "b", 10);
+
+    assertTrue(first.isDone());
+    assertFalse(second.isDone());
+    assertEquals(1, scheduler.getQueueDepth("gpt-4o"));
+
+    // other models have their own lane
+    assertTrue(scheduler.acquireAsync("gpt-4o-mini", "b", 10).isDone());
+
+    first.join().close();
+    assertTrue(second.isDone());
+    assertEquals(0, scheduler.getQueueDepth("gpt-4o"));
+  }
+
+  @Test
+  void acquireAsync_overQueueDepth_rejects() {
+    var scheduler = scheduler(LLMRateLimits.builder().maxConcurrent(1).maxQueueDepth(1).build());
+    scheduler.acquireAsync("gpt-4o", "a", 10);
+    scheduler.acquireAsync("gpt-4o", "a", 10);
+
+    var rejected = scheduler.acquireAsync("gpt-4o", "b", 10);
+    var error = assertThrows(CompletionException.class, rejected::join);
+    assertInstanceOf(RejectedExecutionException.class, error.getCause());
+    assertThrows(RejectedExecutionException.class, () -> scheduler.acquire("gpt-4o", "b", 10));
+  }
+
+  @Test
+  void acquireAsync_withManyCallers_takesTurns() {
+    var scheduler = scheduler(LLMRateLimits.builder().maxConcurrent(1).build());
+    var held = scheduler.acquireAsync("gpt-4o", "busy", 10).join();
+
+    // each request finishes as soon as it is admitted
+    List<String> admitted = new ArrayList<>();
+    for (var caller : List.of("a", "a", "a", "b")) {
+      scheduler
+          .acquireAsync("gpt-4o", caller, 10)
+          .thenAccept(
+              permit -> {
+                admitted.add(caller);
+                permit.close();
+              });
+    }
+
+    held.close();
+    assertEquals(List.of("a", "b", "a", "a"), admitted);
+  }
+
+  @Test
+  void acquireAsync_overTokenBudget_waitsForRefill() {
+    var scheduler = scheduler(LLMRateLimits.builder().tokensPerMinute(100).build());
+    assertTrue(scheduler.acquireAsync("gpt-4o", "a", 100).isDone());
+
+    var waiting = scheduler.acquireAsync("gpt-4o", "a", 50);
+    assertFalse(waiting.isDone());
+
+    // half a minute refills half the budget, the next request lets the waiting one through
+    now.addAndGet(Duration.ofSeconds(30).toNanos());
+    var next = scheduler.acquireAsync("gpt-4o", "b", 1);
+    assertTrue(waiting.isDone());
+    assertFalse(next.isDone());
+  }
+
+  @Test
+  void release_withUsage_correctsTokenBudget() {
+    var scheduler = scheduler(LLMRateLimits.builder().tokensPerMinute(100).build());
+    scheduler.acquireAsync("gpt-4o", "a", 100).join().release(20);
+
+    // the estimate was 80 tokens too high
+    assertTrue(scheduler.acquireAsync("gpt-4o", "a", 80).isDone());
+    assertFalse(scheduler.acquireAsync("gpt-4o", "a", 1).isDone());
+  }
+
+  @Test
+  @SneakyThrows
+  void acquire_overRequestRate_isAdmittedOnceTheBucketRefills() {
+    // 100 requests a second, the second request waits about 10ms
+    var scheduler =
+        new LLMRequestScheduler(LLMRateLimits.builder().requestsPerMinute(6000).build());
+    for (int i = 0; i < 6000; i++) {
+      scheduler.acquire("gpt-4o", "a", 0).close();
+    }
+    assertNotNull(scheduler.acquireAsync("gpt-4o", "a", 0).get(5, TimeUnit.SECONDS));
+  }
+}
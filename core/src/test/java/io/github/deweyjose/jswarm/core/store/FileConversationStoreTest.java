@@ -0,0 +1,155 @@
+package io.github.deweyjose.jswarm.core.store;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.openai.models.ChatCompletionAssistantMessageParam;
+import com.openai.models.ChatCompletionMessageParam;
+import com.openai.models.ChatCompletionUserMessageParam;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileConversationStoreTest {
+
+  @TempDir Path directory;
+
+  private static ChatCompletionMessageParam user(String content) {
+    return ChatCompletionMessageParam.ofUser(
+        ChatCompletionUserMessageParam.builder().content(content).build());
+  }
+
+  private static ChatCompletionMessageParam assistant(String content) {
+    return ChatCompletionMessageParam.ofAssistant(
+        ChatCompletionAssistantMessageParam.builder().content(content).build());
+  }
+
+  @Test
+  void load_afterAppend_readsTurnsBack() {
+    var store = new FileConversationStore(directory);
+    store.append("s1", List.of(user("hi"), assistant("hello")), "Coordinator");
+    store.append("s1", List.of(user("meme"), assistant("here")), "TestMemeGenerator");
+
+    var conversation = new FileConversationStore(directory).load("s1");
+    assertEquals("s1", conversation.getSessionId());
+    assertEquals(2, conversation.getTurnCount());
+    assertEquals("TestMemeGenerator", conversation.getActiveAgent());
+    assertEquals(List.of(user("hi"), assistant("hello")), conversation.getTurn(0));
+    assertEquals(List.of(user("meme"), assistant("here")), conversation.getRecentMessages(1));
+    assertEquals(4, conversation.getRecentMessages(10).size());
+  }
+
+  @Test
+  void load_unknownSession_returnsNull() {
+    assertNull(new FileConversationStore(directory).load("missing"));
+  }
+
+  @Test
+  @SneakyThrows
+  void append_onlyWritesTheNewTurn() {
+    var store = new FileConversationStore(directory, true);
+    store.append("s1", List.of(user("hi"), assistant("hello")), "Coordinator");
+    byte[] before = Files.readAllBytes(directory.resolve("s1.log"));
+
+    store.append("s1", List.of(user("again"), assistant("sure")), "Coordinator");
+    byte[] after = Files.readAllBytes(directory.resolve("s1.log"));
+
+    assertArrayEquals(before, Arrays.copyOf(after, before.length));
+    assertEquals(16, Files.size(directory.resolve("s1.idx")));
+  }
+
+  @Test
+  @SneakyThrows
+  void load_withTornWrite_ignoresIncompleteTurn() {
+    var store = new FileConversationStore(directory);
+    store.append("s1", List.of(user("hi"), assistant("hello")), "Coordinator");
+    store.append("s1", List.of(user("meme"), assistant("here")), "TestMemeGenerator");
+
+    // crash halfway through the second record
+    var log = directory.resolve("s1.log");
+    try (var channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 5);
+    }
+    // and halfway through an index entry
+    Files.write(directory.resolve("s1.idx"), new byte[3], StandardOpenOption.APPEND);
+
+    var conversation = store.load("s1");
+    assertEquals(1, conversation.getTurnCount());
+    assertEquals("Coordinator", conversation.getActiveAgent());
+
+    // the next append cuts off the torn turn
+    store.append("s1", List.of(user("again"), assistant("sure")), "Coordinator");
+    conversation = store.load("s1");
+    assertEquals(2, conversation.getTurnCount());
+    assertEquals(List.of(user("again"), assistant("sure")), conversation.getTurn(1));
+    assertEquals(16, Files.size(directory.resolve("s1.idx")));
+  }
+
+  @Test
+  @SneakyThrows
+  void load_withRecordPast2GB_readsIt() {
+    // a sparse log whose only record starts past what an int offset can address
+    long offset = 3L << 30;
+    byte[] json = "{\"agent\":\"Coordinator\",\"messages\":[]}".getBytes(UTF_8);
+    try (var log =
+        FileChannel.open(
+            directory.resolve("big.log"), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+      var record = ByteBuffer.allocate(Integer.BYTES + json.length);
+      log.write(record.putInt(json.length).put(json).flip(), offset);
+    }
+    var index = ByteBuffer.allocate(Long.BYTES).putLong(offset);
+    Files.write(directory.resolve("big.idx"), index.array());
+
+    var conversation = new FileConversationStore(directory).load("big");
+    assertEquals(1, conversation.getTurnCount());
+    assertEquals("Coordinator", conversation.getActiveAgent());
+    assertEquals(List.of(), conversation.getTurn(0));
+  }
+
+  @Test
+  void load_afterMoreSessionsThanStayOpen_reopensEvictedSessions() {
+    try (var store = new FileConversationStore(directory)) {
+      for (int i = 0; i < 100; i++) {
+        store.append("s" + i, List.of(), "Agent" + i);
+      }
+      var first = store.load("s0");
+      for (int i = 100; i < 200; i++) {
+        store.append("s" + i, List.of(), "Agent" + i);
+      }
+      // evicted since it was loaded, its turns are still readable
+      assertEquals(List.of(), first.getTurn(0));
+      store.append("s0", List.of(), "Coordinator");
+      assertEquals(2, store.load("s0").getTurnCount());
+      assertEquals("Agent150", store.load("s150").getActiveAgent());
+    }
+  }
+
+  @Test
+  void close_closesTheStore() {
+    var store = new FileConversationStore(directory);
+    store.append("s1", List.of(), "Coordinator");
+    var conversation = store.load("s1");
+    store.close();
+
+    assertThrows(IllegalStateException.class, () -> store.append("s1", List.of(), "Coordinator"));
+    assertThrows(IllegalStateException.class, () -> conversation.getTurn(0));
+    // the files are left complete for the next store
+    assertEquals(
+        "Coordinator", new FileConversationStore(directory).load("s1").getActiveAgent());
+  }
+
+  @Test
+  void append_withInvalidSessionId_throwsIllegalArgumentException() {
+    var store = new FileConversationStore(directory);
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> store.append("../escape", List.of(user("hi")), "Coordinator"));
+  }
+}
@@ -0,0 +1,82 @@
+package io.github.deweyjose.jswarm.core.telemetry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.deweyjose.jswarm.core.model.LLMAgentWrapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.Test;
+
+class MicrometerNexusListenerTest {
+
+  static class Coordinator {}
+
+  static class Researcher {}
+
+  private static LLMAgentWrapper agent(Object agent) {
+    return LLMAgentWrapper.builder().model("gpt-4o").instructions("help").agent(agent).build();
+  }
+
+  @Test
+  void run_recordsMetersTaggedByAgentAndFunction() {
+    var registry = new SimpleMeterRegistry();
+    var coordinator = agent(new Coordinator());
+    var researcher = agent(new Researcher());
+
+    var listener = new MicrometerNexusListener(registry);
+    var run = listener.onRunStart(coordinator);
+    run.onRoute(null);
+    run.onCompletion(coordinator, Duration.ofMillis(20), 100, 10, false);
+    run.onToolCall(coordinator, "transfer", Duration.ofMillis(1), null);
+    run.onHandoff(coordinator, researcher);
+    run.onCompletion(researcher, Duration.ofMillis(30), 200, 20, false);
+    run.onToolCall(researcher, "search", Duration.ofMillis(5), new TimeoutException());
+    run.onCompletion(researcher, Duration.ofMillis(1), 0, 0, true);
+    run.onRunEnd(researcher, 3, Duration.ofMillis(60), null);
+
+    listener.onRunStart(coordinator).onRoute(researcher);
+    assertEquals(1, registry.get("jswarm.route").tags("outcome", "miss").counter().count());
+    var routed = registry.get("jswarm.route").tags("outcome", "hit", "agent", "Researcher");
+    assertEquals(1, routed.counter().count());
+
+    var completions =
+        registry.get("jswarm.completion").tags("agent", "Researcher", "cached", "false").timer();
+    assertEquals(1, completions.count());
+    var promptTokens =
+        registry.get("jswarm.tokens").tags("agent", "Researcher", "type", "prompt").counter();
+    assertEquals(200, promptTokens.count());
+    var failedTools =
+        registry.get("jswarm.tool").tags("function", "search", "outcome", "error").timer();
+    assertEquals(1, failedTools.count());
+    var handoffs =
+        registry.get("jswarm.handoff").tags("from", "Coordinator", "to", "Researcher").counter();
+    assertEquals(1, handoffs.count());
+
+    // a run is tagged by the agent it started at
+    var runs =
+        registry.get("jswarm.run").tags("agent", "Coordinator", "outcome", "success").timer();
+    assertEquals(1, runs.count());
+    assertEquals(3, registry.get("jswarm.run.completions").summary().totalAmount());
+  }
+
+  @Test
+  void of_passesEventsToEveryListener() {
+    List<String> events = new ArrayList<>();
+    LLMNexusListener recording =
+        agent ->
+            new LLMRunListener() {
+              @Override
+              public void onRunEnd(
+                  LLMAgentWrapper agent, int completions, Duration duration, Throwable error) {
+                events.add(agent.getName() + ":" + completions);
+              }
+            };
+
+    var run = LLMNexusListener.of(recording, recording).onRunStart(agent(new Coordinator()));
+    run.onRunEnd(agent(new Researcher()), 2, Duration.ZERO, null);
+    assertEquals(List.of("Researcher:2", "Researcher:2"), events);
+  }
+}
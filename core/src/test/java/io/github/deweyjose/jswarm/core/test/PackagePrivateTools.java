@@ -0,0 +1,9 @@
+package io.github.deweyjose.jswarm.core.test;
+
+/** Not visible outside its package, so its methods can only be invoked once made accessible. */
+class PackagePrivateTools {
+
+  public String echo(String value) {
+    return value;
+  }
+}
@@ -0,0 +1,47 @@
+package io.github.deweyjose.jswarm.core.wire;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class SampledWireTapTest {
+
+  private final LLMWireTap delegate = exchange -> {};
+
+  @Test
+  void sample_withZeroRate_neverSamples() {
+    var tap = new SampledWireTap(delegate, 0);
+    assertTrue(IntStream.range(0, 1000).noneMatch(i -> tap.sample()));
+  }
+
+  @Test
+  void sample_withFullRate_alwaysSamples() {
+    var tap = new SampledWireTap(delegate, 1);
+    assertTrue(IntStream.range(0, 1000).allMatch(i -> tap.sample()));
+  }
+
+  @Test
+  void sample_withDisabledDelegate_neverSamples() {
+    LLMWireTap disabled =
+        new LLMWireTap() {
+          @Override
+          public boolean sample() {
+            return false;
+          }
+
+          @Override
+          public void capture(LLMWireExchange exchange) {
+            fail("should not capture");
+          }
+        };
+    var tap = new SampledWireTap(disabled, 1);
+    assertFalse(tap.sample());
+  }
+
+  @Test
+  void constructor_withInvalidRate_throwsIllegalArgumentException() {
+    assertThrows(IllegalArgumentException.class, () -> new SampledWireTap(delegate, 1.5));
+    assertThrows(IllegalArgumentException.class, () -> new SampledWireTap(delegate, -0.1));
+  }
+}
@@ -1,9 +1,7 @@
 package io.github.deweyjose.jswarm.repl;
 
-import com.openai.models.*;
 import io.github.deweyjose.jswarm.core.LLMNexus;
-import java.util.ArrayList;
-import java.util.Map;
+import io.github.deweyjose.jswarm.core.LLMSession;
 import java.util.Scanner;
 import lombok.extern.slf4j.Slf4j;
 
@@ -16,12 +14,12 @@ public class NexusRepl {
 
     log.info("LLMNexus CLI 🐝");
 
-    var history = new ArrayList<ChatCompletionMessageParam>();
+    var session = LLMSession.create();
 
     while (true) {
       System.out.print("👱🏻‍: ");
       String userInput = scanner.nextLine();
-      var response = nexus.run(userInput, history, Map.of());
+      var response = nexus.run(session, userInput);
       var message = response.getReply();
       System.out.println("🤖: " + message._content());
     }
@@ -10,7 +10,10 @@ import java.util.Map;
     description = "If you need any help with Stock Market related tasks use me.",
     instructions = "You are a stock broker agent. You provide stock prices and investment advice.")
 public class StockBroker {
-  @LLMFunction(description = "Get the stock price for a given stock symbol")
+  @LLMFunction(
+      description = "Get the stock price for a given stock symbol",
+      timeoutMillis = 2000,
+      failureThreshold = 3)
   public String getStockPrice(
       LLMFunctionContext context,
       @LLMFunctionParam(description = "The stock symbol") String stockSymbol) {
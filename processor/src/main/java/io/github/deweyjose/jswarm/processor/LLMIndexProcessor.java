@@ -0,0 +1,177 @@
+package io.github.deweyjose.jswarm.processor;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.github.deweyjose.jswarm.core.LLMAgentIndex;
+import io.github.deweyjose.jswarm.core.annotations.LLMAgent;
+import io.github.deweyjose.jswarm.core.annotations.LLMCoordinator;
+import io.github.deweyjose.jswarm.core.annotations.LLMFunction;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Writes {@link LLMAgentIndex#RESOURCE} listing the coordinator and agent classes being compiled,
+ * together with the parameter schemas of their {@link LLMFunction} methods, so {@link
+ * io.github.deweyjose.jswarm.core.LLMAgentRegistry} can start without scanning the classpath.
+ *
+ * <p>On an incremental build the index from the previous compilation is merged in, keeping the
+ * entries of classes that were not recompiled and still carry their annotation.
+ */
+@SupportedAnnotationTypes({
+  "io.github.deweyjose.jswarm.core.annotations.LLMCoordinator",
+  "io.github.deweyjose.jswarm.core.annotations.LLMAgent"
+})
+public class LLMIndexProcessor extends AbstractProcessor {
+
+  private final ObjectMapper mapper =
+      new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+  private final Set<String> coordinators = new TreeSet<>();
+  private final Set<String> agents = new TreeSet<>();
+  private final Map<String, ObjectNode> schemas = new TreeMap<>();
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    if (roundEnv.processingOver()) {
+      if (!coordinators.isEmpty() || !agents.isEmpty()) {
+        mergePreviousIndex();
+        writeIndex();
+      }
+      return false;
+    }
+
+    collect(roundEnv, LLMCoordinator.class, coordinators);
+    collect(roundEnv, LLMAgent.class, agents);
+    return false;
+  }
+
+  private void collect(
+      RoundEnvironment roundEnv, Class<? extends Annotation> annotation, Set<String> names) {
+    for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+      if (element.getKind() != ElementKind.CLASS) {
+        error(element, "@" + annotation.getSimpleName() + " is only supported on classes");
+        continue;
+      }
+      var type = (TypeElement) element;
+      var name = binaryName(type);
+      names.add(name);
+      schemas.put(name, functionSchemas(type));
+    }
+  }
+
+  private ObjectNode functionSchemas(TypeElement type) {
+    var generator =
+        new MirrorSchemaGenerator(
+            mapper, processingEnv.getElementUtils(), processingEnv.getTypeUtils());
+    ObjectNode functions = mapper.createObjectNode();
+    for (Element member : type.getEnclosedElements()) {
+      if (member.getKind() == ElementKind.METHOD
+          && member.getAnnotation(LLMFunction.class) != null) {
+        var method = (ExecutableElement) member;
+        var signature =
+            method.getSimpleName()
+                + "("
+                + method.getParameters().stream()
+                    .map(parameter -> generator.signature(parameter.asType()))
+                    .collect(Collectors.joining(","))
+                + ")";
+        functions.set(signature, generator.generateSchema(method));
+      }
+    }
+    return functions;
+  }
+
+  /** Keeps entries of the previous index for classes this compilation did not see. */
+  private void mergePreviousIndex() {
+    JsonNode previous;
+    try {
+      FileObject resource =
+          processingEnv
+              .getFiler()
+              .getResource(StandardLocation.CLASS_OUTPUT, "", LLMAgentIndex.RESOURCE);
+      try (InputStream in = resource.openInputStream()) {
+        previous = mapper.readTree(in);
+      }
+    } catch (IOException | IllegalArgumentException e) {
+      // no previous index, this is a full build
+      return;
+    }
+
+    mergePrevious(previous, "coordinators", LLMCoordinator.class, coordinators);
+    mergePrevious(previous, "agents", LLMAgent.class, agents);
+  }
+
+  private void mergePrevious(
+      JsonNode previous,
+      String field,
+      Class<? extends Annotation> annotation,
+      Set<String> names) {
+    for (JsonNode node : previous.path(field)) {
+      var name = node.asText();
+      if (schemas.containsKey(name)) {
+        continue;
+      }
+      var type = processingEnv.getElementUtils().getTypeElement(name.replace('$', '.'));
+      if (type != null && type.getAnnotation(annotation) != null) {
+        names.add(name);
+        var functions = previous.path("schemas").path(name);
+        schemas.put(
+            name, functions.isObject() ? (ObjectNode) functions : mapper.createObjectNode());
+      }
+    }
+  }
+
+  private void writeIndex() {
+    ObjectNode index = mapper.createObjectNode();
+    index.set("coordinators", mapper.valueToTree(coordinators));
+    index.set("agents", mapper.valueToTree(agents));
+    index.set("schemas", mapper.valueToTree(schemas));
+
+    try {
+      FileObject resource =
+          processingEnv
+              .getFiler()
+              .createResource(StandardLocation.CLASS_OUTPUT, "", LLMAgentIndex.RESOURCE);
+      try (OutputStream out = resource.openOutputStream()) {
+        mapper.writeValue(out, index);
+      }
+    } catch (IOException e) {
+      processingEnv
+          .getMessager()
+          .printMessage(Diagnostic.Kind.ERROR, "Unable to write agent index: " + e.getMessage());
+    }
+  }
+
+  private String binaryName(TypeElement type) {
+    return processingEnv.getElementUtils().getBinaryName(type).toString();
+  }
+
+  private void error(Element element, String message) {
+    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+  }
+}
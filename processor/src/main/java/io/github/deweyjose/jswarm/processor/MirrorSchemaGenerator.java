@@ -0,0 +1,137 @@
+package io.github.deweyjose.jswarm.processor;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.github.deweyjose.jswarm.core.LLMFunctionSchemaGenerator;
+import io.github.deweyjose.jswarm.core.annotations.LLMFunctionParam;
+import io.github.deweyjose.jswarm.core.model.LLMFunctionContext;
+import java.util.List;
+import java.util.Map;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+/**
+ * Compile time twin of {@link LLMFunctionSchemaGenerator}, working on type mirrors instead of
+ * reflection. Both must produce the same schema for the same method, parameters are named {@code
+ * arg0}, {@code arg1}, ... by position like the argument binder expects.
+ */
+class MirrorSchemaGenerator {
+
+  private final ObjectMapper mapper;
+  private final Types types;
+  private final TypeMirror list;
+  private final TypeMirror map;
+  private final TypeMirror functionContext;
+
+  MirrorSchemaGenerator(ObjectMapper mapper, Elements elements, Types types) {
+    this.mapper = mapper;
+    this.types = types;
+    this.list = types.erasure(elements.getTypeElement(List.class.getName()).asType());
+    this.map = types.erasure(elements.getTypeElement(Map.class.getName()).asType());
+    this.functionContext = elements.getTypeElement(LLMFunctionContext.class.getName()).asType();
+  }
+
+  ObjectNode generateSchema(ExecutableElement method) {
+    ObjectNode schema = mapper.createObjectNode();
+    schema.put("type", "object");
+
+    ObjectNode properties = mapper.createObjectNode();
+    ArrayNode required = mapper.createArrayNode();
+
+    List<? extends VariableElement> parameters = method.getParameters();
+    for (int i = 0; i < parameters.size(); i++) {
+      VariableElement parameter = parameters.get(i);
+      if (types.isSameType(types.erasure(parameter.asType()), functionContext)) {
+        continue;
+      }
+      String paramName = "arg" + i;
+      JsonNode propertySchema = generateSchemaForType(parameter.asType());
+      properties.set(paramName, propertySchema);
+      LLMFunctionParam annotation = parameter.getAnnotation(LLMFunctionParam.class);
+      if (annotation != null) {
+        ((ObjectNode) propertySchema).put("description", annotation.description());
+      }
+      required.add(paramName);
+    }
+    schema.set("properties", properties);
+    schema.set("required", required);
+    return schema;
+  }
+
+  /** Erased type as written in {@code LLMAgentIndex.signature}. */
+  String signature(TypeMirror type) {
+    return types.erasure(type).toString();
+  }
+
+  private JsonNode generateSchemaForType(TypeMirror type) {
+    switch (type.getKind()) {
+      case INT:
+        return createTypeNode("integer");
+      case DOUBLE:
+      case FLOAT:
+        return createTypeNode("number");
+      case BOOLEAN:
+        return createTypeNode("boolean");
+      case DECLARED:
+        return generateSchemaForDeclaredType((DeclaredType) type);
+      case TYPEVAR:
+      case WILDCARD:
+        return mapper.createObjectNode();
+      default:
+        // other primitives and arrays are classes the runtime generator treats as objects
+        return createTypeNode("object");
+    }
+  }
+
+  private JsonNode generateSchemaForDeclaredType(DeclaredType type) {
+    String name = types.erasure(type).toString();
+    switch (name) {
+      case "java.lang.String":
+        return createTypeNode("string");
+      case "java.lang.Integer":
+        return createTypeNode("integer");
+      case "java.lang.Double":
+      case "java.lang.Float":
+        return createTypeNode("number");
+      case "java.lang.Boolean":
+        return createTypeNode("boolean");
+      default:
+        break;
+    }
+
+    List<? extends TypeMirror> typeArgs = type.getTypeArguments();
+    if (types.isAssignable(types.erasure(type), list)) {
+      ObjectNode node = mapper.createObjectNode();
+      node.put("type", "array");
+      node.set(
+          "items",
+          typeArgs.size() == 1
+              ? generateSchemaForType(typeArgs.get(0))
+              : mapper.createObjectNode());
+      return node;
+    } else if (types.isAssignable(types.erasure(type), map)) {
+      ObjectNode node = mapper.createObjectNode();
+      node.put("type", "object");
+      node.set(
+          "additionalProperties",
+          typeArgs.size() == 2
+              ? generateSchemaForType(typeArgs.get(1))
+              : mapper.createObjectNode());
+      return node;
+    }
+    return createTypeNode("object");
+  }
+
+  private ObjectNode createTypeNode(String typeName) {
+    ObjectNode node = mapper.createObjectNode();
+    node.put("type", typeName);
+    return node;
+  }
+}
@@ -0,0 +1,144 @@
+package io.github.deweyjose.jswarm.processor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.deweyjose.jswarm.core.LLMAgentIndex;
+import io.github.deweyjose.jswarm.core.LLMFunctionSchemaGenerator;
+import io.github.deweyjose.jswarm.core.annotations.LLMFunction;
+import java.io.File;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LLMIndexProcessorTest {
+
+  private static final String COORDINATOR =
+      "package sample;\n"
+          + "import io.github.deweyjose.jswarm.core.annotations.*;\n"
+          + "@LLMCoordinator(description = \"coordinates\", instructions = \"route\")\n"
+          + "public class Coordinator {}\n";
+
+  private static final String WEATHER =
+      "package sample;\n"
+          + "import io.github.deweyjose.jswarm.core.annotations.*;\n"
+          + "import io.github.deweyjose.jswarm.core.model.LLMFunctionContext;\n"
+          + "import java.util.*;\n"
+          + "@LLMAgent(description = \"weather\", instructions = \"forecast\")\n"
+          + "public class Weather {\n"
+          + "  @LLMFunction(description = \"forecast\")\n"
+          + "  public String forecast(LLMFunctionContext context,\n"
+          + "      @LLMFunctionParam(description = \"the city\") String city, int days) {\n"
+          + "    return city;\n"
+          + "  }\n"
+          + "  @LLMFunction(description = \"compare\")\n"
+          + "  public static String compare(List<String> cities,\n"
+          + "      Map<String, List<Double>> readings, Boolean metric, long at, List raw) {\n"
+          + "    return \"\";\n"
+          + "  }\n"
+          + "  public String notAFunction(String value) {\n"
+          + "    return value;\n"
+          + "  }\n"
+          + "}\n";
+
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  @TempDir Path out;
+
+  @Test
+  void process_writesIndexOfCoordinatorsAndAgents() throws Exception {
+    compile(Map.of("Coordinator", COORDINATOR, "Weather", WEATHER));
+
+    JsonNode index = mapper.readTree(out.resolve(LLMAgentIndex.RESOURCE).toFile());
+    assertEquals(List.of("sample.Coordinator"), texts(index.get("coordinators")));
+    assertEquals(List.of("sample.Weather"), texts(index.get("agents")));
+    assertEquals(2, index.get("schemas").get("sample.Weather").size());
+  }
+
+  @Test
+  void process_schemasMatchTheRuntimeGenerator() throws Exception {
+    compile(Map.of("Coordinator", COORDINATOR, "Weather", WEATHER));
+
+    var urls = new URL[] {out.toUri().toURL()};
+    try (var classLoader = new URLClassLoader(urls, getClass().getClassLoader())) {
+      var index = LLMAgentIndex.load(classLoader, "sample");
+      assertNotNull(index);
+      assertEquals(1, index.getCoordinators().size());
+
+      var weather = index.getAgents().iterator().next();
+      int functions = 0;
+      for (Method method : weather.getDeclaredMethods()) {
+        if (method.isAnnotationPresent(LLMFunction.class)) {
+          assertEquals(
+              LLMFunctionSchemaGenerator.generateSchema(method),
+              index.getSchema(method),
+              method.getName());
+          functions++;
+        }
+      }
+      assertEquals(2, functions);
+    }
+  }
+
+  @Test
+  void process_incrementalBuild_keepsClassesNotRecompiled() throws Exception {
+    compile(Map.of("Coordinator", COORDINATOR, "Weather", WEATHER));
+    compile(Map.of("Weather", WEATHER.replace("class Weather", "class Weather ")));
+
+    JsonNode index = mapper.readTree(out.resolve(LLMAgentIndex.RESOURCE).toFile());
+    assertEquals(List.of("sample.Coordinator"), texts(index.get("coordinators")));
+    assertEquals(List.of("sample.Weather"), texts(index.get("agents")));
+  }
+
+  private void compile(Map<String, String> sources) throws Exception {
+    var compiler = ToolProvider.getSystemJavaCompiler();
+    List<JavaFileObject> files = new ArrayList<>();
+    sources.forEach((name, source) -> files.add(new Source(name, source)));
+
+    var options =
+        List.of(
+            "-d",
+            out.toString(),
+            "-classpath",
+            // the core classes the sample sources are compiled against
+            Path.of(LLMFunction.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+                + File.pathSeparator
+                + out);
+    var task = compiler.getTask(null, null, null, options, null, files);
+    task.setProcessors(List.of(new LLMIndexProcessor()));
+    assertTrue(task.call(), "compilation failed");
+    assertTrue(Files.exists(out.resolve(LLMAgentIndex.RESOURCE)));
+  }
+
+  private static List<String> texts(JsonNode array) {
+    List<String> texts = new ArrayList<>();
+    array.forEach(node -> texts.add(node.asText()));
+    return texts;
+  }
+
+  private static class Source extends SimpleJavaFileObject {
+    private final String source;
+
+    private Source(String name, String source) {
+      super(URI.create("string:///sample/" + name + ".java"), Kind.SOURCE);
+      this.source = source;
+    }
+
+    @Override
+    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+      return source;
+    }
+  }
+}